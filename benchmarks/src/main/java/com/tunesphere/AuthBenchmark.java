@@ -0,0 +1,103 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Login/register database work against a throwaway SQLite file seeded with USERS accounts.
+// The *Concurrent variants run 4 threads to show pool and write-lock contention.
+// Hashing is left out here (it dominates on purpose), see PasswordHashBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private File dir;
+    private String storedHash;
+    private UserDirectory directory;
+    private final AtomicLong registered = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("tunesphere-bench").toFile();
+        Database.init("jdbc:sqlite:" + new File(dir, "bench.db").getAbsolutePath(), 4);
+
+        // Every seeded account shares one real hash, computing 10k of them would take minutes
+        storedHash = new PasswordHasher(PasswordHasher.MIN_ITERATIONS).hash("password");
+        try (PooledConnection conn = Database.acquire()) {
+            conn.connection().setAutoCommit(false);
+            PreparedStatement insert = conn.prepare("INSERT INTO users (username, email, password) VALUES (?, ?, ?)");
+            for (int i = 0; i < USERS; i++) {
+                insert.setString(1, "user" + i);
+                insert.setString(2, "user" + i + "@example.com");
+                insert.setString(3, storedHash);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            conn.connection().commit();
+            conn.connection().setAutoCommit(true);
+        }
+
+        directory = new UserDirectory();
+        directory.warmUp();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println(directory.report());
+        Database.shutdown();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public String loginQuery() throws Exception {
+        return Database.query("SELECT password FROM users WHERE username=?",
+                rs -> rs.next() ? rs.getString(1) : null, randomUser());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String loginQueryConcurrent() throws Exception {
+        return loginQuery();
+    }
+
+    // Mostly served from the LRU; the rest fall through to SQLite
+    @Benchmark
+    public UserDirectory.User directoryFind() throws Exception {
+        return directory.find(randomUser());
+    }
+
+    @Benchmark
+    public Boolean usernameTakenFast() {
+        return directory.isUsernameTakenFast("nobody" + ThreadLocalRandom.current().nextInt());
+    }
+
+    @Benchmark
+    public int register() throws Exception {
+        long n = registered.incrementAndGet();
+        return Database.update("INSERT INTO users (username, email, password) VALUES (?, ?, ?)",
+                "new" + n, "new" + n + "@example.com", storedHash);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int registerConcurrent() throws Exception {
+        return register();
+    }
+
+    private static String randomUser() {
+        return "user" + ThreadLocalRandom.current().nextInt(USERS);
+    }
+}
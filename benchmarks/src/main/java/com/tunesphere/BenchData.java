@@ -0,0 +1,72 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_core.BORDER_REPLICATE;
+import static org.bytedeco.opencv.global.opencv_core.copyMakeBorder;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+// Shared inputs for the benchmarks: project paths and the image corpus.
+final class BenchData {
+
+    private BenchData() {
+    }
+
+    // Project root: the working directory when run through exec:exec, or its parent when run from benchmarks/
+    static File root() {
+        File cwd = new File("").getAbsoluteFile();
+        if (new File(cwd, "songs").isDirectory()) return cwd;
+        File parent = cwd.getParentFile();
+        return parent != null && new File(parent, "songs").isDirectory() ? parent : cwd;
+    }
+
+    static File file(String relative) {
+        return new File(root(), relative);
+    }
+
+    // Images from benchmarks/corpus (and its happy/sad/neutral label folders), fitted into width x height
+    // without distorting them; the margins repeat the picture's edge. The repository ships a few real
+    // faces (see benchmarks/corpus/README.md), so this is never empty in a checkout.
+    static List<Mat> corpus(int width, int height) {
+        List<Mat> frames = new ArrayList<>();
+        List<File> files = new ArrayList<>(corpusFiles(null));
+        for (Mood mood : Mood.values()) files.addAll(corpusFiles(mood));
+        for (File f : files) {
+            Mat image = imread(f.getAbsolutePath());
+            if (image.empty()) continue;
+            frames.add(fit(image, width, height));
+            image.release();
+        }
+        if (frames.isEmpty()) throw new IllegalStateException("No images in " + file("benchmarks/corpus"));
+        return frames;
+    }
+
+    private static Mat fit(Mat image, int width, int height) {
+        double scale = Math.min((double) width / image.cols(), (double) height / image.rows());
+        int w = Math.min(width, (int) Math.round(image.cols() * scale));
+        int h = Math.min(height, (int) Math.round(image.rows() * scale));
+        Mat scaled = new Mat();
+        resize(image, scaled, new Size(w, h), 0, 0, scale < 1 ? INTER_AREA : INTER_LINEAR);
+        Mat framed = new Mat();
+        int top = (height - h) / 2, left = (width - w) / 2;
+        copyMakeBorder(scaled, framed, top, height - h - top, left, width - w - left, BORDER_REPLICATE);
+        scaled.release();
+        return framed;
+    }
+
+    // Images in benchmarks/corpus/<mood>, or the unlabeled top level for null
+    static List<File> corpusFiles(Mood label) {
+        File dir = file(label == null ? "benchmarks/corpus" : "benchmarks/corpus/" + label.folderName());
+        File[] files = dir.listFiles((d, name) -> name.matches("(?i).*\\.(jpe?g|png|bmp)"));
+        if (files == null) return List.of();
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+// Accuracy of each classifier on the labeled test set in benchmarks/corpus/<happy|sad|neutral>/.
+// Prints a confusion matrix per engine and writes benchmarks/results/accuracy-<timestamp>.json.
+//   mvn -f benchmarks/pom.xml exec:exec -Dmain=com.tunesphere.ClassifierAccuracy [-Dbench="haar dnn"]
+public class ClassifierAccuracy {
+
+    public static void main(String[] args) throws IOException {
+        String[] engines = Arrays.stream(args).filter(a -> a.equals("haar") || a.equals("dnn")).toArray(String[]::new);
+        if (engines.length == 0) engines = new String[]{"haar", "dnn"};
+        StringBuilder json = new StringBuilder("[");
+        for (String engine : engines) {
+            if (engine.equals("dnn") && !BenchData.file(DnnMoodClassifier.DEFAULT_MODEL).isFile()) {
+                System.out.println("Skipping dnn: " + DnnMoodClassifier.DEFAULT_MODEL + " not found");
+                continue;
+            }
+            if (json.length() > 1) json.append(',');
+            json.append(evaluate(engine));
+        }
+        json.append(']');
+
+        File dir = BenchData.file("benchmarks/results");
+        dir.mkdirs();
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        File out = new File(dir, "accuracy-" + stamp + ".json");
+        try (Writer w = new FileWriter(out)) {
+            w.write(json.toString());
+        }
+        System.out.println("Results saved to " + out);
+    }
+
+    // Rows: true label, columns: predicted mood, last column: no face found
+    private static String evaluate(String engine) {
+        Mood[] moods = Mood.values();
+        long[][] confusion = new long[moods.length][moods.length + 1];
+        long totalNanos = 0;
+        int images = 0;
+
+        try (MoodClassifier classifier = ClassifierBenchmark.create(engine)) {
+            for (Mood label : moods) {
+                List<File> files = BenchData.corpusFiles(label);
+                for (File f : files) {
+                    Mat image = imread(f.getAbsolutePath());
+                    if (image.empty()) continue;
+                    classifier.reset();
+                    long start = System.nanoTime();
+                    Mood predicted = classifier.classify(image);
+                    totalNanos += System.nanoTime() - start;
+                    image.release();
+                    images++;
+                    confusion[label.ordinal()][predicted == null ? moods.length : predicted.ordinal()]++;
+                }
+            }
+        }
+
+        long correct = 0;
+        for (Mood m : moods) correct += confusion[m.ordinal()][m.ordinal()];
+        double accuracy = images > 0 ? (double) correct / images : 0;
+        double avgMillis = images > 0 ? totalNanos / 1e6 / images : 0;
+
+        System.out.printf(Locale.ROOT, "%n%s: %d images, accuracy %.1f%%, %.2f ms/image%n", engine, images, accuracy * 100, avgMillis);
+        System.out.printf("%-10s", "true\\pred");
+        for (Mood m : moods) System.out.printf("%9s", m.folderName());
+        System.out.printf("%9s%n", "no face");
+        StringBuilder matrix = new StringBuilder("[");
+        for (Mood label : moods) {
+            System.out.printf("%-10s", label.folderName());
+            matrix.append(label.ordinal() > 0 ? ",[" : "[");
+            for (int p = 0; p <= moods.length; p++) {
+                System.out.printf("%9d", confusion[label.ordinal()][p]);
+                matrix.append(p > 0 ? "," : "").append(confusion[label.ordinal()][p]);
+            }
+            matrix.append(']');
+            System.out.println();
+        }
+        matrix.append(']');
+        return String.format(Locale.ROOT, "{\"engine\":\"%s\",\"images\":%d,\"accuracy\":%.4f,\"avgMillis\":%.3f,"
+                + "\"labels\":[%s,\"none\"],\"confusion\":%s}", engine, images, accuracy, avgMillis,
+                Arrays.stream(moods).map(m -> "\"" + m.folderName() + "\"").collect(Collectors.joining(",")), matrix);
+    }
+}
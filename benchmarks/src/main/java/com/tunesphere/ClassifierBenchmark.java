@@ -0,0 +1,61 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per-frame latency of the Haar heuristic vs the ONNX emotion model (face search included),
+// The dnn runs need models/emotion-ferplus-8.onnx. See DnnBatchBenchmark for the network alone
+// and ClassifierAccuracy for accuracy on the labeled corpus.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    @Param({"haar", "dnn"})
+    public String engine;
+
+    @Param({"640x480"})
+    public String resolution;
+
+    private MoodClassifier classifier;
+    private List<Mat> frames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] wh = resolution.split("x");
+        frames = BenchData.corpus(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+        classifier = create(engine);
+    }
+
+    @TearDown
+    public void tearDown() {
+        classifier.close();
+        for (Mat frame : frames) frame.release();
+    }
+
+    @Benchmark
+    public Mood classifyFrame() {
+        Mat frame = frames.get(next);
+        next = (next + 1) % frames.size();
+        classifier.reset(); // independent images, no tracking carry-over
+        return classifier.classify(frame);
+    }
+
+    static MoodClassifier create(String engine) {
+        MoodClassifier.Settings settings = new MoodClassifier.Settings();
+        settings.engine = engine;
+        settings.modelPath = BenchData.file(DnnMoodClassifier.DEFAULT_MODEL).getPath();
+        if (engine.equals("dnn") && !new File(settings.modelPath).isFile()) {
+            throw new IllegalStateException(settings.modelPath + " not found");
+        }
+        return MoodClassifier.create(settings);
+    }
+}
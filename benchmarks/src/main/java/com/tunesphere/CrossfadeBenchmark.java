@@ -0,0 +1,70 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// Cost of one crossfaded block (1152 frames, ~26 ms of audio) with both decks running: two decks read,
+// resampled and blended. Tracks come from the PcmCache so MP3 decoding is out of the picture.
+// 44100 is the pass-through case, 48000 makes both decks resample. Run with -prof gc to check the
+// mix loop allocates nothing.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CrossfadeBenchmark {
+
+    @Param({"songs/happy/song1.mp3"})
+    public String track;
+
+    @Param({"44100", "48000"})
+    public int outputRate;
+
+    private File file;
+    private AudioFormat format;
+    private final CrossfadeMixer mixer = new CrossfadeMixer();
+    private final PcmRing.Block block = new PcmRing.Block(TrackDecoder.MAX_FRAME_BYTES);
+    private TrackDecoder incoming;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = BenchData.file(track);
+        if (!file.isFile()) throw new IllegalStateException(file + " not found");
+        format = new AudioFormat(outputRate, 16, 2, true, false);
+        // Two full plays put the track in the cache
+        for (int i = 0; i < 2; i++) {
+            try (TrackDecoder decoder = new TrackDecoder(file)) {
+                while (decoder.decodeInto(block)) {
+                }
+            }
+        }
+        if (PcmCache.shared().getEntryCount() == 0) throw new IllegalStateException("Track was not cached");
+        restart();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mixer.close();
+        incoming.close();
+    }
+
+    @Benchmark
+    public int mixBlock() throws Exception {
+        if (!mixer.mixInto(block)) {
+            restart();
+            mixer.mixInto(block);
+        }
+        return block.length;
+    }
+
+    // Fade as long as the track, so every block mixes both decks
+    private void restart() throws Exception {
+        if (incoming != null) incoming.close();
+        incoming = new TrackDecoder(file);
+        mixer.start(new TrackDecoder(file), incoming, format, 10 * 60 * 1000);
+    }
+}
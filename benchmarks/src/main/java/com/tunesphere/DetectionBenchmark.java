@@ -0,0 +1,120 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+import static org.bytedeco.opencv.global.opencv_objdetect.CASCADE_SCALE_IMAGE;
+
+// Face/smile detection cost per frame at several camera resolutions.
+// fullFrameFace is the old per-frame path, trackedFace goes through FaceTracker (downscale + ROI search).
+// Only corpus images with a detectable face are used, so every path works on a real face.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionBenchmark {
+
+    @Param({"320x240", "640x480", "1280x720"})
+    public String resolution;
+
+    private CascadeClassifier face;
+    private CascadeClassifier smile;
+    private List<Mat> frames;
+    private final List<Rect> mouths = new ArrayList<>();  // lower half of each frame's face
+    private int next;
+    private int current;
+
+    private final Mat gray = new Mat();
+    private final RectVector found = new RectVector();
+    private final Size minFace = new Size(100, 100);
+    private final Size minSmile = new Size(25, 25);
+    private final Size noMax = new Size();
+
+    private DetectionContext ctx;
+    private FaceTracker tracker;
+
+    @Setup
+    public void setUp() {
+        String[] wh = resolution.split("x");
+        frames = BenchData.corpus(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+        face = load(CascadeRegistry.Cascade.FRONTAL_FACE);
+        smile = load(CascadeRegistry.Cascade.SMILE);
+        ctx = new DetectionContext();
+        tracker = new FaceTracker(face, ctx);
+
+        List<Mat> withFace = new ArrayList<>();
+        for (Mat frame : frames) {
+            tracker.reset();
+            Rect found = tracker.track(frame);
+            if (found == null) {
+                frame.release();
+                continue;
+            }
+            withFace.add(frame);
+            mouths.add(new Rect(found.x(), found.y() + found.height() / 2, found.width(), found.height() / 2));
+        }
+        tracker.reset();
+        if (withFace.isEmpty()) throw new IllegalStateException("No face detected in any corpus image at " + resolution);
+        System.out.println(withFace.size() + " of " + frames.size() + " corpus images have a detectable face at " + resolution);
+        frames = withFace;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (tracker.getRoiScans() > 0) {
+            System.out.println("Tracker: " + tracker.getRoiScans() + " ROI scans, " + tracker.getFullScans() + " full scans");
+        }
+        ctx.close();
+        face.close();
+        smile.close();
+        for (Mat frame : frames) frame.release();
+        for (Rect mouth : mouths) mouth.close();
+    }
+
+    @Benchmark
+    public long fullFrameFace() {
+        cvtColor(nextFrame(), gray, COLOR_BGR2GRAY);
+        equalizeHist(gray, gray);
+        face.detectMultiScale(gray, found, 1.1, 5, CASCADE_SCALE_IMAGE, minFace, noMax);
+        return found.size();
+    }
+
+    @Benchmark
+    public Rect trackedFace() {
+        return tracker.track(nextFrame());
+    }
+
+    // Smile search over the lower half of the detected face, like MoodDetector does per face
+    @Benchmark
+    public long smileInFace() {
+        Mat frame = nextFrame();
+        cvtColor(frame, gray, COLOR_BGR2GRAY);
+        Mat mouth = gray.apply(mouths.get(current));
+        smile.detectMultiScale(mouth, found, 1.7, 22, 0, minSmile, noMax);
+        mouth.close();
+        return found.size();
+    }
+
+    private Mat nextFrame() {
+        current = next;
+        next = (next + 1) % frames.size();
+        return frames.get(current);
+    }
+
+    private static CascadeClassifier load(CascadeRegistry.Cascade cascade) {
+        CascadeClassifier classifier = new CascadeClassifier(BenchData.file(cascade.file()).getAbsolutePath());
+        if (classifier.empty()) throw new IllegalStateException(cascade.file() + " not found in the project root");
+        return classifier;
+    }
+}
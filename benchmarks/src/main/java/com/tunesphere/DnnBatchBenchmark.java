@@ -0,0 +1,52 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+
+// The emotion network on its own: cost of one forward pass for 1, 4 and 8 face crops,
+// i.e. how much batching the faces of a frame saves per face. Needs models/emotion-ferplus-8.onnx.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DnnBatchBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int batch;
+
+    private DnnMoodClassifier dnn;
+    private Mat[] crops;
+
+    @Setup
+    public void setUp() {
+        dnn = (DnnMoodClassifier) ClassifierBenchmark.create("dnn");
+        Random random = new Random(42);
+        byte[] pixels = new byte[DnnMoodClassifier.INPUT_SIZE * DnnMoodClassifier.INPUT_SIZE];
+        crops = new Mat[batch];
+        for (int i = 0; i < batch; i++) {
+            random.nextBytes(pixels);
+            crops[i] = new Mat(DnnMoodClassifier.INPUT_SIZE, DnnMoodClassifier.INPUT_SIZE, CV_8UC1);
+            crops[i].<ByteBuffer>createBuffer().put(pixels);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dnn.close();
+        for (Mat crop : crops) crop.release();
+    }
+
+    @Benchmark
+    public int forward() {
+        dnn.classifyCrops(crops, batch);
+        return dnn.getFaceCount();
+    }
+}
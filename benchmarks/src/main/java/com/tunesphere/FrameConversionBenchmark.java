@@ -0,0 +1,80 @@
+package com.tunesphere;
+
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import org.bytedeco.javacv.Java2DFrameConverter;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC4;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2BGRA;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+
+// Camera frame -> preview image. The first two are the old per-frame path (a new BufferedImage and
+// FX Image every frame); bgraStaging is what PreviewRenderer does per frame into reused buffers.
+// Run with -prof gc to see the allocation rate of each.
+// SwingFXUtils needs the FX toolkit, so this one needs a display (or Monocle headless).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameConversionBenchmark {
+
+    @Param({"640x480", "1280x720"})
+    public String resolution;
+
+    private Mat frame;
+    private final OpenCVFrameConverter.ToMat matConverter = new OpenCVFrameConverter.ToMat();
+    private final Java2DFrameConverter java2d = new Java2DFrameConverter();
+
+    private final Mat bgra = new Mat();
+    private ByteBuffer staging;
+    private ByteBuffer pixels;
+
+    @Setup
+    public void setUp() {
+        String[] wh = resolution.split("x");
+        frame = BenchData.corpus(Integer.parseInt(wh[0]), Integer.parseInt(wh[1])).get(0);
+        bgra.create(frame.rows(), frame.cols(), CV_8UC4);
+        staging = bgra.createBuffer();
+        pixels = ByteBuffer.allocateDirect(frame.cols() * frame.rows() * 4);
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException alreadyRunning) {
+            // another trial in this fork started it
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        frame.release();
+        bgra.release();
+    }
+
+    @Benchmark
+    public BufferedImage java2d() {
+        return java2d.convert(matConverter.convert(frame));
+    }
+
+    @Benchmark
+    public Image java2dSwingFx() {
+        return SwingFXUtils.toFXImage(java2d.convert(matConverter.convert(frame)), null);
+    }
+
+    @Benchmark
+    public ByteBuffer bgraStaging() {
+        cvtColor(frame, bgra, COLOR_BGR2BGRA);
+        pixels.clear();
+        staging.clear();
+        pixels.put(staging);
+        return pixels;
+    }
+}
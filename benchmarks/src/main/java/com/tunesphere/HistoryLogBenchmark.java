@@ -0,0 +1,71 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// The listening history log against a scratch database (WAL, like the app's).
+//   record    - four threads (audio, camera, UI...) recording as fast as they can: the cost on the caller,
+//               plus how many events got in versus were dropped because the writer fell MAX_BACKLOG behind
+//   committed - events recorded and then flushed, i.e. what the writer actually gets into SQLite per second
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HistoryLogBenchmark {
+
+    private static final int EVENTS_PER_FLUSH = 1_000;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcome {
+        public long accepted;
+        public long dropped;
+    }
+
+    private File dbFile;
+    private HistoryLog log;
+    private File track;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dbFile = Files.createTempFile("tunesphere-history", ".db").toFile();
+        Database.init("jdbc:sqlite:" + dbFile.getPath(), 4);
+        log = new HistoryLog();
+        log.setUser("bench");
+        track = BenchData.file("songs/happy/song1.mp3");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.close();
+        System.out.println();
+        System.out.println(log.report());
+        Database.shutdown();
+        dbFile.delete();
+        new File(dbFile.getPath() + "-wal").delete();
+        new File(dbFile.getPath() + "-shm").delete();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean record(Outcome outcome) {
+        boolean ok = log.record(HistoryLog.EventType.TRACK_STARTED, "bench", null, track, 0);
+        if (ok) outcome.accepted++;
+        else outcome.dropped++;
+        return ok;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_FLUSH)
+    public void committed() {
+        for (int i = 0; i < EVENTS_PER_FLUSH; i++) {
+            log.record(HistoryLog.EventType.TRACK_FINISHED, "bench", null, track, i);
+        }
+        log.flush().join();
+    }
+}
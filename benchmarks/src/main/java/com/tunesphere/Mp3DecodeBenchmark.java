@@ -0,0 +1,88 @@
+package com.tunesphere;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+// Decoding a whole track: raw JLayer over a stream or a memory mapping versus TrackDecoder (what the
+// playback engine runs), plus the frame index scan used for seeking. Divide by the track length for the
+// real-time factor. The PCM cache is off here so every run really decodes; see PcmCacheBenchmark.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dtunesphere.pcmCache.mb=0")
+public class Mp3DecodeBenchmark {
+
+    @Param({"songs/happy/song1.mp3"})
+    public String track;
+
+    private File file;
+    private PcmRing.Block block;
+
+    @Setup
+    public void setUp() {
+        file = BenchData.file(track);
+        if (!file.isFile()) throw new IllegalStateException(file + " not found");
+        block = new PcmRing.Block(TrackDecoder.MAX_FRAME_BYTES);
+    }
+
+    @Benchmark
+    public long jlayer() throws Exception {
+        long samples = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            Bitstream bitstream = new Bitstream(in);
+            Decoder decoder = new Decoder();
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                samples += output.getBufferLength();
+                bitstream.closeFrame();
+            }
+            bitstream.close();
+        }
+        return samples;
+    }
+
+    @Benchmark
+    public long jlayerMapped() throws Exception {
+        long samples = 0;
+        try (InputStream in = new MappedInputStream(file, 0)) {
+            Bitstream bitstream = new Bitstream(in);
+            Decoder decoder = new Decoder();
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                samples += output.getBufferLength();
+                bitstream.closeFrame();
+            }
+            bitstream.close();
+        }
+        return samples;
+    }
+
+    @Benchmark
+    public long trackDecoder() throws Exception {
+        long bytes = 0;
+        try (TrackDecoder decoder = new TrackDecoder(file)) {
+            while (decoder.decodeInto(block)) {
+                bytes += block.length;
+            }
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int frameIndex() throws Exception {
+        return Mp3FrameIndex.build(file).getFrameCount();
+    }
+}
@@ -0,0 +1,62 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Replaying and seeking in a track that is already in the PcmCache, heap versus off-heap.
+// Compare with Mp3DecodeBenchmark.trackDecoder, which decodes the same track from the file.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PcmCacheBenchmark {
+
+    @Param({"songs/happy/song1.mp3"})
+    public String track;
+
+    @Param({"true", "false"})
+    public String offHeap;
+
+    private File file;
+    private PcmRing.Block block;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("tunesphere.pcmCache.offHeap", offHeap);
+        file = BenchData.file(track);
+        if (!file.isFile()) throw new IllegalStateException(file + " not found");
+        block = new PcmRing.Block(TrackDecoder.MAX_FRAME_BYTES);
+        // Second full play records the track
+        replay();
+        replay();
+        if (PcmCache.shared().getEntryCount() == 0) throw new IllegalStateException("Track was not cached");
+    }
+
+    @Benchmark
+    public long replay() throws Exception {
+        long bytes = 0;
+        try (TrackDecoder decoder = new TrackDecoder(file)) {
+            while (decoder.decodeInto(block)) {
+                bytes += block.length;
+            }
+        }
+        return bytes;
+    }
+
+    // Open at 30 s and read one second of audio
+    @Benchmark
+    public long seek() throws Exception {
+        long bytes = 0;
+        try (TrackDecoder decoder = TrackDecoder.openAt(file, Duration.ofSeconds(30))) {
+            for (int i = 0; i < 38 && decoder.decodeInto(block); i++) {
+                bytes += block.length;
+            }
+        }
+        return bytes;
+    }
+}
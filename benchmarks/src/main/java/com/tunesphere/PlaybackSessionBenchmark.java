@@ -0,0 +1,71 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Many playback sessions in one process, each decoding the same track in real time into a NullAudioSink,
+// while four threads fire commands at random sessions. Measures how long a command takes to be applied
+// as the number of sessions grows, and checks that every session really produced audio.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+// Keep the listening history out of it (and out of the project's database)
+@Fork(value = 1, jvmArgsAppend = "-Dtunesphere.history=false")
+public class PlaybackSessionBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int sessions;
+
+    @Param({"songs/happy/song1.mp3"})
+    public String track;
+
+    private final List<PlaybackSession> open = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        File file = BenchData.file(track);
+        if (!file.isFile()) throw new IllegalStateException(file + " not found");
+        for (int i = 0; i < sessions; i++) {
+            PlaybackSession session = PlaybackService.shared().open("bench-" + i, new NullAudioSink(true));
+            session.play(List.of(file), 0).join();
+            open.add(session);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (PlaybackSession session : open) {
+            long bytes = ((NullAudioSink) session.getSink()).getBytesWritten();
+            if (bytes == 0) throw new IllegalStateException(session.getName() + " never played anything");
+            PlaybackService.shared().close(session.getName());
+        }
+        open.clear();
+    }
+
+    // Round trip of a cheap command through the session's queue
+    @Benchmark
+    public void pauseResume() {
+        PlaybackSession session = pick();
+        session.pause();
+        session.resume().join();
+    }
+
+    // A seek discards the buffered audio and reopens the decoder at the new frame
+    @Benchmark
+    public void seek() {
+        pick().seek(Duration.ofSeconds(ThreadLocalRandom.current().nextInt(30))).join();
+    }
+
+    private PlaybackSession pick() {
+        return open.get(ThreadLocalRandom.current().nextInt(open.size()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// The mood playlist scheduler on synthetic libraries where a third of the tracks have listening history.
+//   build - scoring every track and building the Fenwick tree (once per mood switch)
+//   next  - drawing the next track; should stay flat as the library grows (O(log n)), new rounds included
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PlaylistSchedulerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tracks;
+
+    private List<File> files;
+    private Map<String, PlaylistScheduler.TrackStats> history;
+    private long now;
+    private PlaylistScheduler scheduler;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(1);
+        now = System.currentTimeMillis();
+        files = new ArrayList<>(tracks);
+        history = new HashMap<>();
+        for (int i = 0; i < tracks; i++) {
+            File file = new File("songs/bench/track" + i + ".mp3");
+            files.add(file);
+            if (i % 3 == 0) {
+                PlaylistScheduler.TrackStats stats = new PlaylistScheduler.TrackStats();
+                stats.finished = random.nextInt(20);
+                stats.skips = random.nextInt(10);
+                stats.lastStartedMillis = now - random.nextLong(30L * 24 * 3600_000);
+                history.put(file.getPath(), stats);
+            }
+        }
+        scheduler = new PlaylistScheduler(files, history, now, 42);
+    }
+
+    @Benchmark
+    public PlaylistScheduler build() {
+        return new PlaylistScheduler(files, history, now, 42);
+    }
+
+    @Benchmark
+    public File next() {
+        return scheduler.next();
+    }
+}
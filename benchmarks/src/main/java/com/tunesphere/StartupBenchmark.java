@@ -0,0 +1,78 @@
+package com.tunesphere;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time from launching a fresh JVM until the login window's first frame, read from the
+// "Login window up" line the app prints (it exits right after with -Dtunesphere.exitAfterFirstFrame).
+//   classpath - plain java with the development class path (all-platform natives, JDK class-data only)
+//   image     - target/image from `mvn -Plinux package`: trimmed runtime + app.jsa
+//   image-noshare - the same image with class-data sharing turned off
+// Needs a display (or xvfb-run); the image variants need the image to be built first.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String MARKER = "Login window up";
+
+    @Param({"classpath", "image", "image-noshare"})
+    public String launch;
+
+    private ProcessBuilder builder;
+    private Process process;
+    private BufferedReader output;
+
+    @Setup
+    public void setUp() {
+        List<String> command = new ArrayList<>();
+        String javaOpts = "-Dtunesphere.exitAfterFirstFrame=true";
+        if (launch.equals("classpath")) {
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            command.add(javaOpts);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("com.tunesphere.App");
+        } else {
+            File launcher = BenchData.file("target/image/bin/tunesphere");
+            if (!launcher.canExecute()) throw new IllegalStateException(launcher + " not found, run mvn -Plinux package first");
+            command.add(launcher.getPath());
+            if (launch.equals("image-noshare")) javaOpts += " -Xshare:off";
+        }
+        builder = new ProcessBuilder(command).directory(BenchData.root()).redirectErrorStream(true);
+        builder.environment().put("JAVA_OPTS", javaOpts);
+    }
+
+    @Benchmark
+    public void firstFrame() throws Exception {
+        process = builder.start();
+        output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.startsWith(MARKER)) return;
+        }
+        throw new IllegalStateException("App exited with " + process.waitFor() + " before showing the login window");
+    }
+
+    // Not part of the measurement: shutdown, and the rest of the output
+    @TearDown(Level.Invocation)
+    public void awaitExit() throws Exception {
+        if (process == null) return;
+        try (BufferedReader rest = output) {
+            rest.transferTo(Writer.nullWriter());
+        }
+        if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly().waitFor();
+        process = null;
+    }
+}
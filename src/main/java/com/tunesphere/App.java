@@ -1,7 +1,19 @@
 package com.tunesphere;
 
+import java.util.Arrays;
+
 public class App {
     public static void main(String[] args) {
+        // Headless batch mode: App classify <dir> [options]
+        if (args.length > 0 && args[0].equals("classify")) {
+            BatchClassifier.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // App analyze [--threads n]: audio features for the whole library
+        if (args.length > 0 && args[0].equals("analyze")) {
+            FeatureAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         Login.main(args); // Launch your login window
     }
 }
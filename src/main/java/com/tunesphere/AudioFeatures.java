@@ -0,0 +1,292 @@
+package com.tunesphere;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+// What a track sounds like, as four numbers: tempo, loudness, brightness and major/minor mode.
+// analyze() decodes the first ANALYZED_SECONDS with JLayer, mixes down to mono (halving 44.1/48 kHz
+// to save work) and runs a short-time FFT over it:
+//   tempo    - autocorrelation of the spectral-flux onset curve, biased towards ~120 BPM
+//   rms      - overall level in dBFS
+//   centroid - average spectral centre of mass in Hz (dark vs bright)
+//   mode     - chroma profile correlated with the Krumhansl major/minor key profiles, > 0 leans major
+// One Analyzer per thread; it reuses all of its buffers between tracks.
+public final class AudioFeatures {
+
+    public static final int ANALYZED_SECONDS = 120;
+
+    private static final double[] MAJOR = {6.35, 2.23, 3.48, 2.33, 4.38, 4.09, 2.52, 5.19, 2.39, 3.66, 2.29, 2.88};
+    private static final double[] MINOR = {6.33, 2.68, 3.52, 5.38, 2.60, 3.53, 2.54, 4.75, 3.98, 2.69, 3.34, 3.17};
+
+    final double tempoBpm;
+    final double rmsDb;
+    final double centroidHz;
+    final double mode;
+    final int key; // 0 = C ... 11 = B
+
+    AudioFeatures(double tempoBpm, double rmsDb, double centroidHz, double mode, int key) {
+        this.tempoBpm = tempoBpm;
+        this.rmsDb = rmsDb;
+        this.centroidHz = centroidHz;
+        this.mode = mode;
+        this.key = key;
+    }
+
+    public double getTempoBpm() {
+        return tempoBpm;
+    }
+
+    public double getRmsDb() {
+        return rmsDb;
+    }
+
+    public double getCentroidHz() {
+        return centroidHz;
+    }
+
+    public double getMode() {
+        return mode;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f BPM, %.1f dBFS, centroid %.0f Hz, mode %+.3f (%s)",
+                tempoBpm, rmsDb, centroidHz, mode, mode >= 0 ? "major" : "minor");
+    }
+
+    public static final class Analyzer {
+        private static final int FRAME = 2048;
+        private static final int HOP = 512;
+        private static final double MIN_PITCH_HZ = 65;
+        private static final double MAX_PITCH_HZ = 2100;
+
+        private final Fft fft = new Fft(FRAME);
+        private final double[] window = new double[FRAME];
+        private final double[] samples = new double[FRAME];
+        private final double[] re = new double[FRAME];
+        private final double[] im = new double[FRAME];
+        private final double[] magnitude = new double[FRAME / 2 + 1];
+        private final double[] previous = new double[FRAME / 2 + 1];
+        private final int[] pitchClass = new int[FRAME / 2 + 1];
+        private final double[] chroma = new double[12];
+        private double[] onsets = new double[4096];
+
+        // Per track
+        private int filled;
+        private int frames;
+        private double sumSquares;
+        private long sampleCount;
+        private double centroidSum;
+        private int centroidFrames;
+        private float tableRate = -1;
+        private float pendingSample;
+        private boolean havePending;
+
+        public Analyzer() {
+            for (int i = 0; i < FRAME; i++) window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME - 1));
+        }
+
+        public AudioFeatures analyze(File file) throws IOException, JavaLayerException {
+            reset();
+            Bitstream bitstream = new Bitstream(new MappedInputStream(file, 0));
+            Decoder decoder = new Decoder();
+            float rate = 0;
+            boolean decimate = false;
+            try {
+                Header header;
+                while ((header = bitstream.readFrame()) != null) {
+                    try {
+                        SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                        if (rate == 0) {
+                            decimate = decoder.getOutputFrequency() >= 32000;
+                            rate = decimate ? decoder.getOutputFrequency() / 2f : decoder.getOutputFrequency();
+                            buildPitchTable(rate);
+                        }
+                        add(output.getBuffer(), output.getBufferLength(), decoder.getOutputChannels(), decimate, rate);
+                    } catch (DecoderException e) {
+                        // corrupt frame, skip it
+                    } finally {
+                        bitstream.closeFrame();
+                    }
+                    if (sampleCount >= (long) ANALYZED_SECONDS * rate && rate > 0) break;
+                }
+            } finally {
+                bitstream.close();
+            }
+            if (rate == 0 || frames < 8) throw new IOException("Not enough audio in " + file.getName());
+            return finish(rate);
+        }
+
+        private void reset() {
+            filled = 0;
+            frames = 0;
+            sumSquares = 0;
+            sampleCount = 0;
+            centroidSum = 0;
+            centroidFrames = 0;
+            havePending = false;
+            Arrays.fill(previous, 0);
+            Arrays.fill(chroma, 0);
+        }
+
+        private void add(short[] pcm, int length, int channels, boolean decimate, float rate) {
+            for (int i = 0; i + channels <= length; i += channels) {
+                float mono = channels == 2 ? (pcm[i] + pcm[i + 1]) * 0.5f : pcm[i];
+                if (decimate) {
+                    if (!havePending) {
+                        pendingSample = mono;
+                        havePending = true;
+                        continue;
+                    }
+                    mono = (mono + pendingSample) * 0.5f;
+                    havePending = false;
+                }
+                double x = mono / 32768.0;
+                sumSquares += x * x;
+                sampleCount++;
+                samples[filled++] = x;
+                if (filled == FRAME) {
+                    analyzeFrame(rate);
+                    System.arraycopy(samples, HOP, samples, 0, FRAME - HOP);
+                    filled = FRAME - HOP;
+                }
+            }
+        }
+
+        private void analyzeFrame(float rate) {
+            for (int i = 0; i < FRAME; i++) {
+                re[i] = samples[i] * window[i];
+                im[i] = 0;
+            }
+            fft.transform(re, im);
+
+            double flux = 0;
+            double weighted = 0;
+            double total = 0;
+            double binHz = rate / FRAME;
+            for (int k = 1; k <= FRAME / 2; k++) {
+                double m = Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+                magnitude[k] = m;
+                double compressed = Math.log1p(100 * m);
+                double rise = compressed - previous[k];
+                if (rise > 0) flux += rise;
+                previous[k] = compressed;
+                weighted += k * binHz * m;
+                total += m;
+                if (pitchClass[k] >= 0) chroma[pitchClass[k]] += m * m;
+            }
+            // Near-silent frames say nothing about brightness
+            if (total > 1) {
+                centroidSum += weighted / total;
+                centroidFrames++;
+            }
+            if (frames == onsets.length) onsets = Arrays.copyOf(onsets, frames * 2);
+            onsets[frames++] = flux;
+        }
+
+        private void buildPitchTable(float rate) {
+            if (rate == tableRate) return;
+            tableRate = rate;
+            for (int k = 0; k < pitchClass.length; k++) {
+                double hz = k * rate / FRAME;
+                if (hz < MIN_PITCH_HZ || hz > MAX_PITCH_HZ) {
+                    pitchClass[k] = -1;
+                } else {
+                    long midi = Math.round(69 + 12 * Math.log(hz / 440) / Math.log(2));
+                    pitchClass[k] = (int) Math.floorMod(midi, 12L);
+                }
+            }
+        }
+
+        private AudioFeatures finish(float rate) {
+            double rms = Math.sqrt(sumSquares / Math.max(1, sampleCount));
+            double rmsDb = 20 * Math.log10(Math.max(rms, 1e-9));
+            double centroid = centroidFrames > 0 ? centroidSum / centroidFrames : 0;
+            double tempo = tempo(rate / HOP);
+
+            double bestMajor = -2;
+            double bestMinor = -2;
+            int key = 0;
+            double best = -2;
+            for (int k = 0; k < 12; k++) {
+                double major = correlate(MAJOR, k);
+                double minor = correlate(MINOR, k);
+                if (major > bestMajor) bestMajor = major;
+                if (minor > bestMinor) bestMinor = minor;
+                if (Math.max(major, minor) > best) {
+                    best = Math.max(major, minor);
+                    key = k;
+                }
+            }
+            return new AudioFeatures(tempo, rmsDb, centroid, bestMajor - bestMinor, key);
+        }
+
+        // Strongest periodicity of the onset curve between 50 and 200 BPM
+        private double tempo(double framesPerSecond) {
+            double mean = 0;
+            for (int i = 0; i < frames; i++) mean += onsets[i];
+            mean /= frames;
+            for (int i = 0; i < frames; i++) onsets[i] = Math.max(0, onsets[i] - mean);
+
+            int minLag = (int) Math.floor(framesPerSecond * 60 / 200);
+            int maxLag = (int) Math.ceil(framesPerSecond * 60 / 50);
+            double[] score = new double[maxLag + 2];
+            int bestLag = -1;
+            for (int lag = minLag; lag <= maxLag + 1 && lag < frames; lag++) {
+                double sum = 0;
+                for (int i = 0; i + lag < frames; i++) sum += onsets[i] * onsets[i + lag];
+                double bpm = 60 * framesPerSecond / lag;
+                double octaves = Math.log(bpm / 120) / Math.log(2);
+                score[lag] = sum / (frames - lag) * Math.exp(-0.5 * octaves * octaves);
+                if (lag <= maxLag && (bestLag < 0 || score[lag] > score[bestLag])) bestLag = lag;
+            }
+            if (bestLag < 0) return 0;
+
+            // Parabolic fit around the peak for a finer lag
+            double lag = bestLag;
+            if (bestLag > minLag && bestLag + 1 < score.length) {
+                double a = score[bestLag - 1];
+                double b = score[bestLag];
+                double c = score[bestLag + 1];
+                double denominator = a - 2 * b + c;
+                if (denominator < 0) lag += 0.5 * (a - c) / denominator;
+            }
+            return 60 * framesPerSecond / lag;
+        }
+
+        // Pearson correlation of the chroma with a key profile rotated to `key`
+        private double correlate(double[] profile, int key) {
+            double meanC = 0;
+            double meanP = 0;
+            for (int i = 0; i < 12; i++) {
+                meanC += chroma[(i + key) % 12];
+                meanP += profile[i];
+            }
+            meanC /= 12;
+            meanP /= 12;
+            double cov = 0;
+            double varC = 0;
+            double varP = 0;
+            for (int i = 0; i < 12; i++) {
+                double c = chroma[(i + key) % 12] - meanC;
+                double p = profile[i] - meanP;
+                cov += c * p;
+                varC += c * c;
+                varP += p * p;
+            }
+            return varC > 0 ? cov / Math.sqrt(varC * varP) : 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+
+// Where decoded PCM ends up: a sound card line, or nothing at all in tests and benchmarks.
+// write() is called from the engine's output thread only; flush() may come from any thread.
+public interface AudioSink extends AutoCloseable {
+
+    // (Re)opens the sink for the given format, closing whatever was open before
+    void open(AudioFormat format) throws Exception;
+
+    AudioFormat getFormat();
+
+    // Blocks while the device buffer is full
+    void write(byte[] data, int offset, int length);
+
+    // Plays out whatever is still buffered
+    void drain();
+
+    // Drops whatever is still buffered, unblocking a pending write()
+    void flush();
+
+    // Stops consuming audio but keeps what is buffered, resume() carries on from the same sample
+    void pause();
+
+    void resume();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,127 @@
+package com.tunesphere;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Login and registration off the FX thread. Hashing is deliberately slow, so it runs on a small
+// bounded pool; when too many requests pile up, new ones fail fast instead of queueing forever.
+public class AuthService {
+
+    public static final long TARGET_HASH_MILLIS = 150;
+    private static final int THREADS = 2;
+    private static final int MAX_QUEUED = 32;
+
+    public enum RegisterResult { OK, TAKEN, ERROR }
+
+    private static AuthService shared;
+
+    private final PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+    private final UserDirectory directory = new UserDirectory();
+    private final ExecutorService executor;
+    private final CompletableFuture<Void> ready;
+
+    private AuthService() {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), TaskRuntime.factory("tunesphere-auth"), new ThreadPoolExecutor.AbortPolicy());
+        // Warm the directory first (cheap, and the register form wants it), then calibrate
+        // so every hash written from now on uses this machine's cost
+        ready = CompletableFuture.runAsync(directory::warmUp, executor).thenRunAsync(() -> {
+            int n = hasher.calibrate(TARGET_HASH_MILLIS);
+            System.out.println("Password hashing: " + n + " PBKDF2 iterations (target " + TARGET_HASH_MILLIS + " ms)");
+        }, executor);
+        // Rehashing a big legacy table takes a while; do it on the side so logins aren't stuck behind it
+        ready.thenRun(() -> {
+            Thread t = TaskRuntime.newThread("tunesphere-auth-migrate", this::migratePlaintextPasswords);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+        });
+    }
+
+    public static synchronized AuthService shared() {
+        if (shared == null) shared = new AuthService();
+        return shared;
+    }
+
+    public CompletableFuture<Boolean> authenticate(String username, String password) {
+        return submit(() -> {
+            UserDirectory.User user = directory.find(username);
+            if (user == null) {
+                hasher.burn(password);
+                return false;
+            }
+            String stored = user.passwordHash;
+            boolean ok = hasher.verify(password, stored);
+            // Upgrade old plaintext rows and hashes made with a lower cost
+            if (ok && hasher.needsRehash(stored)) {
+                String rehashed = hasher.hash(password);
+                Database.update("UPDATE users SET password=? WHERE username=?", rehashed, username);
+                directory.passwordChanged(username, rehashed);
+            }
+            return ok;
+        });
+    }
+
+    public CompletableFuture<RegisterResult> register(String username, String email, String password) {
+        // Known duplicates are turned away before paying for a hash
+        if (Boolean.TRUE.equals(directory.isUsernameTakenFast(username))) {
+            return CompletableFuture.completedFuture(RegisterResult.TAKEN);
+        }
+        return submit(() -> {
+            try {
+                String hash = hasher.hash(password);
+                Database.update("INSERT INTO users (username, email, password) VALUES (?, ?, ?)",
+                        username, email, hash);
+                directory.added(username, email, hash);
+                return RegisterResult.OK;
+            } catch (SQLException e) {
+                if (e.getMessage() != null && e.getMessage().contains("UNIQUE")) return RegisterResult.TAKEN;
+                System.out.println("Error: " + e.getMessage());
+                return RegisterResult.ERROR;
+            }
+        });
+    }
+
+    public UserDirectory getDirectory() {
+        return directory;
+    }
+
+    public int getIterations() {
+        return hasher.getIterations();
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ready.handle((v, e) -> null).thenRunAsync(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }, executor).whenComplete((v, e) -> {
+            // The queue was full: thenRunAsync reports the RejectedExecutionException here, never to the caller
+            if (e != null) result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        });
+        return result;
+    }
+
+    // One-off upgrade of rows written before passwords were hashed
+    private void migratePlaintextPasswords() {
+        try {
+            List<String[]> plain = Database.query("SELECT username, password FROM users WHERE password NOT LIKE ?", rs -> {
+                List<String[]> rows = new ArrayList<>();
+                while (rs.next()) rows.add(new String[]{rs.getString(1), rs.getString(2)});
+                return rows;
+            }, PasswordHasher.PREFIX + "%");
+            for (String[] row : plain) {
+                String hash = hasher.hash(row[1]);
+                Database.update("UPDATE users SET password=? WHERE username=? AND password=?", hash, row[0], row[1]);
+                directory.passwordChanged(row[0], hash);
+            }
+            if (!plain.isEmpty()) System.out.println("Hashed " + plain.size() + " plaintext passwords");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.tunesphere;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+// Headless mood classification over a folder of images and/or videos, for pre-classifying recorded
+// sessions and tuning the thresholds. Runs the same HaarMoodClassifier as the camera screen on a
+// fork-join pool (one classifier per worker), streams one row per frame to CSV or JSON Lines and
+// prints the throughput at the end. JavaFX is never touched.
+//
+//   java -cp ... com.tunesphere.App classify <dir> [options]    (see usage())
+public class BatchClassifier {
+
+    private static final int IMAGES_PER_TASK = 16;
+
+    private final File input;
+    private final boolean recursive;
+    private final int threads;
+    private final int every;
+    private final MoodClassifier.Settings settings;
+    private final ResultWriter out;
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong faces = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+    private final AtomicLongArray moods = new AtomicLongArray(Mood.values().length);
+
+    // One classifier per fork-join worker, all closed at the end
+    private final Queue<MoodClassifier> created = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<MoodClassifier> classifiers;
+
+    public BatchClassifier(File input, boolean recursive, int threads, int every,
+                           MoodClassifier.Settings settings, ResultWriter out) {
+        this.input = input;
+        this.recursive = recursive;
+        this.threads = threads;
+        this.every = Math.max(1, every);
+        this.settings = settings;
+        this.out = out;
+        this.classifiers = ThreadLocal.withInitial(() -> {
+            MoodClassifier c = MoodClassifier.create(settings);
+            created.add(c);
+            return c;
+        });
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0 || args[0].startsWith("-")) {
+            usage();
+            return;
+        }
+
+        File input = new File(args[0]);
+        MoodClassifier.Settings settings = new MoodClassifier.Settings();
+        boolean recursive = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int every = 1;
+        String outPath = null;
+        String format = null;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out" -> outPath = args[++i];
+                    case "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--every" -> every = Integer.parseInt(args[++i]);
+                    case "--recursive" -> recursive = true;
+                    case "--engine" -> settings.engine = args[++i];
+                    case "--model" -> settings.modelPath = args[++i];
+                    case "--sad-ratio" -> settings.sadRatio = Double.parseDouble(args[++i]);
+                    case "--smile-scale" -> settings.smileScaleFactor = Double.parseDouble(args[++i]);
+                    case "--smile-neighbors" -> settings.smileMinNeighbors = Integer.parseInt(args[++i]);
+                    case "--min-smile" -> settings.minSmileSize = Integer.parseInt(args[++i]);
+                    case "--detect-width" -> settings.detectWidth = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            usage();
+            return;
+        }
+        if (format == null) format = outPath != null && outPath.matches(".*\\.jsonl?") ? "json" : "csv";
+
+        try (ResultWriter out = ResultWriter.open(outPath, format)) {
+            new BatchClassifier(input, recursive, threads, every, settings, out).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("""
+                Usage: classify <image/video file or folder> [options]
+                  --out <file>            write results here (default: stdout)
+                  --format csv|json       json = one object per line (default: from --out, else csv)
+                  --threads <n>           worker threads (default: all cores)
+                  --every <n>             only classify every n-th video frame (default: 1)
+                  --recursive             include sub-folders
+                  --engine haar|dnn       classifier (default: haar)
+                  --model <file.onnx>     emotion model for dnn (default: models/emotion-ferplus-8.onnx)
+                  --sad-ratio <r>         face height/width above this is SAD (default: 1.5)
+                  --smile-scale <f>       smile cascade scale factor (default: 1.7)
+                  --smile-neighbors <n>   smile cascade min neighbours (default: 22)
+                  --min-smile <px>        smallest smile in pixels (default: 25)
+                  --detect-width <px>     width frames are scaled to for face search (default: 320)""");
+    }
+
+    public void run() throws IOException {
+        List<File> files = new ArrayList<>();
+        collect(input, files, true);
+        if (files.isEmpty()) {
+            System.out.println("No images or videos found in " + input.getAbsolutePath());
+            return;
+        }
+        // Videos first, they are the long tasks
+        files.sort(Comparator.comparing((File f) -> !isVideo(f)).thenComparing(File::getPath));
+
+        // Fail fast (missing cascade files) before spreading the error over every worker
+        try {
+            classifiers.get();
+        } catch (IllegalStateException e) {
+            System.out.println("❌ " + e.getMessage());
+            return;
+        }
+
+        out.header();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Batch(files, 0, files.size()));
+        } finally {
+            pool.shutdown();
+            for (MoodClassifier c : created) c.close();
+        }
+        out.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        StringBuilder moodCounts = new StringBuilder();
+        for (Mood mood : Mood.values()) moodCounts.append(", ").append(mood.folderName()).append(' ').append(moods.get(mood.ordinal()));
+        System.err.printf(Locale.ROOT, "Classified %d frames from %d files in %.1f s (%.1f frames/s, %d threads): %d faces%s%s%n",
+                frames.get(), files.size(), seconds, frames.get() / Math.max(seconds, 1e-9), threads, faces.get(), moodCounts,
+                failedFiles.get() > 0 ? ", " + failedFiles.get() + " unreadable files" : "");
+    }
+
+    private void collect(File file, List<File> files, boolean top) {
+        if (file.isDirectory()) {
+            if (!top && !recursive) return;
+            File[] children = file.listFiles();
+            if (children != null) for (File child : children) collect(child, files, false);
+        } else if (isImage(file) || isVideo(file)) {
+            files.add(file);
+        }
+    }
+
+    // Splits the file list until each task holds one video or a handful of images
+    private class Batch extends RecursiveAction {
+        // Never serialised; RecursiveAction just happens to be Serializable
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+        private final int from;
+        private final int to;
+
+        Batch(List<File> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int size = to - from;
+            if (size == 1 || size <= IMAGES_PER_TASK && !isVideo(files.get(from))) {
+                for (int i = from; i < to; i++) classifyFile(files.get(i));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Batch(files, from, mid), new Batch(files, mid, to));
+        }
+    }
+
+    private void classifyFile(File file) {
+        MoodClassifier classifier = classifiers.get();
+        classifier.reset();
+        try {
+            if (isVideo(file)) {
+                classifyVideo(file, classifier);
+            } else {
+                Mat image = imread(file.getAbsolutePath());
+                try {
+                    if (image.empty()) throw new IOException("unreadable image");
+                    record(file, 0, 0, classifier.classify(image), classifier);
+                } finally {
+                    image.release();
+                }
+            }
+        } catch (Exception e) {
+            failedFiles.incrementAndGet();
+            System.err.println("Skipping " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Frames of one video go through one classifier in order, so face tracking carries over
+    private void classifyVideo(File file, MoodClassifier classifier) throws Exception {
+        try (FrameSource source = FrameSource.videoFile(file);
+             OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat()) {
+            source.start();
+            long index = 0;
+            Frame frame;
+            while ((frame = source.grab()) != null) {
+                if (index % every == 0) {
+                    Mat mat = converter.convert(frame);
+                    if (mat != null) record(file, index, frame.timestamp / 1000, classifier.classify(mat), classifier);
+                }
+                index++;
+            }
+        }
+    }
+
+    private void record(File file, long frame, long timeMillis, Mood mood, MoodClassifier classifier) throws IOException {
+        frames.incrementAndGet();
+        if (mood != null) {
+            faces.incrementAndGet();
+            moods.incrementAndGet(mood.ordinal());
+        }
+        // Ratio and smile count only exist for the Haar heuristic (they are what its thresholds act on)
+        HaarMoodClassifier haar = classifier instanceof HaarMoodClassifier h ? h : null;
+        out.row(file.getPath(), frame, timeMillis, mood, classifier.getFace(), classifier.getConfidence(),
+                haar != null ? haar.getRatio() : Double.NaN, haar != null ? haar.getSmileCount() : -1);
+    }
+
+    private static boolean isImage(File f) {
+        String name = f.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".bmp");
+    }
+
+    private static boolean isVideo(File f) {
+        String name = f.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".mp4") || name.endsWith(".avi") || name.endsWith(".mov") || name.endsWith(".mkv") || name.endsWith(".webm");
+    }
+
+    // --- OUTPUT ---
+    // Rows arrive from all workers; writes are serialized and buffered
+    public abstract static class ResultWriter implements AutoCloseable {
+        protected final Writer writer;
+        private final boolean ownsStream;
+
+        ResultWriter(Writer writer, boolean ownsStream) {
+            this.writer = writer;
+            this.ownsStream = ownsStream;
+        }
+
+        static ResultWriter open(String path, String format) throws IOException {
+            boolean toFile = path != null && !path.equals("-");
+            Writer w = new BufferedWriter(toFile ? new FileWriter(path) : new OutputStreamWriter(System.out), 1 << 16);
+            return format.equals("json") ? new JsonWriter(w, toFile) : new CsvWriter(w, toFile);
+        }
+
+        void header() throws IOException {
+        }
+
+        abstract void row(String file, long frame, long timeMillis, Mood mood, Rect face, float confidence,
+                          double ratio, long smiles) throws IOException;
+
+        synchronized void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (ownsStream) writer.close(); else writer.flush();
+        }
+    }
+
+    static final class CsvWriter extends ResultWriter {
+        CsvWriter(Writer writer, boolean ownsStream) {
+            super(writer, ownsStream);
+        }
+
+        @Override
+        void header() throws IOException {
+            writer.write("file,frame,time_ms,mood,face_x,face_y,face_w,face_h,confidence,ratio,smiles\n");
+        }
+
+        @Override
+        synchronized void row(String file, long frame, long timeMillis, Mood mood, Rect face, float confidence,
+                          double ratio, long smiles) throws IOException {
+            writer.write('"' + file.replace("\"", "\"\"") + "\"," + frame + ',' + timeMillis + ',');
+            if (face == null) {
+                writer.write("none,,,,,,,\n");
+            } else {
+                writer.write(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.3f,%s,%s%n", mood.folderName(),
+                        face.x(), face.y(), face.width(), face.height(), confidence,
+                        Double.isNaN(ratio) ? "" : String.format(Locale.ROOT, "%.3f", ratio), smiles < 0 ? "" : smiles));
+            }
+        }
+    }
+
+    static final class JsonWriter extends ResultWriter {
+        JsonWriter(Writer writer, boolean ownsStream) {
+            super(writer, ownsStream);
+        }
+
+        @Override
+        synchronized void row(String file, long frame, long timeMillis, Mood mood, Rect face, float confidence,
+                          double ratio, long smiles) throws IOException {
+            writer.write("{\"file\":\"" + file.replace("\\", "\\\\").replace("\"", "\\\"") + "\",\"frame\":" + frame
+                    + ",\"time_ms\":" + timeMillis + ",\"mood\":");
+            if (face == null) {
+                writer.write("null}\n");
+            } else {
+                writer.write(String.format(Locale.ROOT, "\"%s\",\"face\":[%d,%d,%d,%d],\"confidence\":%.3f",
+                        mood.folderName(), face.x(), face.y(), face.width(), face.height(), confidence));
+                if (!Double.isNaN(ratio)) writer.write(String.format(Locale.ROOT, ",\"ratio\":%.3f,\"smiles\":%d", ratio, smiles));
+                writer.write("}\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.tunesphere;
+
+import java.nio.charset.StandardCharsets;
+
+// Fixed-size Bloom filter over strings. "false" means definitely absent, "true" means maybe present.
+// Not thread-safe, callers synchronize.
+public class BloomFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int size;
+
+    // Sized for `capacity` entries at the given false-positive rate
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        this.capacity = Math.max(1, capacity);
+        long m = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, m));
+        bits = new long[(bitCount + 63) >>> 6];
+        hashCount = (int) Math.max(1, Math.round((double) bitCount / this.capacity * Math.log(2)));
+    }
+
+    public void add(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        size++;
+    }
+
+    public boolean mightContain(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Past capacity the false-positive rate climbs quickly, time to rebuild a bigger one
+    public boolean isSaturated() {
+        return size > capacity;
+    }
+
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    // 64-bit FNV-1a over UTF-8 with a murmur finalizer, split into two 32-bit hashes (Kirsch-Mitzenmacher)
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
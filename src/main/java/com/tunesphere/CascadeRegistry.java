@@ -0,0 +1,144 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Process-wide pool of loaded Haar cascades.
+// Parsing the XML files is slow (the frontal face one is ~24k lines), so they are loaded once in the
+// background right after the native libraries (see NativeLibraries) and then lent out. CascadeClassifier isn't thread-safe, so each lease is
+// exclusive to its holder until it is closed; a new copy is only parsed when all are in use.
+public final class CascadeRegistry {
+
+    public enum Cascade {
+        FRONTAL_FACE("haarcascade_frontalface_default.xml"),
+        SMILE("haarcascade_smile.xml");
+
+        private final String file;
+
+        Cascade(String file) {
+            this.file = file;
+        }
+
+        public String file() {
+            return file;
+        }
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final Cascade cascade;
+        private CascadeClassifier classifier;
+
+        private Lease(Cascade cascade, CascadeClassifier classifier) {
+            this.cascade = cascade;
+            this.classifier = classifier;
+        }
+
+        public CascadeClassifier classifier() {
+            if (classifier == null) throw new IllegalStateException("Lease already returned");
+            return classifier;
+        }
+
+        @Override
+        public void close() {
+            if (classifier != null) {
+                pools.get(cascade).idle.offer(classifier);
+                classifier = null;
+            }
+        }
+    }
+
+    private static final class Pool {
+        final ConcurrentLinkedQueue<CascadeClassifier> idle = new ConcurrentLinkedQueue<>();
+        final AtomicInteger loaded = new AtomicInteger();
+        final AtomicLong totalLoadNanos = new AtomicLong();
+    }
+
+    private static final Map<Cascade, Pool> pools = new EnumMap<>(Cascade.class);
+    private static volatile CompletableFuture<Void> warmUp;
+
+    static {
+        for (Cascade cascade : Cascade.values()) pools.put(cascade, new Pool());
+    }
+
+    private CascadeRegistry() {
+    }
+
+    // Loads one copy of every cascade on a background thread. Safe to call more than once.
+    public static synchronized CompletableFuture<Void> warmUpAsync() {
+        if (warmUp == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            TaskRuntime.nativeWork().execute(() -> {
+                try {
+                    for (Cascade cascade : Cascade.values()) {
+                        Pool pool = pools.get(cascade);
+                        if (pool.loaded.get() == 0) pool.idle.offer(load(cascade));
+                    }
+                    System.out.println(report());
+                    future.complete(null);
+                } catch (Throwable t) {
+                    System.out.println("Cascade warm-up failed: " + t.getMessage());
+                    future.completeExceptionally(t);
+                }
+            });
+            warmUp = future;
+        }
+        return warmUp;
+    }
+
+    // Borrows a loaded classifier, parsing a new one only if every copy is already lent out.
+    // Blocks while loading, so call it off the FX thread.
+    public static Lease acquire(Cascade cascade) {
+        // Rather wait for the warm-up than parse the same file twice in parallel
+        CompletableFuture<Void> pending = warmUp;
+        if (pending != null && !pending.isDone()) {
+            try {
+                pending.join();
+            } catch (Exception ignored) {
+                // load() below reports the problem
+            }
+        }
+
+        CascadeClassifier classifier = pools.get(cascade).idle.poll();
+        if (classifier == null) classifier = load(cascade);
+        return new Lease(cascade, classifier);
+    }
+
+    public static int getLoadedCount(Cascade cascade) {
+        return pools.get(cascade).loaded.get();
+    }
+
+    public static double getAverageLoadMillis(Cascade cascade) {
+        Pool pool = pools.get(cascade);
+        int n = pool.loaded.get();
+        return n > 0 ? pool.totalLoadNanos.get() / 1e6 / n : 0;
+    }
+
+    public static String report() {
+        StringBuilder sb = new StringBuilder("Cascades:");
+        for (Cascade cascade : Cascade.values()) {
+            Pool pool = pools.get(cascade);
+            sb.append(String.format(" %s %d loaded (%.0f ms avg), %d idle;", cascade.file(),
+                    pool.loaded.get(), getAverageLoadMillis(cascade), pool.idle.size()));
+        }
+        return sb.toString();
+    }
+
+    private static CascadeClassifier load(Cascade cascade) {
+        long start = System.nanoTime();
+        CascadeClassifier classifier = new CascadeClassifier(cascade.file());
+        if (classifier.empty()) {
+            classifier.close();
+            throw new IllegalStateException(cascade.file() + " not found. Please add it to the project root.");
+        }
+        Pool pool = pools.get(cascade);
+        pool.totalLoadNanos.addAndGet(System.nanoTime() - start);
+        pool.loaded.incrementAndGet();
+        return classifier;
+    }
+}
@@ -0,0 +1,149 @@
+package com.tunesphere;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Small fixed-size pool of SQLite connections with per-connection pragmas and usage metrics
+public class ConnectionPool implements AutoCloseable {
+
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 10_000;
+    // While waiting, how often to check whether a discarded connection left room to open a new one
+    private static final long RETRY_CREATE_MILLIS = 50;
+
+    private static final Histogram acquireLatency = Metrics.histogram("db.acquire");
+    private static final Histogram queryLatency = Metrics.histogram("db.query");
+
+    private final String url;
+    private final int maxSize;
+    private final ArrayBlockingQueue<PooledConnection.Physical> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    private final AtomicLong acquires = new AtomicLong();
+    private final AtomicLong acquireNanos = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+    private final AtomicLong maxQueryNanos = new AtomicLong();
+
+    public ConnectionPool(String url, int maxSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    public PooledConnection acquire() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(ACQUIRE_TIMEOUT_MILLIS);
+        PooledConnection.Physical conn = idle.poll();
+        if (conn == null) conn = createIfAllowed();
+        while (conn == null) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) throw new SQLException("No database connection free after " + ACQUIRE_TIMEOUT_MILLIS + " ms");
+            if (closed) throw new SQLException("Connection pool is closed");
+            try {
+                conn = idle.poll(Math.min(left, TimeUnit.MILLISECONDS.toNanos(RETRY_CREATE_MILLIS)), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+            // A connection discarded meanwhile frees a slot without ever showing up in `idle`
+            if (conn == null) conn = createIfAllowed();
+        }
+        inUse.incrementAndGet();
+        long nanos = System.nanoTime() - start;
+        acquires.incrementAndGet();
+        acquireNanos.addAndGet(nanos);
+        acquireLatency.record(nanos);
+        return new PooledConnection(this, conn);
+    }
+
+    void release(PooledConnection.Physical conn) {
+        inUse.decrementAndGet();
+        try {
+            // Don't hand a half-finished transaction to the next user
+            if (!conn.connection.getAutoCommit()) {
+                conn.connection.rollback();
+                conn.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(conn);
+            return;
+        }
+        if (closed || !idle.offer(conn)) discard(conn);
+    }
+
+    public void recordQuery(long nanos) {
+        queries.incrementAndGet();
+        queryNanos.addAndGet(nanos);
+        maxQueryNanos.accumulateAndGet(nanos, Math::max);
+        queryLatency.record(nanos);
+    }
+
+    private synchronized PooledConnection.Physical createIfAllowed() throws SQLException {
+        if (created.get() >= maxSize) return null;
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            stmt.execute("PRAGMA synchronous = NORMAL"); // safe with WAL, far fewer fsyncs
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            stmt.execute("PRAGMA cache_size = -8000");   // 8 MB page cache
+        }
+        created.incrementAndGet();
+        return new PooledConnection.Physical(conn);
+    }
+
+    private void discard(PooledConnection.Physical conn) {
+        conn.close();
+        synchronized (this) {
+            created.decrementAndGet();
+        }
+    }
+
+    public int getOpenConnections() {
+        return created.get();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public double getAvgAcquireMillis() {
+        long n = acquires.get();
+        return n > 0 ? acquireNanos.get() / 1e6 / n : 0;
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    public double getAvgQueryMillis() {
+        long n = queries.get();
+        return n > 0 ? queryNanos.get() / 1e6 / n : 0;
+    }
+
+    public double getMaxQueryMillis() {
+        return maxQueryNanos.get() / 1e6;
+    }
+
+    public String report() {
+        return String.format("DB pool: %d/%d open, %d in use, %.3f ms avg acquire; %d queries, %.3f ms avg, %.3f ms max",
+                getOpenConnections(), maxSize, getInUse(), getAvgAcquireMillis(),
+                getQueryCount(), getAvgQueryMillis(), getMaxQueryMillis());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection.Physical conn;
+        while ((conn = idle.poll()) != null) discard(conn);
+    }
+}
@@ -0,0 +1,177 @@
+package com.tunesphere;
+
+import javazoom.jl.decoder.JavaLayerException;
+
+import javax.sound.sampled.AudioFormat;
+
+// Two-deck mixer for switching playlists without a hard cut. The outgoing and incoming tracks are
+// decoded side by side, both resampled to the format the sink already plays, and blended with an
+// equal-power curve (cos/sin gains, so loudness stays constant) over the fade window. After the fade
+// the incoming track keeps playing through its deck until it ends. One mixer per engine, reused for
+// every fade: the mix loop only touches buffers allocated here.
+public class CrossfadeMixer {
+
+    public static final int BLOCK_FRAMES = 1152;
+
+    // One track being decoded and converted to the mixer's rate
+    private static final class Deck {
+        final PcmRing.Block scratch = new PcmRing.Block(TrackDecoder.MAX_FRAME_BYTES);
+        final Resampler resampler = new Resampler();
+        TrackDecoder decoder;
+        boolean ended;
+        boolean flushed;
+        int frameIndex;
+        float frameMillis;
+
+        void start(TrackDecoder decoder, float rate) {
+            this.decoder = decoder;
+            resampler.reset(rate);
+            ended = false;
+            flushed = false;
+        }
+
+        // Fills out with up to `frames` stereo frames, fewer only at the end of the track
+        int read(float[] out, int frames) throws JavaLayerException {
+            int done = 0;
+            while (done < frames) {
+                done += resampler.pull(out, done, frames - done);
+                if (done == frames || !resampler.needsInput()) continue;
+                if (ended) {
+                    if (flushed) break;
+                    resampler.pushSilence(2);
+                    flushed = true;
+                    continue;
+                }
+                if (!decoder.decodeInto(scratch)) {
+                    ended = true;
+                    continue;
+                }
+                frameIndex = scratch.frameIndex;
+                frameMillis = scratch.frameMillis;
+                if (scratch.length > 0) resampler.push(scratch.data, scratch.length, scratch.format);
+            }
+            return done;
+        }
+    }
+
+    private final Deck outgoing = new Deck();
+    private final Deck incoming = new Deck();
+    private final float[] a = new float[BLOCK_FRAMES * 2];
+    private final float[] b = new float[BLOCK_FRAMES * 2];
+    private AudioFormat format;
+    private long fadeFrames;
+    private long position;
+    private boolean active = false;
+    private boolean fading = false;
+
+    // Takes over `from` (closed when the fade ends); `to` stays owned by the caller
+    public void start(TrackDecoder from, TrackDecoder to, AudioFormat format, long fadeMillis) {
+        closeOutgoing();
+        this.format = format;
+        this.fadeFrames = Math.max(1, (long) (format.getSampleRate() * fadeMillis / 1000));
+        this.position = 0;
+        outgoing.start(from, format.getSampleRate());
+        incoming.start(to, format.getSampleRate());
+        active = true;
+        fading = true;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isFading() {
+        return fading;
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    // Mixes the next block; returns false once the incoming track has ended
+    public boolean mixInto(PcmRing.Block block) throws JavaLayerException {
+        int channels = format.getChannels();
+        int frames = Math.min(BLOCK_FRAMES, block.data.length / (2 * channels));
+        int got = incoming.read(b, frames);
+
+        if (fading) {
+            int old = outgoing.read(a, frames);
+            for (int i = old * 2; i < frames * 2; i++) a[i] = 0;
+            if (got < frames) {
+                // Incoming track shorter than one block: let the outgoing one finish the block
+                for (int i = got * 2; i < frames * 2; i++) b[i] = 0;
+                got = frames;
+            }
+            applyFade(frames);
+        }
+
+        byte[] out = block.data;
+        int j = 0;
+        for (int i = 0; i < got; i++) {
+            float l = b[2 * i];
+            float r = b[2 * i + 1];
+            if (channels == 1) {
+                j = put(out, j, (l + r) * 0.5f);
+            } else {
+                j = put(out, j, l);
+                j = put(out, j, r);
+            }
+        }
+        block.length = j;
+        block.format = format;
+        block.frameIndex = incoming.frameIndex;
+        block.frameMillis = incoming.frameMillis;
+        return got > 0;
+    }
+
+    // b = outgoing * cos + incoming * sin, the angle going 0..pi/2 over the fade.
+    // The gains advance by rotating (cos, sin) one step per frame instead of calling cos/sin per sample.
+    private void applyFade(int frames) {
+        double delta = Math.PI / 2 / fadeFrames;
+        double angle = position * delta;
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+        double cd = Math.cos(delta);
+        double sd = Math.sin(delta);
+        for (int i = 0; i < frames; i++) {
+            if (position >= fadeFrames) {
+                c = 0;
+                s = 1;
+            }
+            b[2 * i] = (float) (a[2 * i] * c + b[2 * i] * s);
+            b[2 * i + 1] = (float) (a[2 * i + 1] * c + b[2 * i + 1] * s);
+            double nc = c * cd - s * sd;
+            s = s * cd + c * sd;
+            c = nc;
+            position++;
+        }
+        if (position >= fadeFrames) {
+            fading = false;
+            closeOutgoing();
+        }
+    }
+
+    private static int put(byte[] out, int j, float sample) {
+        int v = Math.round(sample);
+        if (v > Short.MAX_VALUE) v = Short.MAX_VALUE;
+        else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+        out[j] = (byte) v;
+        out[j + 1] = (byte) (v >> 8);
+        return j + 2;
+    }
+
+    private void closeOutgoing() {
+        if (outgoing.decoder != null) {
+            outgoing.decoder.close();
+            outgoing.decoder = null;
+        }
+    }
+
+    // Ends the mix; the incoming decoder is left to its owner
+    public void close() {
+        closeOutgoing();
+        incoming.decoder = null;
+        active = false;
+        fading = false;
+    }
+}
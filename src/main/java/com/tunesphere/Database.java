@@ -2,39 +2,173 @@ package com.tunesphere;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 public class Database {
     private static final String URL = "jdbc:sqlite:tunesphere.db"; // local database file
+    private static final int POOL_SIZE = 4;
 
-    public static Connection connect() {
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(URL);
+    // Schema history, one entry per version. Never edit a shipped entry, append a new one.
+    private static final String[][] MIGRATIONS = {
+            // 1: users
+            {"""
+                CREATE TABLE IF NOT EXISTS users (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    username TEXT UNIQUE NOT NULL,
+                    email TEXT UNIQUE NOT NULL,
+                    password TEXT NOT NULL
+                );
+            """},
+            // 2: music library index (LibraryIndex)
+            {"""
+                CREATE TABLE IF NOT EXISTS tracks (
+                    path TEXT PRIMARY KEY,
+                    mood TEXT,
+                    title TEXT,
+                    artist TEXT,
+                    album TEXT,
+                    duration_ms INTEGER,
+                    bitrate_kbps INTEGER,
+                    size INTEGER NOT NULL,
+                    mtime INTEGER NOT NULL
+                );
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_tracks_mood ON tracks (mood, path)"},
+            // 3: audio features per track (FeatureAnalyzer); size/mtime tell whether they are still current
+            {"""
+                CREATE TABLE IF NOT EXISTS track_features (
+                    path TEXT PRIMARY KEY,
+                    size INTEGER NOT NULL,
+                    mtime INTEGER NOT NULL,
+                    tempo_bpm REAL,
+                    rms_db REAL,
+                    centroid_hz REAL,
+                    mode REAL,
+                    key INTEGER
+                );
+            """},
+            // 4: listening history (HistoryLog), append-only
+            {"""
+                CREATE TABLE IF NOT EXISTS history (
+                    id INTEGER PRIMARY KEY,
+                    at INTEGER NOT NULL,
+                    type TEXT NOT NULL,
+                    username TEXT,
+                    session TEXT,
+                    mood TEXT,
+                    path TEXT,
+                    position_ms INTEGER
+                );
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_history_user_path ON history (username, path, at)",
+            "CREATE INDEX IF NOT EXISTS idx_history_at ON history (at)"},
+    };
+
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private static ConnectionPool pool;
+
+    // Opens the pool and brings the schema up to date. Runs once, later calls do nothing.
+    public static synchronized void init() {
+        init(URL, POOL_SIZE);
+    }
+
+    public static synchronized void init(String url, int poolSize) {
+        if (pool != null) return;
+        try (Connection conn = DriverManager.getConnection(url)) {
+            try (Statement stmt = conn.createStatement()) {
+                // WAL lets readers (login, playlists) run while the library indexer writes
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            migrate(conn);
+            pool = new ConnectionPool(url, poolSize);
+            Metrics.gauge("db.inUse", pool::getInUse);
             System.out.println("✅ Connected to SQLite!");
-            createUsersTable(conn);
         } catch (SQLException e) {
             System.out.println("❌ SQLite connection failed!");
             e.printStackTrace();
         }
-        return conn;
-    }
-
-    private static void createUsersTable(Connection conn) {
-        String createTableSQL = """
-            CREATE TABLE IF NOT EXISTS users (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                username TEXT UNIQUE NOT NULL,
-                email TEXT UNIQUE NOT NULL,
-                password TEXT NOT NULL
-            );
-        """;
+    }
+
+    private static synchronized ConnectionPool pool() throws SQLException {
+        if (pool == null) init();
+        if (pool == null) throw new SQLException("Database is not available");
+        return pool;
+    }
+
+    // Borrow a connection for several statements / a transaction; close() returns it to the pool
+    public static PooledConnection acquire() throws SQLException {
+        return pool().acquire();
+    }
+
+    public static <T> T query(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        ConnectionPool p = pool();
+        try (PooledConnection conn = p.acquire()) {
+            long start = System.nanoTime();
+            PreparedStatement stmt = bind(conn.prepare(sql), params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapper.map(rs);
+            } finally {
+                p.recordQuery(System.nanoTime() - start);
+            }
+        }
+    }
+
+    public static int update(String sql, Object... params) throws SQLException {
+        ConnectionPool p = pool();
+        try (PooledConnection conn = p.acquire()) {
+            long start = System.nanoTime();
+            try {
+                return bind(conn.prepare(sql), params).executeUpdate();
+            } finally {
+                p.recordQuery(System.nanoTime() - start);
+            }
+        }
+    }
+
+    public static synchronized String report() {
+        return pool != null ? pool.report() : "DB pool: not started";
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            System.out.println(pool.report());
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static PreparedStatement bind(PreparedStatement stmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+        return stmt;
+    }
+
+    private static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version >= MIGRATIONS.length) return;
+
+        conn.setAutoCommit(false);
         try (Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
-            System.out.println("✅ Users table ready!");
+            for (int v = version; v < MIGRATIONS.length; v++) {
+                for (String sql : MIGRATIONS[v]) stmt.execute(sql);
+            }
+            stmt.execute("PRAGMA user_version = " + MIGRATIONS.length);
+            conn.commit();
+            System.out.println("✅ Database schema at version " + MIGRATIONS.length);
         } catch (SQLException e) {
-            e.printStackTrace();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
     }
 }
@@ -0,0 +1,60 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Size;
+
+// Every native buffer the detection stage needs, allocated once per detector session and
+// reused on every frame. JavaCPP objects created in the loop are never collected promptly,
+// so nothing in the per-frame path may call `new Mat/RectVector/Size/Scalar`.
+// Owned by a single thread; close() frees everything when the stage stops.
+public class DetectionContext implements AutoCloseable {
+
+    // Downscaled frame and its equalized grayscale version
+    final Mat small = NativeMemory.newMat();
+    final Mat gray = NativeMemory.newMat();
+
+    // Headers pointing into other Mats (no pixel copies), moved around with roi()
+    final Mat searchRoi = NativeMemory.newMat();
+    final Mat faceRoi = NativeMemory.newMat();
+
+    final Rect face = new Rect();
+    final RectVector faces = new RectVector();
+    final RectVector smiles = new RectVector();
+
+    final Size detectSize = new Size();
+    final Size minFaceSize = new Size();
+    final Size minSmileSize = new Size(25, 25);
+    final Size noMaxSize = new Size();
+
+    private boolean closed = false;
+
+    // Points `target` at the given rectangle of `parent` without allocating a new header
+    Mat roi(Mat parent, int x, int y, int width, int height, Mat target) {
+        target.put(parent);
+        target.adjustROI(-y, -(parent.rows() - y - height), -x, -(parent.cols() - x - width));
+        return target;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        NativeMemory.release(small);
+        NativeMemory.release(gray);
+        NativeMemory.release(searchRoi);
+        NativeMemory.release(faceRoi);
+        face.close();
+        faces.close();
+        smiles.close();
+        detectSize.close();
+        minFaceSize.close();
+        minSmileSize.close();
+        noMaxSize.close();
+    }
+}
@@ -0,0 +1,222 @@
+package com.tunesphere;
+
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_dnn.Net;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_32F;
+import static org.bytedeco.opencv.global.opencv_dnn.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+// Emotion recognition with a small ONNX network run on the CPU by OpenCV's dnn module.
+// Expects the FER+ model layout (emotion-ferplus-8.onnx from the ONNX Model Zoo): 64x64 grayscale
+// input with raw 0..255 values, 8 emotion scores out. Faces come from the Haar face cascade; every
+// face in the frame goes through the network in one batched forward pass. Crops, the input blob and
+// the output vector are reused from frame to frame.
+public class DnnMoodClassifier implements MoodClassifier {
+
+    public static final String DEFAULT_MODEL = "models/emotion-ferplus-8.onnx";
+    public static final int INPUT_SIZE = 64;
+
+    // FER+ output order, folded into our three moods
+    private static final Mood[] EMOTION_TO_MOOD = {
+            Mood.NEUTRAL, // neutral
+            Mood.HAPPY,   // happiness
+            Mood.HAPPY,   // surprise
+            Mood.SAD,     // sadness
+            Mood.SAD,     // anger
+            Mood.SAD,     // disgust
+            Mood.SAD,     // fear
+            Mood.SAD,     // contempt
+    };
+
+    private static final Histogram faceLatency = Metrics.histogram("detector.face");
+    private static final Histogram inferenceLatency = Metrics.histogram("detector.dnn");
+    private static final Metrics.Counter noFaceFrames = Metrics.counter("detector.noFace");
+
+    private final int maxBatch;
+    private final Net net;
+    private final CascadeRegistry.Lease faceLease;
+    private final DetectionContext ctx = new DetectionContext();
+    private final FaceTracker tracker;
+
+    // Reused buffers
+    private final Mat gray = NativeMemory.newMat();
+    private final Mat[] cropHeaders;
+    private final Mat[] crops;
+    private final MatVector batch = new MatVector();
+    private final Mat blob = NativeMemory.newMat();
+    private final MatVector outputs = new MatVector();
+    private final Size inputSize = new Size(INPUT_SIZE, INPUT_SIZE);
+    private final Scalar noMean = new Scalar(0, 0, 0, 0);
+    private final Rect face = new Rect();
+    private final float[] scores = new float[EMOTION_TO_MOOD.length];
+
+    // Per face of the last frame / batch
+    private final Mood[] moods;
+    private final float[] confidences;
+    private int faceCount;
+    private int best;
+
+    public DnnMoodClassifier(MoodClassifier.Settings settings) {
+        this.maxBatch = Math.max(1, settings.maxBatch);
+        this.net = readNetFromONNX(settings.modelPath);
+        if (net.empty()) throw new IllegalStateException("Could not load emotion model " + settings.modelPath);
+        net.setPreferableBackend(DNN_BACKEND_OPENCV);
+        net.setPreferableTarget(DNN_TARGET_CPU);
+
+        this.faceLease = CascadeRegistry.acquire(CascadeRegistry.Cascade.FRONTAL_FACE);
+        this.tracker = new FaceTracker(faceLease.classifier(), ctx, settings.detectWidth, settings.fullScanInterval);
+
+        cropHeaders = new Mat[maxBatch];
+        crops = new Mat[maxBatch];
+        for (int i = 0; i < maxBatch; i++) {
+            cropHeaders[i] = NativeMemory.newMat();
+            crops[i] = NativeMemory.newMat();
+        }
+        moods = new Mood[maxBatch];
+        confidences = new float[maxBatch];
+    }
+
+    @Override
+    public String getName() {
+        return "dnn";
+    }
+
+    @Override
+    public Mood classify(Mat bgr) {
+        long start = System.nanoTime();
+        RectVector found = tracker.detectAll(bgr);
+        faceLatency.recordSince(start);
+        faceCount = (int) Math.min(found.size(), maxBatch);
+        if (faceCount == 0) {
+            noFaceFrames.inc();
+            return null;
+        }
+
+        cvtColor(bgr, gray, COLOR_BGR2GRAY);
+        double scale = tracker.getScale();
+        best = 0;
+        long bestArea = -1;
+        for (int i = 0; i < faceCount; i++) {
+            Rect r = found.get(i);
+            int x = (int) Math.round(r.x() / scale);
+            int y = (int) Math.round(r.y() / scale);
+            int w = Math.min((int) Math.round(r.width() / scale), gray.cols() - x);
+            int h = Math.min((int) Math.round(r.height() / scale), gray.rows() - y);
+            if ((long) w * h > bestArea) {
+                bestArea = (long) w * h;
+                best = i;
+                face.x(x).y(y).width(w).height(h);
+            }
+            resize(ctx.roi(gray, x, y, w, h, cropHeaders[i]), crops[i], inputSize, 0, 0, INTER_AREA);
+        }
+
+        classifyCrops(crops, faceCount);
+        return moods[best];
+    }
+
+    // Runs `count` grayscale face crops (any size, resized to 64x64 if needed) through the network
+    // in one pass. Results are read with getMood(i) / getConfidence(i).
+    public void classifyCrops(Mat[] faceCrops, int count) {
+        long start = System.nanoTime();
+        count = Math.min(count, maxBatch);
+        batch.resize(count);
+        for (int i = 0; i < count; i++) batch.put(i, faceCrops[i]);
+        blobFromImages(batch, blob, 1.0, inputSize, noMean, false, false, CV_32F);
+        net.setInput(blob);
+        net.forward(outputs);
+
+        Mat out = outputs.get(0); // count x 8
+        try (FloatIndexer idx = out.createIndexer()) {
+            for (int i = 0; i < count; i++) {
+                for (int k = 0; k < scores.length; k++) scores[k] = idx.get(i, k);
+                softmaxInto(i);
+            }
+        }
+        faceCount = count;
+        inferenceLatency.recordSince(start);
+    }
+
+    // Folds one face's emotion probabilities into moods and keeps the most likely one
+    private void softmaxInto(int face) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (float s : scores) max = Math.max(max, s);
+        float sum = 0;
+        for (int k = 0; k < scores.length; k++) {
+            scores[k] = (float) Math.exp(scores[k] - max);
+            sum += scores[k];
+        }
+        float happy = 0, sad = 0, neutral = 0;
+        for (int k = 0; k < scores.length; k++) {
+            float p = scores[k] / sum;
+            switch (EMOTION_TO_MOOD[k]) {
+                case HAPPY -> happy += p;
+                case SAD -> sad += p;
+                default -> neutral += p;
+            }
+        }
+        if (happy >= sad && happy >= neutral) {
+            moods[face] = Mood.HAPPY;
+            confidences[face] = happy;
+        } else if (sad >= neutral) {
+            moods[face] = Mood.SAD;
+            confidences[face] = sad;
+        } else {
+            moods[face] = Mood.NEUTRAL;
+            confidences[face] = neutral;
+        }
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public Mood getMood(int i) {
+        return moods[i];
+    }
+
+    public float getConfidence(int i) {
+        return confidences[i];
+    }
+
+    @Override
+    public void reset() {
+        tracker.reset();
+    }
+
+    @Override
+    public Rect getFace() {
+        return faceCount > 0 ? face : null;
+    }
+
+    @Override
+    public float getConfidence() {
+        return faceCount > 0 ? confidences[best] : 0;
+    }
+
+    @Override
+    public FaceTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public void close() {
+        ctx.close();
+        faceLease.close();
+        NativeMemory.release(gray);
+        NativeMemory.release(blob);
+        for (int i = 0; i < maxBatch; i++) {
+            NativeMemory.release(cropHeaders[i]);
+            NativeMemory.release(crops[i]);
+        }
+        batch.close();
+        outputs.close();
+        net.close();
+    }
+}
@@ -0,0 +1,164 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+import static org.bytedeco.opencv.global.opencv_objdetect.CASCADE_SCALE_IMAGE;
+
+// Cheap continuous face tracking for the detection stage.
+// The cascade runs on a downscaled, equalized grayscale copy of the frame. Once a face is found,
+// later passes only search an expanded box around it; a full-frame scan happens every
+// fullScanInterval frames or as soon as the face is lost. Rects are reported in full-res coordinates.
+public class FaceTracker {
+
+    public static final int DEFAULT_DETECT_WIDTH = 320;
+    public static final int DEFAULT_FULL_SCAN_INTERVAL = 15;
+
+    private static final int MIN_FACE_SIZE = 100;    // in full-res pixels, same as the original detector
+    private static final double SEARCH_MARGIN = 0.5; // grow the last face box by half its size on each side
+
+    private final CascadeClassifier faceDetector;
+    private final DetectionContext ctx;
+    private final int detectWidth;
+    private final int fullScanInterval;
+
+    // Last face in downscaled coordinates, width 0 = not tracking
+    private int lastX, lastY, lastW, lastH;
+    private int framesSinceFullScan = 0;
+    private double scale = 1.0;
+
+    private long fullScans = 0;
+    private long roiScans = 0;
+
+    public FaceTracker(CascadeClassifier faceDetector, DetectionContext ctx) {
+        this(faceDetector, ctx, DEFAULT_DETECT_WIDTH, DEFAULT_FULL_SCAN_INTERVAL);
+    }
+
+    public FaceTracker(CascadeClassifier faceDetector, DetectionContext ctx, int detectWidth, int fullScanInterval) {
+        this.faceDetector = faceDetector;
+        this.ctx = ctx;
+        this.detectWidth = detectWidth;
+        this.fullScanInterval = fullScanInterval;
+    }
+
+    // Returns the face in full-resolution coordinates, or null if there is none.
+    // The returned Rect belongs to the DetectionContext and is overwritten by the next call.
+    public Rect track(Mat bgr) {
+        prepare(bgr);
+
+        boolean found = false;
+        if (isTracking() && framesSinceFullScan < fullScanInterval) {
+            roiScans++;
+            framesSinceFullScan++;
+            found = searchAroundLastFace();
+        }
+        if (!found) {
+            fullScans++;
+            framesSinceFullScan = 0;
+            found = searchFullFrame();
+        }
+
+        if (!found) {
+            lastW = 0;
+            return null;
+        }
+
+        Rect face = ctx.face;
+        face.x((int) Math.round(lastX / scale));
+        face.y((int) Math.round(lastY / scale));
+        face.width(Math.min((int) Math.round(lastW / scale), bgr.cols() - face.x()));
+        face.height(Math.min((int) Math.round(lastH / scale), bgr.rows() - face.y()));
+        return face;
+    }
+
+    // Full scan for every face in the frame (also restarts tracking on the biggest one).
+    // Rects are in detection coordinates, divide by getScale() for full-res; the vector belongs to the context.
+    public RectVector detectAll(Mat bgr) {
+        prepare(bgr);
+        fullScans++;
+        framesSinceFullScan = 0;
+        if (!searchFullFrame()) lastW = 0;
+        return ctx.faces;
+    }
+
+    // Detection size / frame size of the last frame
+    public double getScale() {
+        return scale;
+    }
+
+    public boolean isTracking() {
+        return lastW > 0;
+    }
+
+    public void reset() {
+        lastW = 0;
+        framesSinceFullScan = 0;
+    }
+
+    public long getFullScans() {
+        return fullScans;
+    }
+
+    public long getRoiScans() {
+        return roiScans;
+    }
+
+    // Downscale first, then convert: far fewer pixels go through cvtColor and equalizeHist
+    private void prepare(Mat bgr) {
+        scale = bgr.cols() > detectWidth ? (double) detectWidth / bgr.cols() : 1.0;
+        if (scale < 1.0) {
+            ctx.detectSize.width(detectWidth);
+            ctx.detectSize.height((int) Math.round(bgr.rows() * scale));
+            resize(bgr, ctx.small, ctx.detectSize, 0, 0, INTER_AREA);
+            cvtColor(ctx.small, ctx.gray, COLOR_BGR2GRAY);
+        } else {
+            cvtColor(bgr, ctx.gray, COLOR_BGR2GRAY);
+        }
+        equalizeHist(ctx.gray, ctx.gray);
+    }
+
+    private boolean searchFullFrame() {
+        return detectIn(ctx.gray, 0, 0);
+    }
+
+    private boolean searchAroundLastFace() {
+        int marginX = (int) (lastW * SEARCH_MARGIN);
+        int marginY = (int) (lastH * SEARCH_MARGIN);
+        int x0 = Math.max(0, lastX - marginX);
+        int y0 = Math.max(0, lastY - marginY);
+        int x1 = Math.min(ctx.gray.cols(), lastX + lastW + marginX);
+        int y1 = Math.min(ctx.gray.rows(), lastY + lastH + marginY);
+        if (x1 - x0 < minFaceSize() || y1 - y0 < minFaceSize()) return false;
+
+        return detectIn(ctx.roi(ctx.gray, x0, y0, x1 - x0, y1 - y0, ctx.searchRoi), x0, y0);
+    }
+
+    // Keeps the biggest face found in the given image (offset = its position inside the gray frame)
+    private boolean detectIn(Mat image, int offsetX, int offsetY) {
+        int min = minFaceSize();
+        ctx.minFaceSize.width(min);
+        ctx.minFaceSize.height(min);
+        RectVector faces = ctx.faces;
+        faceDetector.detectMultiScale(image, faces, 1.1, 5, CASCADE_SCALE_IMAGE,
+                ctx.minFaceSize, ctx.noMaxSize);
+        if (faces.size() == 0) return false;
+
+        int best = 0;
+        for (int i = 1; i < faces.size(); i++) {
+            if (faces.get(i).area() > faces.get(best).area()) best = i;
+        }
+        Rect face = faces.get(best);
+        lastX = face.x() + offsetX;
+        lastY = face.y() + offsetY;
+        lastW = face.width();
+        lastH = face.height();
+        return true;
+    }
+
+    private int minFaceSize() {
+        return Math.max(24, (int) Math.round(MIN_FACE_SIZE * scale)); // 24 = cascade training size
+    }
+}
@@ -0,0 +1,235 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Computes AudioFeatures for every library track that has none (or whose file changed since) and stores
+// them in track_features. Work is spread over a fixed set of threads, each with its own Analyzer, and
+// results are committed in small batches: stopping half way loses at most one batch, and the next run
+// carries on with whatever is still missing.
+//   App analyze [--threads n]            analyse the whole library from the command line
+//   -Dtunesphere.analyze.threads=n       background analysis while the app runs (default 1, 0 = off)
+public class FeatureAnalyzer {
+
+    private static final int BATCH = 16;
+    private static final long PROGRESS_MILLIS = 10_000;
+
+    private static final Histogram trackLatency = Metrics.histogram("analysis.track");
+    private static final Metrics.Counter analysed = Metrics.counter("analysis.tracks");
+    private static final Metrics.Counter failed = Metrics.counter("analysis.failed");
+
+    private static volatile FeatureAnalyzer background;
+    private static volatile Thread backgroundThread;
+
+    private final int threads;
+    private final int priority;
+    private volatile boolean stopRequested = false;
+
+    private record Pending(String path, long size, long mtime) {
+    }
+
+    private record Result(Pending track, AudioFeatures features) {
+    }
+
+    public FeatureAnalyzer(int threads, int priority) {
+        this.threads = Math.max(1, threads);
+        this.priority = priority;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.out.println("""
+                    Usage: analyze [options]
+                      --threads <n>   worker threads (default: all cores)""");
+            return;
+        }
+
+        try {
+            Database.init();
+            LibraryIndex.shared().refresh();
+            new FeatureAnalyzer(threads, Thread.NORM_PRIORITY).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            Database.shutdown();
+        }
+    }
+
+    // Started by the app once the library scan is done; runs at low priority
+    public static void startBackground() {
+        int threads = Integer.getInteger("tunesphere.analyze.threads", 1);
+        if (threads <= 0) return;
+        FeatureAnalyzer analyzer = new FeatureAnalyzer(threads, Thread.MIN_PRIORITY);
+        Thread t = TaskRuntime.newThread("tunesphere-analyze", () -> {
+            try {
+                analyzer.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        t.setPriority(Thread.MIN_PRIORITY);
+        backgroundThread = t;
+        background = analyzer;
+        t.start();
+    }
+
+    // Lets the tracks in progress finish and waits up to the timeout for them to be stored, so call it
+    // before Database.shutdown(); whatever isn't stored by then is analysed again on the next run
+    public static void stopBackground(long timeout, TimeUnit unit) {
+        FeatureAnalyzer analyzer = background;
+        if (analyzer == null) return;
+        analyzer.stop();
+        Thread t = backgroundThread;
+        try {
+            t.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (t.isAlive()) System.out.println("Background analysis still running after " + unit.toMillis(timeout) + " ms, not waiting");
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public void run() throws SQLException, InterruptedException {
+        List<Pending> pending = findPending();
+        if (pending.isEmpty()) return;
+        System.out.println("Analysing " + pending.size() + " track(s) on " + threads + " thread(s)");
+
+        AtomicInteger next = new AtomicInteger();
+        ThreadLocal<AudioFeatures.Analyzer> analyzers = ThreadLocal.withInitial(AudioFeatures.Analyzer::new);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread t = TaskRuntime.factory("tunesphere-analyze-worker").newThread(task);
+            t.setPriority(priority);
+            return t;
+        });
+        CompletionService<Result> results = new ExecutorCompletionService<>(workers);
+        long start = System.currentTimeMillis();
+        long lastProgress = start;
+        int done = 0;
+        int errors = 0;
+        List<Result> batch = new ArrayList<>();
+        try {
+            // Keep only a few tasks queued per worker, so stop() takes effect quickly
+            int inFlight = 0;
+            while (inFlight < threads * 2 && submit(results, pending, next, analyzers)) inFlight++;
+            while (inFlight > 0) {
+                Result result = results.take().get();
+                inFlight--;
+                if (!stopRequested && submit(results, pending, next, analyzers)) inFlight++;
+
+                done++;
+                if (result.features() == null) {
+                    errors++;
+                    continue;
+                }
+                batch.add(result);
+                if (batch.size() >= BATCH) store(batch);
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgress >= PROGRESS_MILLIS) {
+                    lastProgress = now;
+                    double perTrack = (now - start) / (double) done;
+                    System.out.printf("Analysed %d/%d (%.0f%%), about %d s left%n", done, pending.size(),
+                            100.0 * done / pending.size(), (long) (perTrack * (pending.size() - done) / 1000));
+                }
+            }
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            store(batch);
+            workers.shutdownNow();
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        System.out.printf("Analysis: %d track(s) in %d s, %d failed%s%n", done - errors,
+                (System.currentTimeMillis() - start) / 1000, errors, stopRequested ? " (stopped, resumes next run)" : "");
+    }
+
+    private boolean submit(CompletionService<Result> results, List<Pending> pending, AtomicInteger next,
+                           ThreadLocal<AudioFeatures.Analyzer> analyzers) {
+        int i = next.getAndIncrement();
+        if (i >= pending.size()) return false;
+        Pending track = pending.get(i);
+        results.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                AudioFeatures features = analyzers.get().analyze(new File(track.path()));
+                trackLatency.recordSince(start);
+                analysed.inc();
+                return new Result(track, features);
+            } catch (Exception e) {
+                failed.inc();
+                System.out.println("Cannot analyse " + new File(track.path()).getName() + ": " + e.getMessage());
+                return new Result(track, null);
+            }
+        });
+        return true;
+    }
+
+    // Tracks without features, or whose file changed after they were analysed
+    private static List<Pending> findPending() throws SQLException {
+        return Database.query(
+                "SELECT t.path, t.size, t.mtime FROM tracks t LEFT JOIN track_features f ON f.path = t.path "
+                        + "WHERE f.path IS NULL OR f.size != t.size OR f.mtime != t.mtime ORDER BY t.path",
+                rs -> {
+                    List<Pending> list = new ArrayList<>();
+                    while (rs.next()) list.add(new Pending(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+                    return list;
+                });
+    }
+
+    private static void store(List<Result> batch) throws SQLException {
+        if (batch.isEmpty()) return;
+        try (PooledConnection pooled = Database.acquire()) {
+            Connection conn = pooled.connection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement upsert = pooled.prepare(
+                        "INSERT OR REPLACE INTO track_features (path, size, mtime, tempo_bpm, rms_db, centroid_hz, mode, key) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                for (Result r : batch) {
+                    AudioFeatures f = r.features();
+                    upsert.setString(1, r.track().path());
+                    upsert.setLong(2, r.track().size());
+                    upsert.setLong(3, r.track().mtime());
+                    upsert.setDouble(4, f.getTempoBpm());
+                    upsert.setDouble(5, f.getRmsDb());
+                    upsert.setDouble(6, f.getCentroidHz());
+                    upsert.setDouble(7, f.getMode());
+                    upsert.setInt(8, f.getKey());
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+                conn.commit();
+                MoodProfile.invalidate();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,168 @@
+package com.tunesphere;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+// Decides how often the camera is read and how often each pipeline stage gets a frame.
+// Every stage has a target fps; the effective rate drops when the window is minimized or unfocused,
+// when the machine is busy, when a stage can't keep up with its target, and once the mood is locked
+// (detection stops and the camera drops to a trickle). The grab thread never reads faster than the
+// fastest stage needs.
+public class FrameGovernor {
+
+    public static final double DEFAULT_PREVIEW_FPS = 30;
+    public static final double DEFAULT_DETECT_FPS = 10;
+
+    private static final double BACKGROUND_FPS = 5;   // cap for every stage while the window is unfocused
+    private static final double IDLE_PREVIEW_FPS = 5;
+    private static final double IDLE_GRAB_FPS = 1;    // nothing wants frames: just keep the camera warm
+    private static final double HIGH_CPU = 0.85;      // system CPU load where we halve every rate...
+    private static final double NORMAL_CPU = 0.60;    // ...and where we go back to normal
+    private static final long CPU_SAMPLE_NANOS = 1_000_000_000L;
+
+    public static final String PREVIEW = "preview";
+    public static final String DETECT = "detect";
+
+    private static final class StageRate {
+        volatile double targetFps;
+        volatile double avgCostNanos;  // EWMA of the stage's time per frame
+        long nextDueNanos;             // grab thread only
+    }
+
+    private final Map<String, StageRate> stages = new ConcurrentHashMap<>();
+    private final DoubleSupplier previewGauge = () -> effectiveFps(PREVIEW);
+    private final DoubleSupplier detectGauge = () -> effectiveFps(DETECT);
+    private volatile boolean minimized = false;
+    private volatile boolean focused = true;
+    private volatile boolean idle = false;
+    private volatile boolean cpuBusy = false;
+
+    // Grab thread only
+    private long lastCpuSample = 0;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+    public FrameGovernor() {
+        this(DEFAULT_PREVIEW_FPS, DEFAULT_DETECT_FPS);
+    }
+
+    public FrameGovernor(double previewFps, double detectFps) {
+        setTargetFps(PREVIEW, previewFps);
+        setTargetFps(DETECT, detectFps);
+    }
+
+    // 0 turns the stage off; stages without a target get every frame
+    public void setTargetFps(String stage, double fps) {
+        rate(stage).targetFps = Math.max(0, fps);
+    }
+
+    public void setWindowState(boolean minimized, boolean focused) {
+        this.minimized = minimized;
+        this.focused = focused;
+    }
+
+    // Mood locked: stop detecting, keep a slow preview
+    public void setIdle(boolean idle) {
+        this.idle = idle;
+    }
+
+    public boolean isIdle() {
+        return idle;
+    }
+
+    // Rate after window state, idle mode, CPU load and the stage's own cost are applied
+    public double effectiveFps(String stage) {
+        StageRate r = stages.get(stage);
+        if (r == null) return Double.POSITIVE_INFINITY;
+        double fps = r.targetFps;
+
+        if (stage.equals(PREVIEW)) {
+            if (minimized) return 0; // nobody can see it
+            if (idle) fps = Math.min(fps, IDLE_PREVIEW_FPS);
+        } else if (stage.equals(DETECT) && idle) {
+            return 0;
+        }
+        if (!focused || minimized) fps = Math.min(fps, BACKGROUND_FPS);
+        if (cpuBusy) fps /= 2;
+
+        // No point handing a stage more frames than it can chew
+        double cost = r.avgCostNanos;
+        if (cost > 0) fps = Math.min(fps, 1e9 / cost);
+        return fps;
+    }
+
+    // --- called by FramePipeline ---
+
+    void registerGauges() {
+        Metrics.gauge("governor.previewFps", previewGauge);
+        Metrics.gauge("governor.detectFps", detectGauge);
+    }
+
+    void removeGauges() {
+        Metrics.removeGauge("governor.previewFps", previewGauge);
+        Metrics.removeGauge("governor.detectFps", detectGauge);
+    }
+
+    // Grab thread: should this frame go to the stage? Keeps each stage on its own schedule.
+    boolean admit(String stage, long nowNanos) {
+        StageRate r = stages.get(stage);
+        if (r == null) return true;
+        double fps = effectiveFps(stage);
+        if (fps <= 0) return false;
+        if (nowNanos < r.nextDueNanos) return false;
+        long interval = (long) (1e9 / fps);
+        // Stay on the grid, but don't try to catch up after a pause
+        r.nextDueNanos = Math.max(r.nextDueNanos + interval, nowNanos + interval / 2);
+        return true;
+    }
+
+    // Stage thread: how long the last frame took
+    void recordCost(String stage, long nanos) {
+        StageRate r = stages.get(stage);
+        if (r == null) return;
+        double avg = r.avgCostNanos;
+        r.avgCostNanos = avg == 0 ? nanos : avg * 0.9 + nanos * 0.1;
+    }
+
+    // Grab thread: minimum time between two camera reads
+    long grabIntervalNanos() {
+        sampleCpu();
+        double fastest = 0;
+        for (String stage : stages.keySet()) fastest = Math.max(fastest, effectiveFps(stage));
+        if (fastest == Double.POSITIVE_INFINITY) return 0;
+        return (long) (1e9 / Math.max(fastest, IDLE_GRAB_FPS));
+    }
+
+    private void sampleCpu() {
+        long now = System.nanoTime();
+        if (now - lastCpuSample < CPU_SAMPLE_NANOS) return;
+        lastCpuSample = now;
+        double load = systemCpuLoad();
+        if (load < 0) return; // not available on this platform
+        if (!cpuBusy && load > HIGH_CPU) {
+            cpuBusy = true;
+            System.out.println("High CPU load, halving camera frame rates");
+        } else if (cpuBusy && load < NORMAL_CPU) {
+            cpuBusy = false;
+        }
+    }
+
+    private double systemCpuLoad() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean sun) return sun.getCpuLoad();
+        double avg = os.getSystemLoadAverage();
+        return avg < 0 ? -1 : avg / os.getAvailableProcessors();
+    }
+
+    private StageRate rate(String stage) {
+        return stages.computeIfAbsent(stage, s -> new StageRate());
+    }
+
+    @Override
+    public String toString() {
+        String mode = idle ? "idle" : minimized ? "minimized" : !focused ? "background" : "active";
+        return String.format("Governor: %s%s, preview %.1f fps, detect %.1f fps", mode, cpuBusy ? " (CPU busy)" : "",
+                effectiveFps(PREVIEW), effectiveFps(DETECT));
+    }
+}
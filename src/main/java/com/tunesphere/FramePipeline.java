@@ -0,0 +1,339 @@
+package com.tunesphere;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+// Staged frame processing: one grab thread fans frames out to any number of stages (preview, detection...),
+// each running on its own thread behind a drop-oldest FrameRing, so a slow stage never stalls the others.
+public class FramePipeline implements AutoCloseable {
+
+    public interface FrameHandler extends AutoCloseable {
+        void handle(PipelineFrame frame) throws Exception;
+
+        // Called on the stage thread once it stops, to free whatever the stage allocated
+        @Override
+        default void close() {
+        }
+    }
+
+    public static class StageStats {
+        private final String name;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile long startNanos = System.nanoTime();
+        private final Histogram latency;
+        private final Metrics.Counter droppedMetric;
+        final DoubleSupplier fpsGauge = this::getFps;
+
+        StageStats(String name) {
+            this.name = name;
+            this.latency = Metrics.histogram("pipeline." + name + ".latency");
+            this.droppedMetric = Metrics.counter("pipeline." + name + ".dropped");
+        }
+
+        void record(long nanos) {
+            processed.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+            latency.record(nanos);
+        }
+
+        void drop() {
+            dropped.incrementAndGet();
+            droppedMetric.inc();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public double getFps() {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            return seconds > 0 ? processed.get() / seconds : 0;
+        }
+
+        public double getAvgMillis() {
+            long n = processed.get();
+            return n > 0 ? busyNanos.get() / 1e6 / n : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.1f fps, %.2f ms/frame, %d processed, %d dropped",
+                    name, getFps(), getAvgMillis(), getProcessed(), getDropped());
+        }
+    }
+
+    private static class Stage {
+        final String name;
+        final FrameRing ring;
+        final FrameHandler handler;
+        final StageStats stats;
+
+        Stage(String name, int capacity, FrameHandler handler) {
+            this.name = name;
+            this.ring = new FrameRing(capacity);
+            this.handler = handler;
+            this.stats = new StageStats(name);
+        }
+    }
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 2;
+    // Without a governor, how long the grab thread backs off when the source has no frame for it
+    private static final long EMPTY_GRAB_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final FrameSource source;
+    private final List<Stage> stages = new ArrayList<>();
+    private final StageStats grabStats = new StageStats("grab");
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger liveThreads = new AtomicInteger();
+    private ArrayBlockingQueue<PipelineFrame> pool;
+    private FrameGovernor governor;
+    private volatile boolean started = false;
+    private volatile boolean running = false;
+    private volatile boolean stopRequested = false;
+    private volatile boolean grabDone = false;
+
+    public FramePipeline(FrameSource source) {
+        this.source = source;
+    }
+
+    // Stages must be added before start(). Capacity is how many frames may wait for this stage.
+    public FramePipeline addStage(String name, int capacity, FrameHandler handler) {
+        if (started) throw new IllegalStateException("Pipeline already started");
+        stages.add(new Stage(name, capacity, handler));
+        return this;
+    }
+
+    // Optional: paces the camera and each stage; without one every stage gets every frame
+    public FramePipeline setGovernor(FrameGovernor governor) {
+        if (started) throw new IllegalStateException("Pipeline already started");
+        this.governor = governor;
+        return this;
+    }
+
+    // A pipeline runs once; build a new one to restart
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        running = true;
+
+        // Enough buffers for every ring to be full while each stage works on one more frame
+        int poolSize = 2;
+        for (Stage stage : stages) poolSize += stage.ring.capacity() + 1;
+        pool = new ArrayBlockingQueue<>(poolSize);
+
+        threads.add(TaskRuntime.newThread("tunesphere-grab", this::grabLoop));
+        for (Stage stage : stages) {
+            threads.add(TaskRuntime.newThread("tunesphere-" + stage.name, () -> stageLoop(stage)));
+        }
+        liveThreads.set(threads.size());
+        for (StageStats stats : getStats()) Metrics.gauge("pipeline." + stats.getName() + ".fps", stats.fpsGauge);
+        if (governor != null) governor.registerGauges();
+        for (Thread t : threads) t.start();
+    }
+
+    // Non-blocking: signals all stages to finish; use awaitTermination() to wait for them
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Stops and waits for the camera to be released, so the next pipeline can open it.
+    // If interrupted, returns right away with the interrupt flag still set.
+    @Override
+    public void close() {
+        stop();
+        try {
+            if (!awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.out.println("Pipeline threads still running after " + CLOSE_TIMEOUT_SECONDS + " s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread t : threads) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) return false;
+            t.join(remaining);
+            if (t.isAlive()) return false;
+        }
+        return true;
+    }
+
+    public List<StageStats> getStats() {
+        List<StageStats> all = new ArrayList<>();
+        all.add(grabStats);
+        for (Stage stage : stages) all.add(stage.stats);
+        return all;
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder("Pipeline stats");
+        for (StageStats s : getStats()) sb.append("\n  ").append(s);
+        if (governor != null) sb.append("\n  ").append(governor);
+        sb.append("\n  ").append(NativeMemory.report());
+        return sb.toString();
+    }
+
+    // --- GRAB STAGE ---
+    private void grabLoop() {
+        try (OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat()) {
+            try {
+                source.start();
+                long sequence = 0;
+                List<Stage> due = new ArrayList<>(stages.size());
+                while (!stopRequested) {
+                    long start = System.nanoTime();
+                    Frame frame = source.grab();
+                    if (frame == null) {
+                        if (!source.isLive()) break; // end of video / image folder
+                        // A camera with nothing to give yet: wait rather than spin on it
+                        pace(start + idleNanos());
+                        continue;
+                    }
+
+                    // Stages the governor holds back this time don't get (or reference) the frame
+                    due.clear();
+                    for (Stage stage : stages) {
+                        if (governor == null || governor.admit(stage.name, start)) due.add(stage);
+                    }
+
+                    if (!due.isEmpty()) {
+                        Mat mat = converter.convert(frame);
+                        if (mat == null) {
+                            pace(start + idleNanos());
+                            continue;
+                        }
+
+                        // Copy out of the grabber's buffer, it gets overwritten by the next grab
+                        PipelineFrame pf = acquire();
+                        mat.copyTo(pf.mat());
+                        pf.reset(sequence++, start, due.size());
+                        grabStats.record(System.nanoTime() - start);
+
+                        for (Stage stage : due) {
+                            PipelineFrame dropped = stage.ring.offer(pf);
+                            if (dropped != null) {
+                                stage.stats.drop();
+                                dropped.release();
+                            }
+                        }
+                    }
+
+                    if (governor != null) pace(start + governor.grabIntervalNanos());
+                }
+            } catch (Exception e) {
+                if (!stopRequested) e.printStackTrace();
+            } finally {
+                grabDone = true;
+                try {
+                    source.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            threadExited();
+        }
+    }
+
+    private long idleNanos() {
+        return governor != null ? governor.grabIntervalNanos() : EMPTY_GRAB_NANOS;
+    }
+
+    // Sleep until the next grab is due, in short steps so stop() and window changes take effect quickly
+    private void pace(long deadline) throws InterruptedException {
+        long remaining;
+        while (!stopRequested && (remaining = deadline - System.nanoTime()) > 0) {
+            Thread.sleep(Math.min(TimeUnit.NANOSECONDS.toMillis(remaining) + 1, 100));
+        }
+    }
+
+    // --- PREVIEW / DETECTION / ... STAGES ---
+    private void stageLoop(Stage stage) {
+        try {
+            while (true) {
+                // Read before polling: a frame handed over while we wait is then still seen by one more poll,
+                // instead of being left in the ring (and its buffer never going back to the pool)
+                boolean last = grabDone;
+                PipelineFrame frame = stage.ring.poll(50, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    // Only leave once the grab thread can no longer hand us frames
+                    if (last) break;
+                    continue;
+                }
+                // After stop() just hand queued frames back; a finished video still gets fully processed
+                if (stopRequested) {
+                    frame.release();
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    stage.handler.handle(frame);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    frame.release();
+                }
+                long took = System.nanoTime() - start;
+                stage.stats.record(took);
+                if (governor != null) governor.recordCost(stage.name, took);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                stage.handler.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            threadExited();
+        }
+    }
+
+    private PipelineFrame acquire() {
+        PipelineFrame frame = pool.poll();
+        return frame != null ? frame : new PipelineFrame(this);
+    }
+
+    void recycle(PipelineFrame frame) {
+        if (!pool.offer(frame)) frame.deallocate();
+    }
+
+    private void threadExited() {
+        if (liveThreads.decrementAndGet() == 0) {
+            running = false;
+            // Only our own gauges, a newer pipeline may have registered the same names
+            for (StageStats stats : getStats()) Metrics.removeGauge("pipeline." + stats.getName() + ".fps", stats.fpsGauge);
+            if (governor != null) governor.removeGauges();
+            PipelineFrame frame;
+            while ((frame = pool.poll()) != null) frame.deallocate();
+            System.out.println(report());
+        }
+    }
+}
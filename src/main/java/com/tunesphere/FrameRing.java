@@ -0,0 +1,72 @@
+package com.tunesphere;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded frame queue between two pipeline stages. When full, the oldest frame is dropped
+// so a slow consumer always works on the most recent picture instead of falling behind.
+public class FrameRing {
+
+    private final PipelineFrame[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int head = 0; // next slot to read
+    private int size = 0;
+
+    public FrameRing(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        slots = new PipelineFrame[capacity];
+    }
+
+    // Returns the frame that had to be dropped to make room, or null
+    public PipelineFrame offer(PipelineFrame frame) {
+        lock.lock();
+        try {
+            PipelineFrame dropped = null;
+            if (size == slots.length) {
+                dropped = slots[head];
+                slots[head] = null;
+                head = (head + 1) % slots.length;
+                size--;
+            }
+            slots[(head + size) % slots.length] = frame;
+            size++;
+            notEmpty.signal();
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public PipelineFrame poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            PipelineFrame frame = slots[head];
+            slots[head] = null;
+            head = (head + 1) % slots.length;
+            size--;
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,35 @@
+package com.tunesphere;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameGrabber;
+
+import java.io.File;
+import java.io.IOException;
+
+// Anything that can feed video frames into a FramePipeline (webcam, video file, image folder...)
+public interface FrameSource extends AutoCloseable {
+
+    void start() throws Exception;
+
+    // Returns the next frame, or null if none is available right now (live) / the source is exhausted
+    Frame grab() throws Exception;
+
+    // Live sources never run out, a null grab just means "try again"
+    boolean isLive();
+
+    @Override
+    void close() throws IOException;
+
+    static FrameSource camera(int deviceNumber) {
+        return new GrabberFrameSource(new OpenCVFrameGrabber(deviceNumber), true);
+    }
+
+    static FrameSource videoFile(File file) {
+        return new GrabberFrameSource(new FFmpegFrameGrabber(file), false);
+    }
+
+    static FrameSource imageDirectory(File dir, boolean loop) {
+        return new ImageDirectoryFrameSource(dir, loop);
+    }
+}
@@ -0,0 +1,46 @@
+package com.tunesphere;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+
+// FrameSource backed by a JavaCV FrameGrabber (camera or video file)
+public class GrabberFrameSource implements FrameSource {
+
+    private final FrameGrabber grabber;
+    private final boolean live;
+
+    public GrabberFrameSource(FrameGrabber grabber, boolean live) {
+        this.grabber = grabber;
+        this.live = live;
+    }
+
+    @Override
+    public void start() throws Exception {
+        grabber.start();
+    }
+
+    @Override
+    public Frame grab() throws Exception {
+        Frame frame = grabber.grab();
+        // Video files interleave audio samples with images, skip those
+        while (frame != null && frame.image == null) {
+            frame = grabber.grab();
+        }
+        return frame;
+    }
+
+    @Override
+    public boolean isLive() {
+        return live;
+    }
+
+    public double getFrameRate() {
+        return grabber.getFrameRate();
+    }
+
+    @Override
+    public void close() throws FrameGrabber.Exception {
+        grabber.stop();
+        grabber.release();
+    }
+}
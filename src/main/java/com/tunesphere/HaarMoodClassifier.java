@@ -0,0 +1,116 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+// The original face/smile heuristic: smile found -> HAPPY, long face (height/width > sadRatio) -> SAD,
+// anything else NEUTRAL. Only looks at the biggest face.
+public class HaarMoodClassifier implements MoodClassifier {
+
+    private static final Histogram faceLatency = Metrics.histogram("detector.face");
+    private static final Histogram smileLatency = Metrics.histogram("detector.smile");
+    private static final Metrics.Counter noFaceFrames = Metrics.counter("detector.noFace");
+
+    private final MoodClassifier.Settings settings;
+    private final CascadeRegistry.Lease faceLease;
+    private final CascadeRegistry.Lease smileLease;
+    private final DetectionContext ctx = new DetectionContext();
+    private final FaceTracker tracker;
+
+    // Details of the last classify() call
+    private Rect face;
+    private long smileCount;
+    private double ratio;
+
+    public HaarMoodClassifier() {
+        this(new MoodClassifier.Settings());
+    }
+
+    // Throws IllegalStateException if a cascade file is missing
+    public HaarMoodClassifier(MoodClassifier.Settings settings) {
+        this.settings = settings;
+        CascadeRegistry.Lease faceLease = CascadeRegistry.acquire(CascadeRegistry.Cascade.FRONTAL_FACE);
+        try {
+            this.smileLease = CascadeRegistry.acquire(CascadeRegistry.Cascade.SMILE);
+        } catch (RuntimeException e) {
+            faceLease.close();
+            ctx.close();
+            throw e;
+        }
+        this.faceLease = faceLease;
+        this.tracker = new FaceTracker(faceLease.classifier(), ctx, settings.detectWidth, settings.fullScanInterval);
+        ctx.minSmileSize.width(settings.minSmileSize);
+        ctx.minSmileSize.height(settings.minSmileSize);
+    }
+
+    @Override
+    public String getName() {
+        return "haar";
+    }
+
+    @Override
+    public Mood classify(Mat bgr) {
+        long start = System.nanoTime();
+        face = tracker.track(bgr);
+        faceLatency.recordSince(start);
+        if (face == null) {
+            noFaceFrames.inc();
+            smileCount = 0;
+            ratio = 0;
+            return null;
+        }
+
+        start = System.nanoTime();
+        Mat faceROI = ctx.roi(bgr, face.x(), face.y(), face.width(), face.height(), ctx.faceRoi);
+        smileLease.classifier().detectMultiScale(faceROI, ctx.smiles, settings.smileScaleFactor,
+                settings.smileMinNeighbors, 0, ctx.minSmileSize, ctx.noMaxSize);
+        smileLatency.recordSince(start);
+
+        smileCount = ctx.smiles.size();
+        ratio = (double) face.height() / face.width();
+        if (smileCount > 0) {
+            return Mood.HAPPY;
+        } else if (ratio > settings.sadRatio) {
+            return Mood.SAD;
+        } else {
+            return Mood.NEUTRAL;
+        }
+    }
+
+    @Override
+    public void reset() {
+        tracker.reset();
+    }
+
+    @Override
+    public Rect getFace() {
+        return face;
+    }
+
+    // The heuristic has no real score: a smile is a clear signal, the ratio rule a weak one
+    @Override
+    public float getConfidence() {
+        if (face == null) return 0;
+        return smileCount > 0 ? 1f : 0.5f;
+    }
+
+    public long getSmileCount() {
+        return smileCount;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    @Override
+    public FaceTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public void close() {
+        ctx.close();
+        faceLease.close();
+        smileLease.close();
+    }
+}
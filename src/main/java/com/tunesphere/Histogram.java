@@ -0,0 +1,110 @@
+package com.tunesphere;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear latency histogram in the spirit of HdrHistogram: every power of two is split into
+// 16 linear sub-buckets (~6% worst-case error), covering 0 .. Long.MAX_VALUE in 976 fixed buckets.
+// record() is lock- and allocation-free; readers take a Snapshot and diff it against the previous one.
+public class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+    }
+
+    // Convenience for the common `long start = System.nanoTime(); ... ; h.recordSince(start);`
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, sum.sum());
+    }
+
+    static int index(long value) {
+        if (value < SUB) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int mantissa = (int) (value >>> shift) & (SUB - 1);
+        return (shift + 1) * SUB + mantissa;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB) return index;
+        int shift = index / SUB - 1;
+        return (long) (SUB + index % SUB) << shift;
+    }
+
+    static long upperBound(int index) {
+        return index + 1 >= BUCKETS ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long sum;
+        private final long count;
+
+        Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            this.sum = sum;
+            long n = 0;
+            for (long c : counts) n += c;
+            this.count = n;
+        }
+
+        // What was recorded since `previous` (a snapshot of the same histogram)
+        public Snapshot minus(Snapshot previous) {
+            if (previous == null) return this;
+            long[] diff = new long[counts.length];
+            for (int i = 0; i < diff.length; i++) diff[i] = counts[i] - previous.counts[i];
+            return new Snapshot(diff, sum - previous.sum);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        // Value at quantile q (0..1), reported as the middle of its bucket
+        public long getValueAt(double q) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return (lowerBound(i) + upperBound(i)) / 2;
+            }
+            return getMax();
+        }
+
+        // Upper edge of the highest non-empty bucket
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) return upperBound(i);
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Append-only listening history (moods detected, tracks started/skipped/finished, playback sessions),
+// kept in the `history` table. Recording never blocks: the audio, camera and UI threads just add the
+// event to a lock-free queue. One writer thread drains it and inserts the events in batches, one
+// transaction per batch. If the database falls behind, the queue stops at MAX_BACKLOG events and
+// newer events are dropped (and counted) rather than taking memory or stalling the caller.
+public final class HistoryLog implements AutoCloseable {
+
+    public enum EventType {
+        SESSION_START, SESSION_END, MOOD_DETECTED, TRACK_STARTED, TRACK_SKIPPED, TRACK_FINISHED, TRACK_STOPPED
+    }
+
+    static final class Event {
+        final long atMillis;
+        final EventType type;
+        final String user;
+        final String session;
+        final String mood;
+        final String path;
+        final long positionMillis;
+        // Set only on flush markers
+        final CompletableFuture<Void> flushed;
+
+        Event(long atMillis, EventType type, String user, String session, String mood, String path,
+              long positionMillis, CompletableFuture<Void> flushed) {
+            this.atMillis = atMillis;
+            this.type = type;
+            this.user = user;
+            this.session = session;
+            this.mood = mood;
+            this.path = path;
+            this.positionMillis = positionMillis;
+            this.flushed = flushed;
+        }
+    }
+
+    private static final int MAX_BACKLOG = 50_000;
+    private static final int MAX_BATCH = 1_000;
+    // Small bursts wait this long for company, so a detection every 100 ms doesn't mean a commit every 100 ms
+    private static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final Metrics.Counter recorded = Metrics.counter("history.events");
+    private static final Metrics.Counter dropped = Metrics.counter("history.dropped");
+    private static final Metrics.Counter failed = Metrics.counter("history.failed");
+    private static final Histogram batchLatency = Metrics.histogram("history.batch");
+
+    private static HistoryLog shared;
+
+    // -Dtunesphere.history=false records nothing (benchmarks, throwaway sessions)
+    private final boolean enabled = Boolean.parseBoolean(System.getProperty("tunesphere.history", "true"));
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicInteger pendingFlushes = new AtomicInteger();
+    private final Thread writer;
+    private volatile boolean writerParked = false;
+    private volatile boolean closed = false;
+    private volatile String user;
+    private volatile long written;
+
+    HistoryLog() {
+        Metrics.gauge("history.backlog", backlog::get);
+        writer = TaskRuntime.newThread("tunesphere-history", this::writeLoop);
+        writer.start();
+    }
+
+    public static synchronized HistoryLog shared() {
+        if (shared == null) shared = new HistoryLog();
+        return shared;
+    }
+
+    // Who the following events belong to; null when logged out
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void moodDetected(Mood mood) {
+        record(EventType.MOOD_DETECTED, null, mood.folderName(), null, 0);
+    }
+
+    public void sessionStarted(String session) {
+        record(EventType.SESSION_START, session, null, null, 0);
+    }
+
+    public void sessionEnded(String session) {
+        record(EventType.SESSION_END, session, null, null, 0);
+    }
+
+    public void trackStarted(String session, File track) {
+        record(EventType.TRACK_STARTED, session, null, track, 0);
+    }
+
+    public void trackEnded(String session, File track, PlaybackEngine.EndReason reason, long positionMillis) {
+        EventType type = switch (reason) {
+            case FINISHED -> EventType.TRACK_FINISHED;
+            case SKIPPED -> EventType.TRACK_SKIPPED;
+            case STOPPED -> EventType.TRACK_STOPPED;
+        };
+        record(type, session, null, track, positionMillis);
+    }
+
+    // Returns false if the event was dropped (backlog full, or the log is closed)
+    public boolean record(EventType type, String session, String mood, File track, long positionMillis) {
+        if (!enabled) return false;
+        // No logging when dropping: this runs on the audio and camera threads
+        if (closed) {
+            dropped.inc();
+            return false;
+        }
+        if (backlog.incrementAndGet() > MAX_BACKLOG) {
+            backlog.decrementAndGet();
+            dropped.inc();
+            return false;
+        }
+        Event event = new Event(System.currentTimeMillis(), type, user, session, mood,
+                track != null ? track.getPath() : null, positionMillis, null);
+        queue.offer(event);
+        // Lost a race with close(): take the event back if nobody has yet (as PlaybackSession.submit does).
+        // If the writer or close() already took it, it is written or counted as dropped there.
+        if (closed && queue.remove(event)) {
+            backlog.decrementAndGet();
+            dropped.inc();
+            return false;
+        }
+        recorded.inc();
+        if (writerParked) LockSupport.unpark(writer);
+        return true;
+    }
+
+    // Completes once everything recorded before this call is committed
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (closed && !writer.isAlive()) {
+            done.complete(null);
+            return done;
+        }
+        Event marker = new Event(0, null, null, null, null, null, 0, done);
+        pendingFlushes.incrementAndGet();
+        queue.offer(marker);
+        LockSupport.unpark(writer);
+        // The writer may have stopped since the check above; then nobody else will take the marker.
+        // While it is still alive, close() picks up whatever it leaves behind.
+        if (closed && !writer.isAlive() && queue.remove(marker)) {
+            pendingFlushes.decrementAndGet();
+            done.complete(null);
+        }
+        return done;
+    }
+
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    // --- WRITER THREAD ---
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>(MAX_BATCH);
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        while (true) {
+            Event event = queue.poll();
+            if (event == null) {
+                if (!batch.isEmpty() || !flushes.isEmpty()) {
+                    commit(batch, flushes);
+                    continue;
+                }
+                if (closed) break;
+                writerParked = true;
+                // Re-check after announcing, or an event offered in between would wait for the next one
+                if (queue.isEmpty()) LockSupport.park(this);
+                writerParked = false;
+                // A lone event: give others a moment to join it in the same transaction
+                if (!closed && pendingFlushes.get() == 0 && backlog.get() < MAX_BATCH) {
+                    LockSupport.parkNanos(this, LINGER_NANOS);
+                }
+                continue;
+            }
+            if (event.flushed != null) {
+                pendingFlushes.decrementAndGet();
+                flushes.add(event.flushed);
+            } else {
+                batch.add(event);
+                if (batch.size() >= MAX_BATCH) commit(batch, flushes);
+            }
+        }
+    }
+
+    private void commit(List<Event> batch, List<CompletableFuture<Void>> flushes) {
+        if (!batch.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                insert(batch);
+                written += batch.size();
+                batchLatency.recordSince(start);
+            } catch (Throwable e) {
+                // History is best effort: losing a batch must not take playback down, nor this thread
+                // (which would leave every later flush() waiting forever)
+                failed.add(batch.size());
+                System.out.println("Cannot write " + batch.size() + " history events: " + e);
+            }
+            backlog.addAndGet(-batch.size());
+            batch.clear();
+        }
+        for (CompletableFuture<Void> f : flushes) f.complete(null);
+        flushes.clear();
+    }
+
+    private static void insert(List<Event> batch) throws SQLException {
+        try (PooledConnection pooled = Database.acquire()) {
+            Connection conn = pooled.connection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement insert = pooled.prepare(
+                        "INSERT INTO history (at, type, username, session, mood, path, position_ms) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                for (Event e : batch) {
+                    insert.setLong(1, e.atMillis);
+                    insert.setString(2, e.type.name());
+                    insert.setString(3, e.user);
+                    insert.setString(4, e.session);
+                    insert.setString(5, e.mood);
+                    insert.setString(6, e.path);
+                    insert.setLong(7, e.positionMillis);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public String report() {
+        return String.format("History: %d events written, %d dropped, %d failed, %d waiting",
+                written, dropped.get(), failed.get(), backlog.get());
+    }
+
+    // Writes everything still queued, then stops the writer. Call before Database.shutdown().
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) return;
+        // Events and flushes that slipped in while the writer was on its way out
+        Event event;
+        while ((event = queue.poll()) != null) {
+            if (event.flushed != null) {
+                pendingFlushes.decrementAndGet();
+                event.flushed.complete(null);
+            } else {
+                backlog.decrementAndGet();
+                dropped.inc();
+            }
+        }
+    }
+}
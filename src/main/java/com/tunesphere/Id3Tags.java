@@ -0,0 +1,125 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Minimal ID3 reader: title / artist / album from an ID3v2 (2.2 - 2.4) tag, falling back to ID3v1
+public class Id3Tags {
+
+    private static final int MAX_TAG_BYTES = 256 * 1024; // text frames come first, skip cover art
+
+    private String title;
+    private String artist;
+    private String album;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public static Id3Tags read(File file) throws IOException {
+        Id3Tags tags = new Id3Tags();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            tags.readV2(raf);
+            if (tags.title == null || tags.artist == null || tags.album == null) tags.readV1(raf);
+        }
+        return tags;
+    }
+
+    private void readV2(RandomAccessFile raf) throws IOException {
+        byte[] header = new byte[10];
+        if (raf.length() < 10) return;
+        raf.readFully(header);
+        if (header[0] != 'I' || header[1] != 'D' || header[2] != '3') return;
+
+        int version = header[3];
+        int size = syncsafe(header, 6);
+        byte[] tag = new byte[Math.min(size, MAX_TAG_BYTES)];
+        raf.readFully(tag, 0, (int) Math.min(tag.length, raf.length() - 10));
+
+        int pos = 0;
+        // Skip the extended header if there is one
+        if ((header[5] & 0x40) != 0 && version >= 3 && tag.length >= 4) {
+            int extSize = version == 4 ? syncsafe(tag, 0) : int32(tag, 0) + 4;
+            pos = extSize;
+        }
+
+        boolean v22 = version == 2;
+        int idLength = v22 ? 3 : 4;
+        int headerLength = v22 ? 6 : 10;
+        while (pos + headerLength <= tag.length && tag[pos] != 0) {
+            String id = new String(tag, pos, idLength, StandardCharsets.ISO_8859_1);
+            int frameSize;
+            if (v22) {
+                frameSize = ((tag[pos + 3] & 0xFF) << 16) | ((tag[pos + 4] & 0xFF) << 8) | (tag[pos + 5] & 0xFF);
+            } else if (version == 4) {
+                frameSize = syncsafe(tag, pos + 4);
+            } else {
+                frameSize = int32(tag, pos + 4);
+            }
+            int data = pos + headerLength;
+            if (frameSize <= 0 || data + frameSize > tag.length) break;
+
+            switch (id) {
+                case "TIT2", "TT2" -> title = text(tag, data, frameSize);
+                case "TPE1", "TP1" -> artist = text(tag, data, frameSize);
+                case "TALB", "TAL" -> album = text(tag, data, frameSize);
+                default -> { }
+            }
+            pos = data + frameSize;
+        }
+    }
+
+    private void readV1(RandomAccessFile raf) throws IOException {
+        if (raf.length() < 128) return;
+        byte[] tag = new byte[128];
+        raf.seek(raf.length() - 128);
+        raf.readFully(tag);
+        if (tag[0] != 'T' || tag[1] != 'A' || tag[2] != 'G') return;
+        if (title == null) title = latin1(tag, 3, 30);
+        if (artist == null) artist = latin1(tag, 33, 30);
+        if (album == null) album = latin1(tag, 63, 30);
+    }
+
+    // Text frame: one encoding byte, then the string (possibly NUL terminated)
+    private static String text(byte[] buf, int offset, int length) {
+        if (length < 2) return null;
+        Charset charset = switch (buf[offset]) {
+            case 1 -> StandardCharsets.UTF_16;   // with BOM
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        String value = new String(buf, offset + 1, length - 1, charset);
+        int nul = value.indexOf('\0');
+        if (nul >= 0) value = value.substring(0, nul);
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String latin1(byte[] buf, int offset, int length) {
+        String value = new String(buf, offset, length, StandardCharsets.ISO_8859_1);
+        int nul = value.indexOf('\0');
+        if (nul >= 0) value = value.substring(0, nul);
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int syncsafe(byte[] b, int i) {
+        return ((b[i] & 0x7F) << 21) | ((b[i + 1] & 0x7F) << 14) | ((b[i + 2] & 0x7F) << 7) | (b[i + 3] & 0x7F);
+    }
+
+    private static int int32(byte[] b, int i) {
+        return ((b[i] & 0xFF) << 24) | ((b[i + 1] & 0xFF) << 16) | ((b[i + 2] & 0xFF) << 8) | (b[i + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,75 @@
+package com.tunesphere;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+// Replays the images of a folder (sorted by name) as a video stream, handy for tests and benchmarks
+public class ImageDirectoryFrameSource implements FrameSource {
+
+    private final File dir;
+    private final boolean loop;
+    private final OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+    private File[] images = new File[0];
+    private int index = 0;
+    private Mat current;
+
+    public ImageDirectoryFrameSource(File dir, boolean loop) {
+        this.dir = dir;
+        this.loop = loop;
+    }
+
+    @Override
+    public void start() throws Exception {
+        File[] files = dir.listFiles((d, n) -> {
+            String name = n.toLowerCase();
+            return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".bmp");
+        });
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("No images in " + dir.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        images = files;
+        index = 0;
+    }
+
+    @Override
+    public Frame grab() {
+        // Bounded so a folder full of unreadable files can't spin forever in loop mode
+        for (int attempts = 0; attempts < images.length && index < images.length; attempts++) {
+            File file = images[index++];
+            if (loop && index == images.length) index = 0;
+
+            Mat mat = imread(file.getAbsolutePath());
+            if (mat.empty()) {
+                mat.close();
+                System.out.println("Skipping unreadable image: " + file.getName());
+                continue;
+            }
+            // The returned frame points into this Mat, so keep it alive until the next grab
+            if (current != null) current.close();
+            current = mat;
+            return converter.convert(mat);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isLive() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        converter.close();
+    }
+}
@@ -0,0 +1,345 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Index of every MP3 under songs/, kept in the `tracks` table of tunesphere.db.
+// The first scan reads tags, duration and bitrate of all files in parallel; after that only files
+// whose size or mtime changed are read again, and a WatchService keeps the table current while the
+// app runs. Mood playlists become an indexed query instead of a directory listing.
+public class LibraryIndex implements AutoCloseable {
+
+    public static final class Track {
+        final String path;
+        final String mood;
+        final long size;
+        final long mtime;
+        String title;
+        String artist;
+        String album;
+        long durationMillis;
+        int bitrateKbps;
+
+        Track(String path, String mood, long size, long mtime) {
+            this.path = path;
+            this.mood = mood;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+
+    private static final long WATCH_DEBOUNCE_MILLIS = 500;
+    private static LibraryIndex shared;
+
+    private final Path root;
+    // path -> {size, mtime} of everything in the table, to find changed files without touching the DB
+    private final Map<String, long[]> known = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+    private volatile boolean closed = false;
+    private WatchService watcher;
+    private CompletableFuture<Void> started;
+
+    public LibraryIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public static synchronized LibraryIndex shared() {
+        if (shared == null) shared = new LibraryIndex(Paths.get("songs"));
+        return shared;
+    }
+
+    // Initial scan, then watches for changes; everything on a background thread
+    public synchronized CompletableFuture<Void> startAsync() {
+        if (started != null) return started;
+        started = new CompletableFuture<>();
+        Thread thread = TaskRuntime.newThread("tunesphere-library", () -> {
+            try {
+                // Watch first, so nothing changed during the initial scan gets missed
+                Map<WatchKey, Path> keys = startWatching();
+                loadKnown();
+                scan(root);
+                ready = true;
+                started.complete(null);
+                FeatureAnalyzer.startBackground();
+                if (keys != null) watch(keys);
+            } catch (Exception e) {
+                if (!closed) e.printStackTrace();
+                started.completeExceptionally(e);
+            }
+        });
+        thread.start();
+        return started;
+    }
+
+    // True once the first scan is in the table
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return known.size();
+    }
+
+    // --- QUERIES ---
+    // One-off sync of the table with the disk, without watching (command line tools)
+    public void refresh() throws IOException, SQLException {
+        loadKnown();
+        scan(root);
+    }
+
+    // Folder tracks ordered by how well they fit the mood, plus the closest untagged tracks;
+    // just the folder when nothing has been analysed yet (see FeatureAnalyzer)
+    public List<File> playlistForMood(String mood, int extra) {
+        List<File> folder = filesForMood(mood);
+        try {
+            List<File> playlist = MoodProfile.playlist(Mood.fromName(mood), folder, extra);
+            return playlist != null ? playlist : folder;
+        } catch (SQLException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return folder;
+        }
+    }
+
+    public List<File> filesForMood(String mood) {
+        try {
+            return Database.query("SELECT path FROM tracks WHERE mood = ? ORDER BY path", rs -> {
+                List<File> files = new ArrayList<>();
+                while (rs.next()) files.add(new File(rs.getString(1)));
+                return files;
+            }, mood);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public Track find(File file) {
+        try {
+            return Database.query(
+                    "SELECT path, mood, size, mtime, title, artist, album, duration_ms, bitrate_kbps FROM tracks WHERE path = ?",
+                    rs -> {
+                        if (!rs.next()) return null;
+                        Track t = new Track(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getLong(4));
+                        t.title = rs.getString(5);
+                        t.artist = rs.getString(6);
+                        t.album = rs.getString(7);
+                        t.durationMillis = rs.getLong(8);
+                        t.bitrateKbps = rs.getInt(9);
+                        return t;
+                    }, file.toPath().toAbsolutePath().normalize().toString());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // --- SCANNING ---
+    private void loadKnown() throws SQLException {
+        Database.query("SELECT path, size, mtime FROM tracks", rs -> {
+            while (rs.next()) known.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)});
+            return null;
+        });
+    }
+
+    // Brings the table in line with everything below `dir`
+    public void scan(Path dir) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Map<String, BasicFileAttributes> present = new HashMap<>();
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.filter(p -> p.getFileName().toString().toLowerCase().endsWith(".mp3"))
+                        .forEach(p -> {
+                            try {
+                                present.put(p.toAbsolutePath().normalize().toString(),
+                                        Files.readAttributes(p, BasicFileAttributes.class));
+                            } catch (IOException ignored) {
+                                // deleted while walking
+                            }
+                        });
+            }
+        }
+
+        List<Track> changed = new ArrayList<>();
+        present.forEach((path, attrs) -> {
+            long size = attrs.size();
+            long mtime = attrs.lastModifiedTime().toMillis();
+            long[] old = known.get(path);
+            if (old == null || old[0] != size || old[1] != mtime) {
+                changed.add(new Track(path, moodOf(Paths.get(path)), size, mtime));
+            }
+        });
+
+        String prefix = dir.toAbsolutePath().normalize().toString() + File.separator;
+        List<String> removed = known.keySet().stream()
+                .filter(p -> p.startsWith(prefix) && !present.containsKey(p))
+                .collect(Collectors.toList());
+
+        // Reading tags and frame headers is I/O bound and independent per file
+        changed.parallelStream().forEach(LibraryIndex::readMetadata);
+        store(changed, removed);
+
+        System.out.printf("Library: %d added/updated, %d removed, %d unchanged in %d ms%n",
+                changed.size(), removed.size(), present.size() - changed.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void readMetadata(Track track) {
+        File file = new File(track.path);
+        try {
+            Id3Tags tags = Id3Tags.read(file);
+            track.title = tags.getTitle();
+            track.artist = tags.getArtist();
+            track.album = tags.getAlbum();
+        } catch (IOException e) {
+            System.out.println("Cannot read tags of " + file.getName() + ": " + e.getMessage());
+        }
+        try {
+            Mp3FrameIndex.Probe probe = Mp3FrameIndex.probe(file);
+            track.durationMillis = probe.getDurationMillis();
+            track.bitrateKbps = probe.getBitrateKbps();
+        } catch (IOException e) {
+            System.out.println("Cannot read audio header of " + file.getName() + ": " + e.getMessage());
+        }
+        if (track.title == null) track.title = file.getName().replaceFirst("(?i)\\.mp3$", "");
+    }
+
+    private void store(List<Track> changed, List<String> removed) throws SQLException {
+        if (changed.isEmpty() && removed.isEmpty()) return;
+        try (PooledConnection pooled = Database.acquire()) {
+            Connection conn = pooled.connection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement upsert = pooled.prepare(
+                        "INSERT OR REPLACE INTO tracks (path, mood, title, artist, album, duration_ms, bitrate_kbps, size, mtime) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                PreparedStatement delete = pooled.prepare("DELETE FROM tracks WHERE path = ?");
+                PreparedStatement deleteFeatures = pooled.prepare("DELETE FROM track_features WHERE path = ?");
+                for (Track t : changed) {
+                    upsert.setString(1, t.path);
+                    upsert.setString(2, t.mood);
+                    upsert.setString(3, t.title);
+                    upsert.setString(4, t.artist);
+                    upsert.setString(5, t.album);
+                    upsert.setLong(6, t.durationMillis);
+                    upsert.setInt(7, t.bitrateKbps);
+                    upsert.setLong(8, t.size);
+                    upsert.setLong(9, t.mtime);
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+                for (String path : removed) {
+                    delete.setString(1, path);
+                    delete.addBatch();
+                    deleteFeatures.setString(1, path);
+                    deleteFeatures.addBatch();
+                }
+                delete.executeBatch();
+                deleteFeatures.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        for (Track t : changed) known.put(t.path, new long[]{t.size, t.mtime});
+        for (String path : removed) known.remove(path);
+        MoodProfile.invalidate();
+    }
+
+    // songs/<mood>/.../file.mp3 -> <mood>
+    private String moodOf(Path file) {
+        Path relative = root.relativize(file);
+        return relative.getNameCount() > 1 ? relative.getName(0).toString().toLowerCase() : null;
+    }
+
+    // --- WATCHING ---
+    private Map<WatchKey, Path> startWatching() throws IOException {
+        if (!Files.isDirectory(root)) return null;
+        watcher = FileSystems.getDefault().newWatchService();
+        Map<WatchKey, Path> keys = new HashMap<>();
+        registerTree(root, keys);
+        return keys;
+    }
+
+    // Runs until close(); a failed rescan is logged and the next change tries again
+    private void watch(Map<WatchKey, Path> keys) throws InterruptedException {
+        while (!closed) {
+            WatchKey key = watcher.take();
+            // Copying an album fires a burst of events, collect them before rescanning
+            Set<Path> dirty = new HashSet<>();
+            boolean overflow = false;
+            do {
+                Path dir = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (dir == null) continue;
+                    if (event.kind() == OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+                        try {
+                            registerTree(child, keys);
+                        } catch (IOException e) {
+                            // Gone again already, or unreadable: the rescan below sees what is left
+                            System.out.println("Cannot watch " + child + ": " + e.getMessage());
+                        }
+                        dirty.add(child);
+                    }
+                    dirty.add(dir);
+                }
+                if (!key.reset()) keys.remove(key);
+                key = watcher.poll(WATCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            } while (key != null && !closed);
+
+            if (overflow) {
+                rescan(root);
+            } else {
+                // Sub-folders first would rescan files twice, so skip dirs covered by a dirty parent
+                for (Path dir : dirty) {
+                    boolean covered = dirty.stream().anyMatch(other -> !other.equals(dir) && dir.startsWith(other));
+                    if (!covered) rescan(dir);
+                }
+            }
+        }
+    }
+
+    private void rescan(Path dir) {
+        try {
+            scan(dir);
+        } catch (IOException | SQLException e) {
+            System.out.println("Cannot rescan " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void registerTree(Path dir, Map<WatchKey, Path> keys) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                keys.put(d.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), d);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (watcher != null) watcher.close();
+        } catch (IOException ignored) {}
+    }
+}
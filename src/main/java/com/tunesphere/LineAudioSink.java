@@ -0,0 +1,118 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import java.util.ArrayList;
+import java.util.List;
+
+// Plays PCM through a Java Sound SourceDataLine, on the default sound device or a chosen mixer
+public class LineAudioSink implements AudioSink {
+
+    private static final int BUFFER_MILLIS = 250;
+
+    private volatile SourceDataLine line;
+    private AudioFormat format;
+    private Mixer.Info mixer; // null = system default
+    private volatile boolean paused = false;
+
+    public LineAudioSink() {
+        this(null);
+    }
+
+    public LineAudioSink(Mixer.Info mixer) {
+        this.mixer = mixer;
+    }
+
+    // Every device that can play PCM
+    public static List<Mixer.Info> outputDevices() {
+        List<Mixer.Info> devices = new ArrayList<>();
+        Line.Info lineInfo = new Line.Info(SourceDataLine.class);
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            if (AudioSystem.getMixer(info).isLineSupported(lineInfo)) devices.add(info);
+        }
+        return devices;
+    }
+
+    // First device whose name contains the given text, or null for the default
+    public static Mixer.Info findDevice(String name) {
+        if (name == null || name.isBlank()) return null;
+        for (Mixer.Info info : outputDevices()) {
+            if (info.getName().toLowerCase().contains(name.toLowerCase())) return info;
+        }
+        System.out.println("No output device matching \"" + name + "\", using the default");
+        return null;
+    }
+
+    public synchronized Mixer.Info getMixer() {
+        return mixer;
+    }
+
+    // Moves playback to another device; what was buffered on the old one is lost
+    public synchronized void setMixer(Mixer.Info mixer) throws Exception {
+        this.mixer = mixer;
+        AudioFormat current = format;
+        if (current != null) open(current);
+    }
+
+    @Override
+    public synchronized void open(AudioFormat format) throws Exception {
+        close();
+        SourceDataLine newLine = AudioSystem.getSourceDataLine(format, mixer);
+        int bufferBytes = (int) (format.getFrameRate() * format.getFrameSize() * BUFFER_MILLIS / 1000);
+        newLine.open(format, bufferBytes);
+        if (!paused) newLine.start();
+        this.format = format;
+        this.line = newLine;
+    }
+
+    @Override
+    public synchronized AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        SourceDataLine current = line;
+        if (current != null) current.write(data, offset, length);
+    }
+
+    @Override
+    public void drain() {
+        SourceDataLine current = line;
+        if (current != null) current.drain();
+    }
+
+    @Override
+    public void flush() {
+        SourceDataLine current = line;
+        if (current != null) current.flush();
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+        SourceDataLine current = line;
+        if (current != null) current.stop();
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        SourceDataLine current = line;
+        if (current != null) current.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        SourceDataLine current = line;
+        line = null;
+        format = null;
+        if (current != null) {
+            current.stop();
+            current.close();
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.tunesphere;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.*;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class Login extends Application {
 
@@ -14,7 +18,26 @@ public class Login extends Application {
 
     @Override
     public void start(Stage primaryStage) {
+        MetricsExporter.startFromSystemProperties();
         showLoginScreen(primaryStage);
+        // OpenCV, FFmpeg and JLayer (and then the Haar cascades) load while the user is typing,
+        // but only once the login window is on screen, so they never delay it
+        afterFirstFrame(primaryStage.getScene(), () -> {
+            long millis = Duration.between(ProcessHandle.current().info().startInstant().orElse(Instant.now()),
+                    Instant.now()).toMillis();
+            Metrics.gauge("startup.firstFrameMillis", () -> millis);
+            System.out.println("Login window up " + millis + " ms after launch");
+            // Used by the CDS training run and the startup benchmark
+            if (Boolean.getBoolean("tunesphere.exitAfterFirstFrame")) {
+                Platform.exit();
+                return;
+            }
+            NativeLibraries.preloadAsync();
+        });
+        // Calibrates the password hash cost in the background
+        AuthService.shared();
+        // Migrations run before the library indexer touches the tracks table
+        CompletableFuture.runAsync(Database::init, TaskRuntime.io()).thenRun(() -> LibraryIndex.shared().startAsync());
     }
 
     // --- LOGIN SCREEN ---
@@ -65,12 +88,22 @@ public class Login extends Application {
                 return;
             }
 
-            if (authenticateUser(username, password)) {
-                messageLabel.setText("Login successful!");
-                showMainApp(primaryStage, username);
-            } else {
-                messageLabel.setText("Invalid credentials!");
-            }
+            // Hashing takes ~150 ms on purpose, so keep it off the FX thread
+            loginBtn.setDisable(true);
+            messageLabel.setText("Signing in...");
+            AuthService.shared().authenticate(username, password).whenComplete((ok, ex) -> Platform.runLater(() -> {
+                loginBtn.setDisable(false);
+                if (ex != null) {
+                    ex.printStackTrace();
+                    messageLabel.setText("Login failed, please try again.");
+                } else if (ok) {
+                    messageLabel.setText("Login successful!");
+                    HistoryLog.shared().setUser(username);
+                    showMainApp(primaryStage, username);
+                } else {
+                    messageLabel.setText("Invalid credentials!");
+                }
+            }));
         });
 
         registerBtn.setOnAction(e -> openRegisterWindow(primaryStage));
@@ -112,6 +145,15 @@ public class Login extends Application {
         Label emailLabel = new Label("Enter Email:");
         TextField emailField = new TextField();
 
+        // Live availability hints, answered from the in-memory user directory where possible
+        UserDirectory directory = AuthService.shared().getDirectory();
+        Label userHint = new Label();
+        Label emailHint = new Label();
+        usernameField.textProperty().addListener((obs, old, name) ->
+                showAvailability(userHint, usernameField, name, directory.isUsernameTaken(name), "Username"));
+        emailField.textProperty().addListener((obs, old, email) ->
+                showAvailability(emailHint, emailField, email, directory.isEmailTaken(email), "Email"));
+
         Label passLabel = new Label("Choose Password:");
         PasswordField passwordField = new PasswordField();
 
@@ -142,11 +184,21 @@ public class Login extends Application {
                 return;
             }
 
-            if (registerUser(username, email, password)) {
-                msgLabel.setText("Registration successful!");
-            } else {
-                msgLabel.setText("Username or email already exists!");
-            }
+            registerBtn.setDisable(true);
+            msgLabel.setText("Creating account...");
+            AuthService.shared().register(username, email, password).whenComplete((result, ex) -> Platform.runLater(() -> {
+                registerBtn.setDisable(false);
+                if (ex != null) {
+                    ex.printStackTrace();
+                    msgLabel.setText("Registration failed, please try again.");
+                } else if (result == AuthService.RegisterResult.OK) {
+                    msgLabel.setText("Registration successful!");
+                } else if (result == AuthService.RegisterResult.TAKEN) {
+                    msgLabel.setText("Username or email already exists!");
+                } else {
+                    msgLabel.setText("Registration failed, please try again.");
+                }
+            }));
         });
 
         backBtn.setOnAction(e -> {
@@ -159,18 +211,29 @@ public class Login extends Application {
         vbox.setAlignment(Pos.CENTER);
         vbox.getChildren().addAll(
                 title,
-                userLabel, usernameField,
-                emailLabel, emailField,
+                userLabel, usernameField, userHint,
+                emailLabel, emailField, emailHint,
                 passLabel, passwordField, visiblePasswordField, showPassword,
                 registerBtn, backBtn, msgLabel
         );
 
-        Scene regScene = new Scene(vbox, 400, 450);
+        Scene regScene = new Scene(vbox, 400, 500);
         applyTheme(regScene);
         regStage.setScene(regScene);
         regStage.show();
     }
 
+    private void showAvailability(Label hint, TextField field, String value, CompletableFuture<Boolean> taken, String what) {
+        if (value.isEmpty()) {
+            hint.setText("");
+            return;
+        }
+        taken.whenComplete((isTaken, ex) -> Platform.runLater(() -> {
+            if (ex != null || !value.equals(field.getText())) return; // lookup failed or user kept typing
+            hint.setText(isTaken ? "❌ " + what + " already taken" : "✅ " + what + " available");
+        }));
+    }
+
     // --- MAIN APP SCREEN ---
     public void showMainApp(Stage stage, String username) {
         Label welcome = new Label("Welcome, " + username + "!");
@@ -180,12 +243,25 @@ public class Login extends Application {
         Button logoutBtn = new Button("Logout");
 
         startMoodBtn.setOnAction(e -> {
-            MoodDetector moodDetector = new MoodDetector();
-            Stage moodStage = new Stage();
-            moodDetector.start(moodStage);
+            // The camera pipeline needs OpenCV; the first time in it may still be loading
+            if (!NativeLibraries.isLoaded()) {
+                startMoodBtn.setDisable(true);
+                startMoodBtn.setText("Loading camera...");
+            }
+            NativeLibraries.preloadAsync().whenComplete((ok, ex) -> Platform.runLater(() -> {
+                startMoodBtn.setDisable(false);
+                startMoodBtn.setText("Start Mood Detection");
+                // On failure MoodDetector reports what is missing
+                MoodDetector moodDetector = new MoodDetector();
+                Stage moodStage = new Stage();
+                moodDetector.start(moodStage);
+            }));
         });
 
-        logoutBtn.setOnAction(e -> showLoginScreen(stage));
+        logoutBtn.setOnAction(e -> {
+            HistoryLog.shared().setUser(null);
+            showLoginScreen(stage);
+        });
 
         ToggleButton themeToggle = new ToggleButton(isDarkMode ? "🌙 Dark Mode" : "🌞 Light Mode");
         themeToggle.setSelected(isDarkMode);
@@ -207,34 +283,14 @@ public class Login extends Application {
         stage.show();
     }
 
-    // --- DATABASE METHODS ---
-    private boolean authenticateUser(String username, String password) {
-        try (Connection conn = Database.connect()) {
-            String query = "SELECT * FROM users WHERE username=? AND password=?";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    private boolean registerUser(String username, String email, String password) {
-        try (Connection conn = Database.connect()) {
-            String query = "INSERT INTO users (username, email, password) VALUES (?, ?, ?)";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            stmt.setString(2, email);
-            stmt.setString(3, password);
-            stmt.executeUpdate();
-            return true;
-        } catch (SQLException e) {
-            System.out.println("Error: " + e.getMessage());
-            return false;
-        }
+    // Runs once, after the scene's first layout pulse (the frame is then handed to the renderer)
+    private static void afterFirstFrame(Scene scene, Runnable action) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            Platform.runLater(action);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
     }
 
     // --- THEME HANDLING ---
@@ -253,6 +309,21 @@ public class Login extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        System.out.println(AuthService.shared().getDirectory().report());
+        MetricsExporter.stop();
+        PlaybackService.shared().closeAll();
+        FeatureAnalyzer.stopBackground(5, TimeUnit.SECONDS);
+        System.out.println(PcmCache.shared().report());
+        // Sessions are closed, so their last events are queued; write them before the pool goes
+        HistoryLog history = HistoryLog.shared();
+        history.close();
+        System.out.println(history.report());
+        TaskRuntime.shutdown(2, TimeUnit.SECONDS);
+        Database.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
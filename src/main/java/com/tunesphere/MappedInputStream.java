@@ -0,0 +1,79 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// InputStream over a read-only memory mapping of a whole file. Reads are plain memory copies out of the
+// page cache: no read() system call per buffer refill and no extra copy through a BufferedInputStream.
+// The mapping is released by the GC once the stream is unreachable; close() just stops further reads.
+public class MappedInputStream extends InputStream {
+
+    private ByteBuffer buffer;
+    private int mark = 0;
+
+    public MappedInputStream(File file, long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.position((int) Math.min(offset, size));
+        }
+    }
+
+    @Override
+    public int read() {
+        ByteBuffer b = buffer;
+        return b != null && b.hasRemaining() ? b.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] out, int offset, int length) {
+        ByteBuffer b = buffer;
+        if (length == 0) return 0;
+        if (b == null || !b.hasRemaining()) return -1;
+        int n = Math.min(length, b.remaining());
+        b.get(out, offset, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        ByteBuffer b = buffer;
+        if (b == null || n <= 0) return 0;
+        int skipped = (int) Math.min(n, b.remaining());
+        b.position(b.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        ByteBuffer b = buffer;
+        return b != null ? b.remaining() : 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        if (buffer != null) mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (buffer == null) throw new IOException("Stream closed");
+        buffer.position(mark);
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+    }
+}
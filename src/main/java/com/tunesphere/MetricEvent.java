@@ -0,0 +1,38 @@
+package com.tunesphere;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// One metric over one export interval, so stalls line up with GC/IO events in a JFR recording.
+// Start the app with -XX:StartFlightRecording to capture them.
+@Name("com.tunesphere.Metric")
+@Label("TuneSphere Metric")
+@Category("TuneSphere")
+@Description("Counter, gauge or latency histogram summary for the last export interval")
+class MetricEvent extends jdk.jfr.Event {
+
+    @Label("Name")
+    String name;
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Value")
+    @Description("Counter delta or gauge value; sample count for histograms")
+    double value;
+
+    @Label("Median")
+    @Timespan(Timespan.NANOSECONDS)
+    long p50;
+
+    @Label("99th Percentile")
+    @Timespan(Timespan.NANOSECONDS)
+    long p99;
+
+    @Label("Max")
+    @Timespan(Timespan.NANOSECONDS)
+    long max;
+}
@@ -0,0 +1,80 @@
+package com.tunesphere;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Process-wide metrics registry: counters, gauges and latency histograms, looked up by name.
+// Look instruments up once and keep them in a field; recording is then allocation-free.
+// Latencies are recorded in nanoseconds. MetricsExporter and MetricsOverlay read from here.
+public final class Metrics {
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    // Replaces any gauge already registered under this name
+    public static void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // Removes the gauge only if it is still the given one
+    public static void removeGauge(String name, DoubleSupplier value) {
+        gauges.remove(name, value);
+    }
+
+    // Sorted copies for the exporters
+
+    public static Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, c) -> values.put(name, c.get()));
+        return values;
+    }
+
+    public static Map<String, Double> gaugeValues() {
+        Map<String, Double> values = new TreeMap<>();
+        gauges.forEach((name, g) -> {
+            try {
+                values.put(name, g.getAsDouble());
+            } catch (RuntimeException e) {
+                // a gauge over something that is shutting down, skip it this round
+            }
+        });
+        return values;
+    }
+
+    public static Map<String, Histogram.Snapshot> histogramSnapshots() {
+        Map<String, Histogram.Snapshot> values = new TreeMap<>();
+        histograms.forEach((name, h) -> values.put(name, h.snapshot()));
+        return values;
+    }
+}
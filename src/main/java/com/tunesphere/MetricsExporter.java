@@ -0,0 +1,153 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Every few seconds appends one JSON line with what happened since the last one to metrics.jsonl,
+// and emits the same numbers as JFR events. Latencies are written in milliseconds.
+// -Dtunesphere.metrics.file=<path> ("" turns the file off), -Dtunesphere.metrics.period=<seconds>
+public final class MetricsExporter {
+
+    private static final long MAX_FILE_BYTES = 5 * 1024 * 1024; // then rotated to <file>.1
+
+    // Turns cumulative metrics into per-interval ones
+    public static final class Window {
+        private Map<String, Histogram.Snapshot> lastHistograms = new HashMap<>();
+        private Map<String, Long> lastCounters = new HashMap<>();
+
+        public synchronized Map<String, Histogram.Snapshot> histograms() {
+            Map<String, Histogram.Snapshot> now = Metrics.histogramSnapshots();
+            Map<String, Histogram.Snapshot> diff = new TreeMap<>();
+            now.forEach((name, s) -> diff.put(name, s.minus(lastHistograms.get(name))));
+            lastHistograms = now;
+            return diff;
+        }
+
+        public synchronized Map<String, Long> counters() {
+            Map<String, Long> now = Metrics.counterValues();
+            Map<String, Long> diff = new TreeMap<>();
+            now.forEach((name, v) -> diff.put(name, v - lastCounters.getOrDefault(name, 0L)));
+            lastCounters = now;
+            return diff;
+        }
+    }
+
+    private static ScheduledExecutorService scheduler;
+    private static File file;
+    private static final Window window = new Window();
+
+    private MetricsExporter() {
+    }
+
+    public static synchronized void startFromSystemProperties() {
+        String path = System.getProperty("tunesphere.metrics.file", "metrics.jsonl");
+        long period = Long.getLong("tunesphere.metrics.period", 10);
+        start(path.isEmpty() ? null : new File(path), period);
+    }
+
+    // file may be null to only emit JFR events
+    public static synchronized void start(File target, long periodSeconds) {
+        if (scheduler != null) return;
+        file = target;
+        scheduler = Executors.newSingleThreadScheduledExecutor(TaskRuntime.factory("tunesphere-metrics"));
+        scheduler.scheduleAtFixedRate(MetricsExporter::export, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Writes the last partial interval and stops
+    public static synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        export();
+    }
+
+    private static void export() {
+        try {
+            Map<String, Long> counters = window.counters();
+            Map<String, Double> gauges = Metrics.gaugeValues();
+            Map<String, Histogram.Snapshot> histograms = window.histograms();
+            emitEvents(counters, gauges, histograms);
+            if (file != null) append(toJson(counters, gauges, histograms));
+        } catch (Exception e) {
+            e.printStackTrace(); // never let one bad round kill the schedule
+        }
+    }
+
+    static String toJson(Map<String, Long> counters, Map<String, Double> gauges, Map<String, Histogram.Snapshot> histograms) {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"time\":\"").append(Instant.now()).append("\",\"counters\":{");
+        String sep = "";
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            sb.append(sep).append('"').append(e.getKey()).append("\":").append(e.getValue());
+            sep = ",";
+        }
+        sb.append("},\"gauges\":{");
+        sep = "";
+        for (Map.Entry<String, Double> e : gauges.entrySet()) {
+            double v = e.getValue();
+            sb.append(sep).append('"').append(e.getKey()).append("\":").append(Double.isFinite(v) ? String.format(Locale.ROOT, "%.3f", v) : "null");
+            sep = ",";
+        }
+        sb.append("},\"histograms\":{");
+        sep = "";
+        for (Map.Entry<String, Histogram.Snapshot> e : histograms.entrySet()) {
+            Histogram.Snapshot s = e.getValue();
+            if (s.getCount() == 0) continue;
+            sb.append(sep).append('"').append(e.getKey()).append("\":").append(String.format(Locale.ROOT,
+                    "{\"count\":%d,\"mean\":%.3f,\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f}",
+                    s.getCount(), s.getMean() / 1e6, s.getValueAt(0.5) / 1e6, s.getValueAt(0.9) / 1e6,
+                    s.getValueAt(0.99) / 1e6, s.getMax() / 1e6));
+            sep = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static void append(String line) throws IOException {
+        if (file.length() > MAX_FILE_BYTES) {
+            File old = new File(file.getPath() + ".1");
+            old.delete();
+            file.renameTo(old);
+        }
+        try (Writer out = new FileWriter(file, true)) {
+            out.write(line);
+            out.write('\n');
+        }
+    }
+
+    private static void emitEvents(Map<String, Long> counters, Map<String, Double> gauges, Map<String, Histogram.Snapshot> histograms) {
+        if (!new MetricEvent().isEnabled()) return; // no recording running
+        counters.forEach((name, v) -> commit(name, "counter", v, null));
+        gauges.forEach((name, v) -> commit(name, "gauge", v, null));
+        histograms.forEach((name, s) -> {
+            if (s.getCount() > 0) commit(name, "histogram", s.getCount(), s);
+        });
+    }
+
+    private static void commit(String name, String kind, double value, Histogram.Snapshot s) {
+        MetricEvent event = new MetricEvent();
+        event.name = name;
+        event.kind = kind;
+        event.value = value;
+        if (s != null) {
+            event.p50 = s.getValueAt(0.5);
+            event.p99 = s.getValueAt(0.99);
+            event.max = s.getMax();
+        }
+        event.commit();
+    }
+}
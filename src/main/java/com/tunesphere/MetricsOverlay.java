@@ -0,0 +1,49 @@
+package com.tunesphere;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Label;
+import javafx.util.Duration;
+
+import java.util.Map;
+
+// Small live stats panel (last second of every latency histogram, counters, gauges) to lay over the
+// camera preview. Refreshed on the FX thread once a second while visible; hiding it stops the refresh.
+public class MetricsOverlay extends Label {
+
+    private final MetricsExporter.Window window = new MetricsExporter.Window();
+    private final Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> update()));
+
+    public MetricsOverlay() {
+        setStyle("-fx-font-family: monospace; -fx-font-size: 11px; -fx-text-fill: #ecf0f1; "
+                + "-fx-background-color: rgba(0, 0, 0, 0.6); -fx-padding: 6;");
+        setMouseTransparent(true);
+        refresh.setCycleCount(Timeline.INDEFINITE);
+        visibleProperty().addListener((obs, was, visible) -> {
+            if (visible) {
+                window.histograms(); // start a fresh interval
+                window.counters();
+                update();
+                refresh.play();
+            } else {
+                refresh.stop();
+            }
+        });
+        setVisible(false);
+    }
+
+    private void update() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram.Snapshot> e : window.histograms().entrySet()) {
+            Histogram.Snapshot s = e.getValue();
+            if (s.getCount() == 0) continue;
+            sb.append(String.format("%-22s %4d/s  p50 %6.2f  p99 %6.2f  max %6.2f ms%n", e.getKey(), s.getCount(),
+                    s.getValueAt(0.5) / 1e6, s.getValueAt(0.99) / 1e6, s.getMax() / 1e6));
+        }
+        window.counters().forEach((name, delta) -> {
+            if (delta > 0) sb.append(String.format("%-22s +%d%n", name, delta));
+        });
+        Metrics.gaugeValues().forEach((name, v) -> sb.append(String.format("%-22s %.1f%n", name, v)));
+        setText(sb.length() > 0 ? sb.toString().trim() : "No activity");
+    }
+}
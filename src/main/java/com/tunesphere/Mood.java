@@ -0,0 +1,31 @@
+package com.tunesphere;
+
+public enum Mood {
+    HAPPY("happy", "Happy 😊"),
+    SAD("sad", "Sad 😢"),
+    NEUTRAL("neutral", "Neutral 😐");
+
+    private final String folderName;
+    private final String label;
+
+    Mood(String folderName, String label) {
+        this.folderName = folderName;
+        this.label = label;
+    }
+
+    // Sub-folder of songs/ holding this mood's tracks
+    public String folderName() {
+        return folderName;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public static Mood fromName(String name) {
+        for (Mood mood : values()) {
+            if (mood.folderName.equalsIgnoreCase(name)) return mood;
+        }
+        throw new IllegalArgumentException("Unknown mood: " + name);
+    }
+}
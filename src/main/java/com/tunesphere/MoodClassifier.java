@@ -0,0 +1,55 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.io.File;
+
+// Turns a camera frame into a mood. No JavaFX dependency, so the camera screen, the batch mode
+// and the benchmarks share the implementations. Not thread-safe: one instance per worker thread.
+public interface MoodClassifier extends AutoCloseable {
+
+    // Tunable knobs for every implementation; the defaults are what the camera screen has always used
+    final class Settings {
+        public String engine = System.getProperty("tunesphere.classifier", "haar"); // haar | dnn
+        public double sadRatio = 1.5;         // Haar: face height / width above this reads as SAD
+        public double smileScaleFactor = 1.7;
+        public int smileMinNeighbors = 22;
+        public int minSmileSize = 25;
+        public int detectWidth = FaceTracker.DEFAULT_DETECT_WIDTH;
+        public int fullScanInterval = FaceTracker.DEFAULT_FULL_SCAN_INTERVAL;
+        public String modelPath = System.getProperty("tunesphere.model", DnnMoodClassifier.DEFAULT_MODEL); // DNN
+        public int maxBatch = 8;              // DNN: faces classified per forward pass
+    }
+
+    String getName();
+
+    // Mood for one BGR frame, or null when there is no face. Consecutive frames of one video
+    // reuse the last face position; call reset() before an unrelated image.
+    Mood classify(Mat bgr);
+
+    void reset();
+
+    // Face behind the last result (overwritten by the next call), or null
+    Rect getFace();
+
+    // How sure the last result is, 0..1
+    float getConfidence();
+
+    FaceTracker getTracker();
+
+    @Override
+    void close();
+
+    // Builds the engine named in the settings. Asking for the DNN without its model file falls back
+    // to Haar. Throws IllegalStateException if the cascade files are missing.
+    static MoodClassifier create(Settings settings) {
+        if (settings.engine.equalsIgnoreCase("dnn")) {
+            if (new File(settings.modelPath).isFile()) return new DnnMoodClassifier(settings);
+            System.out.println("Emotion model " + settings.modelPath + " not found, using the Haar classifier");
+        } else if (!settings.engine.equalsIgnoreCase("haar")) {
+            System.out.println("Unknown classifier '" + settings.engine + "', using the Haar classifier");
+        }
+        return new HaarMoodClassifier(settings);
+    }
+}
@@ -1,38 +1,47 @@
 package com.tunesphere;
 
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import org.bytedeco.javacv.*;
-import org.bytedeco.opencv.opencv_core.*;
-import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
 
-import javax.swing.*;
-import java.awt.image.BufferedImage;
-
-import static org.bytedeco.opencv.global.opencv_imgproc.*;
-import static org.bytedeco.opencv.global.opencv_objdetect.CASCADE_SCALE_IMAGE;
+import javax.sound.sampled.Mixer;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class MoodDetector {
 
-    private CascadeClassifier faceDetector;
-    private volatile boolean running = true;
-    private String detectedMood = "neutral";
+    private static final Metrics.Counter moodSwitches = Metrics.counter("detector.moodSwitches");
 
-    public void start(Stage stage) {
-        faceDetector = new CascadeClassifier("haarcascade_frontalface_default.xml");
-        if (faceDetector.empty()) {
-            JOptionPane.showMessageDialog(null, "Face detector not found. Please add haarcascade_frontalface_default.xml to project root.");
-            return;
-        }
+    private FramePipeline pipeline;
+
+    // Everything this window starts in the background; closed (cancelled and awaited) when the window goes away
+    private final TaskScope tasks = TaskRuntime.openScope("mood-detector");
+    private CompletableFuture<Void> closed = CompletableFuture.completedFuture(null);
+
+    // -Dtunesphere.previewFps / -Dtunesphere.detectFps; the governor lowers these while we are in the background
+    private final FrameGovernor governor = new FrameGovernor(
+            doubleProperty("tunesphere.previewFps", FrameGovernor.DEFAULT_PREVIEW_FPS),
+            doubleProperty("tunesphere.detectFps", FrameGovernor.DEFAULT_DETECT_FPS));
+
+    // Only touched by the detection stage thread; the FX thread asks for a reset through smootherReset
+    // when continuous mode is turned back on, so the current mood is picked up afresh
+    private final MoodSmoother moodSmoother = new MoodSmoother();
+    private volatile boolean smootherReset = false;
+    private volatile boolean moodLocked = false;
 
+    // Continuous mode keeps switching playlists as the (smoothed) mood changes,
+    // otherwise the first stable mood decides the playlist for the session
+    private volatile boolean continuousMode = true;
+
+    private PlaybackListener playbackListener;
+
+    public void start(Stage stage) {
         // --- UI Components ---
         ImageView imageView = new ImageView();
         imageView.setFitWidth(640);
@@ -51,6 +60,24 @@ public class MoodDetector {
         Button redetectBtn = new Button("🔄 Detect Again");
         Button backBtn = new Button("⬅ Back");
 
+        // Live latency / fps numbers over the preview
+        MetricsOverlay statsOverlay = new MetricsOverlay();
+        CheckBox statsBox = new CheckBox("Show stats");
+        statsBox.setSelected(Boolean.getBoolean("tunesphere.metrics.overlay"));
+        statsOverlay.visibleProperty().bind(statsBox.selectedProperty());
+
+        CheckBox continuousBox = new CheckBox("Keep following my mood");
+        continuousBox.setSelected(continuousMode);
+        continuousBox.setOnAction(e -> {
+            continuousMode = continuousBox.isSelected();
+            // Following the mood again needs detection back
+            if (continuousMode && moodLocked) {
+                smootherReset = true;
+                moodLocked = false;
+                governor.setIdle(false);
+            }
+        });
+
         // --- Manual Mood Selection ---
         Label chooseMoodLabel = new Label("🎭 Or choose a mood manually:");
         ComboBox<String> moodDropdown = new ComboBox<>();
@@ -66,17 +93,16 @@ public class MoodDetector {
                 return;
             }
 
-            running = false; // stop camera
-            MusicPlayer.stop();
+            stopCamera();
 
             // Play songs directly based on user selection
-            new Thread(() -> {
+            tasks.fork(() -> {
                 MusicPlayer.playMoodSongs(selectedMood.toLowerCase());
                 Platform.runLater(() -> {
                     moodLabel.setText("Selected Mood: " + selectedMood + " 🎵");
                     songLabel.setText("Now Playing: " + MusicPlayer.getCurrentSongName());
                 });
-            }).start();
+            });
         });
 
         // --- Button Actions ---
@@ -93,19 +119,19 @@ public class MoodDetector {
         stopBtn.setOnAction(e -> MusicPlayer.stop());
 
         redetectBtn.setOnAction(e -> {
-            running = false;
             MusicPlayer.stop();
             stage.close();
 
-            Platform.runLater(() -> {
+            // Only open the camera again once this window has let go of it
+            closed.thenRun(() -> Platform.runLater(() -> {
                 MoodDetector newDetector = new MoodDetector();
                 Stage newStage = new Stage();
                 newDetector.start(newStage);
-            });
+            }));
         });
 
         backBtn.setOnAction(e -> {
-            running = false;
+            stopCamera();
             MusicPlayer.stop();
             stage.close();
 
@@ -119,7 +145,9 @@ public class MoodDetector {
         HBox controlButtons = new HBox(10, playBtn, pauseBtn, nextBtn, stopBtn);
         controlButtons.setAlignment(Pos.CENTER);
 
-        HBox topBar = new HBox(backBtn);
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox topBar = new HBox(10, backBtn, spacer, outputDevices(), statsBox);
         topBar.setAlignment(Pos.TOP_LEFT);
         topBar.setPadding(new Insets(10));
 
@@ -127,6 +155,7 @@ public class MoodDetector {
                 moodLabel,
                 songLabel,
                 controlButtons,
+                continuousBox,
                 redetectBtn,
                 chooseMoodLabel,
                 moodDropdown,
@@ -137,94 +166,151 @@ public class MoodDetector {
 
         BorderPane root = new BorderPane();
         root.setTop(topBar);
-        root.setCenter(imageView);
+        StackPane preview = new StackPane(imageView, statsOverlay);
+        StackPane.setAlignment(statsOverlay, Pos.TOP_LEFT);
+        root.setCenter(preview);
         root.setBottom(bottomPanel);
 
         Scene scene = new Scene(root, 800, 650);
         stage.setTitle("TuneSphere - Mood Detection");
         stage.setScene(scene);
+        stage.setOnHidden(e -> {
+            statsOverlay.visibleProperty().unbind();
+            statsOverlay.setVisible(false);
+            MusicPlayer.removeListener(playbackListener);
+            // Closing waits for the camera threads, keep that off the FX thread
+            closed = CompletableFuture.runAsync(tasks::close, TaskRuntime.io());
+        });
         stage.show();
 
-        // --- Camera Thread ---
-        new Thread(() -> {
-            try (OpenCVFrameGrabber grabber = new OpenCVFrameGrabber(0)) {
-                grabber.start();
+        // Nobody is watching a minimized window, and an unfocused one doesn't need 30 fps
+        stage.iconifiedProperty().addListener((obs, was, now) -> governor.setWindowState(now, stage.isFocused()));
+        stage.focusedProperty().addListener((obs, was, now) -> governor.setWindowState(stage.isIconified(), now));
+        governor.setWindowState(stage.isIconified(), stage.isFocused());
 
-                CascadeClassifier smileDetector = new CascadeClassifier("haarcascade_smile.xml");
-                if (smileDetector.empty()) {
-                    System.out.println("Smile detector not found!");
-                    return;
-                }
+        // Keep the label in sync when the player moves on by itself
+        playbackListener = new PlaybackListener() {
+            @Override
+            public void trackStarted(File track, int index) {
+                Platform.runLater(() -> songLabel.setText("Now Playing: " + track.getName()));
+            }
+        };
+        MusicPlayer.addListener(playbackListener);
+
+        // --- Camera Pipeline ---
+        // The governor paces the camera to what preview and detection actually need
+        pipeline = tasks.own(new FramePipeline(FrameSource.camera(0)))
+                .setGovernor(governor)
+                .addStage(FrameGovernor.PREVIEW, 2, previewStage(imageView))
+                .addStage(FrameGovernor.DETECT, 1, detectionStage(moodLabel, songLabel));
+        pipeline.start();
+    }
 
-                OpenCVFrameConverter.ToMat matConverter = new OpenCVFrameConverter.ToMat();
-                Java2DFrameConverter java2dConverter = new Java2DFrameConverter();
+    // Sound device picker for the player; the first entry is the system default
+    private ComboBox<String> outputDevices() {
+        List<Mixer.Info> devices = LineAudioSink.outputDevices();
+        ComboBox<String> box = new ComboBox<>();
+        box.getItems().add("Default output");
+        for (Mixer.Info info : devices) box.getItems().add(info.getName());
+        box.getSelectionModel().selectFirst();
+        box.setOnAction(e -> {
+            int i = box.getSelectionModel().getSelectedIndex();
+            if (i >= 0) MusicPlayer.setOutputDevice(i == 0 ? null : devices.get(i - 1));
+        });
+        return box;
+    }
 
-                boolean detected = false;
-                String currentMood = "neutral";
+    private void stopCamera() {
+        if (pipeline != null) pipeline.stop();
+    }
 
-                while (running) {
-                    Frame frame = grabber.grab();
-                    if (frame == null) continue;
+    // --- Preview Stage ---
+    private FramePipeline.FrameHandler previewStage(ImageView imageView) {
+        PreviewRenderer renderer = new PreviewRenderer(imageView);
+        return new FramePipeline.FrameHandler() {
+            @Override
+            public void handle(PipelineFrame frame) {
+                renderer.render(frame.mat());
+            }
 
-                    BufferedImage img = java2dConverter.convert(frame);
-                    if (img != null) {
-                        Image fxImage = SwingFXUtils.toFXImage(img, null);
-                        Platform.runLater(() -> imageView.setImage(fxImage));
-                    }
+            @Override
+            public void close() {
+                renderer.close();
+            }
+        };
+    }
 
-                    if (!detected) {
-                        Mat mat = matConverter.convert(frame);
-                        if (mat == null) continue;
-
-                        RectVector faces = new RectVector();
-                        faceDetector.detectMultiScale(mat, faces, 1.1, 5, CASCADE_SCALE_IMAGE,
-                                new Size(100, 100), new Size());
-
-                        if (faces.size() > 0) {
-                            Rect face = faces.get(0);
-                            rectangle(mat, face, new Scalar(0, 255, 0, 1));
-
-                            Mat faceROI = new Mat(mat, face);
-                            RectVector smiles = new RectVector();
-                            smileDetector.detectMultiScale(faceROI, smiles, 1.7, 22, 0,
-                                    new Size(25, 25), new Size());
-
-                            double ratio = (double) face.height() / face.width();
-
-                            if (smiles.size() > 0) {
-                                currentMood = "happy";
-                            } else if (ratio > 1.5) {
-                                currentMood = "sad";
-                            } else {
-                                currentMood = "neutral";
-                            }
-
-                            String moodText = switch (currentMood) {
-                                case "happy" -> "Happy 😊";
-                                case "sad" -> "Sad 😢";
-                                default -> "Neutral 😐";
-                            };
-
-                            Platform.runLater(() -> moodLabel.setText("Detected Mood: " + moodText));
-
-                            String moodForThread = currentMood;
-                            new Thread(() -> {
-                                MusicPlayer.playMoodSongs(moodForThread);
-                                Platform.runLater(() ->
-                                        songLabel.setText("Now Playing: " + MusicPlayer.getCurrentSongName()));
-                            }).start();
-
-                            detected = true;
-                        }
+    // --- Detection Stage ---
+    // Classifies every frame it gets; MoodSmoother decides when the playlist should follow
+    private FramePipeline.FrameHandler detectionStage(Label moodLabel, Label songLabel) {
+        return new FramePipeline.FrameHandler() {
+            private MoodClassifier classifier;
+
+            @Override
+            public void handle(PipelineFrame frame) {
+                // Created here rather than in start() so a slow cascade load never blocks the FX thread
+                if (classifier == null) {
+                    try {
+                        // -Dtunesphere.classifier=dnn switches to the ONNX emotion model
+                        classifier = MoodClassifier.create(new MoodClassifier.Settings());
+                    } catch (RuntimeException e) {
+                        System.out.println(e.getMessage());
+                        Platform.runLater(() -> new Alert(Alert.AlertType.ERROR, e.getMessage()).show());
+                        stopCamera();
+                        return;
                     }
-
-                    Thread.sleep(15);
                 }
+                detectMood(frame, classifier, moodLabel, songLabel);
+            }
 
-                grabber.stop();
-            } catch (Exception e) {
-                e.printStackTrace();
+            @Override
+            public void close() {
+                if (classifier != null) {
+                    FaceTracker tracker = classifier.getTracker();
+                    System.out.println("Face tracker: " + tracker.getFullScans() + " full scans, "
+                            + tracker.getRoiScans() + " ROI scans");
+                    classifier.close();
+                }
+                System.out.println(NativeMemory.report());
             }
-        }).start();
+        };
+    }
+
+    private void detectMood(PipelineFrame frame, MoodClassifier classifier, Label moodLabel, Label songLabel) {
+        Mood observed = classifier.classify(frame.mat());
+        if (smootherReset) {
+            smootherReset = false;
+            moodSmoother.reset();
+        }
+
+        // Frames without a face still count: they let the old votes fade out
+        if (!moodSmoother.update(observed, frame.timestampNanos()) || moodLocked) return;
+
+        Mood mood = moodSmoother.getStableMood();
+        moodSwitches.inc();
+        HistoryLog.shared().moodDetected(mood);
+        Platform.runLater(() -> moodLabel.setText("Detected Mood: " + mood.label()));
+
+        if (tasks.isClosed()) return; // window is going away
+        tasks.fork(() -> {
+            MusicPlayer.playMoodSongs(mood.folderName());
+            Platform.runLater(() ->
+                    songLabel.setText("Now Playing: " + MusicPlayer.getCurrentSongName()));
+        });
+
+        // Mood decided for this session: stop detecting and let the camera idle
+        if (!continuousMode) {
+            moodLocked = true;
+            governor.setIdle(true);
+        }
+    }
+
+    private static double doubleProperty(String name, double def) {
+        try {
+            return Double.parseDouble(System.getProperty(name, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring " + name + ": " + e.getMessage());
+            return def;
+        }
     }
 }
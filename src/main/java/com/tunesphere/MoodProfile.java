@@ -0,0 +1,179 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Where a mood sits in feature space, and which tracks are closest to it.
+// Features are scaled to roughly 0..1 (tempo 60..180 BPM, level -30..-5 dBFS, centroid 500 Hz..4 kHz on a
+// log scale, mode minor..major). A mood's profile is the average of the tracks in its songs/<mood> folder
+// once there are enough of them, otherwise a hand-set default.
+// The analysed tracks, the profiles and each mood's ranking are loaded once and kept until the library or
+// the features change (invalidate()), so a mood switch doesn't reload and re-rank the whole library.
+public final class MoodProfile {
+
+    private static final int MIN_LABELLED = 5;
+
+    private static final Map<Mood, double[]> DEFAULTS = new EnumMap<>(Map.of(
+            Mood.HAPPY, new double[]{0.60, 0.75, 0.70, 0.65},
+            Mood.SAD, new double[]{0.25, 0.35, 0.35, 0.35},
+            Mood.NEUTRAL, new double[]{0.45, 0.55, 0.50, 0.50}));
+
+    // One analysed track
+    static final class Candidate {
+        final File file;
+        final String folderMood;
+        final double[] vector;
+
+        Candidate(File file, String folderMood, double[] vector) {
+            this.file = file;
+            this.folderMood = folderMood;
+            this.vector = vector;
+        }
+    }
+
+    // A mood's folder tracks and the untagged tracks nearest to it, each closest first
+    private record Ranking(List<File> own, List<File> untagged) {
+    }
+
+    // Bumped by invalidate(); a load that started before the bump is not kept
+    private static final AtomicLong generation = new AtomicLong();
+    private static volatile Map<Mood, Ranking> cached;
+
+    private MoodProfile() {
+    }
+
+    static double[] vector(double tempoBpm, double rmsDb, double centroidHz, double mode) {
+        return new double[]{
+                clamp((tempoBpm - 60) / 120),
+                clamp((rmsDb + 30) / 25),
+                clamp(Math.log(Math.max(centroidHz, 1) / 500) / Math.log(8)),
+                clamp(0.5 + mode)
+        };
+    }
+
+    // The mood's folder tracks (closest first, unanalysed ones after them), then up to `extra` untagged
+    // tracks whose nearest profile is this mood. Tracks filed under another mood are left out.
+    // Null if nothing is analysed yet.
+    static List<File> playlist(Mood mood, List<File> folderTracks, int extra) throws SQLException {
+        Map<Mood, Ranking> rankings = rankings();
+        if (rankings == null) return null;
+        Ranking ranking = rankings.get(mood);
+
+        Set<File> playlist = new LinkedHashSet<>(ranking.own());
+        playlist.addAll(folderTracks);
+        playlist.addAll(ranking.untagged().subList(0, Math.min(extra, ranking.untagged().size())));
+        return new ArrayList<>(playlist);
+    }
+
+    // Tracks were added, removed, changed or (re)analysed: the next playlist() reloads
+    static synchronized void invalidate() {
+        generation.incrementAndGet();
+        cached = null;
+    }
+
+    private static Map<Mood, Ranking> rankings() throws SQLException {
+        Map<Mood, Ranking> rankings = cached;
+        if (rankings != null) return rankings;
+        long loading = generation.get();
+        List<Candidate> analysed = load();
+        if (analysed.isEmpty()) return null;
+
+        Map<Mood, double[]> profiles = new EnumMap<>(Mood.class);
+        for (Mood m : Mood.values()) profiles.put(m, profile(m, analysed));
+        Map<Mood, List<Candidate>> own = new EnumMap<>(Mood.class);
+        Map<Mood, List<Candidate>> untagged = new EnumMap<>(Mood.class);
+        for (Mood m : Mood.values()) {
+            own.put(m, new ArrayList<>());
+            untagged.put(m, new ArrayList<>());
+        }
+        for (Candidate c : analysed) {
+            if (isMoodFolder(c.folderMood)) {
+                own.get(Mood.fromName(c.folderMood)).add(c);
+            } else {
+                untagged.get(nearest(c.vector, profiles)).add(c);
+            }
+        }
+        rankings = new EnumMap<>(Mood.class);
+        for (Mood m : Mood.values()) {
+            rankings.put(m, new Ranking(closestFirst(own.get(m), profiles.get(m)),
+                    closestFirst(untagged.get(m), profiles.get(m))));
+        }
+        synchronized (MoodProfile.class) {
+            if (generation.get() == loading) cached = rankings;
+        }
+        return rankings;
+    }
+
+    private static List<File> closestFirst(List<Candidate> candidates, double[] profile) {
+        candidates.sort(Comparator.comparingDouble(c -> distance(c.vector, profile)));
+        List<File> files = new ArrayList<>(candidates.size());
+        for (Candidate c : candidates) files.add(c.file);
+        return List.copyOf(files);
+    }
+
+    static double[] profile(Mood mood, List<Candidate> analysed) {
+        double[] sum = new double[4];
+        int n = 0;
+        for (Candidate c : analysed) {
+            if (!mood.folderName().equals(c.folderMood)) continue;
+            for (int i = 0; i < 4; i++) sum[i] += c.vector[i];
+            n++;
+        }
+        if (n < MIN_LABELLED) return DEFAULTS.get(mood);
+        for (int i = 0; i < 4; i++) sum[i] /= n;
+        return sum;
+    }
+
+    private static List<Candidate> load() throws SQLException {
+        return Database.query(
+                "SELECT t.path, t.mood, f.tempo_bpm, f.rms_db, f.centroid_hz, f.mode FROM tracks t "
+                        + "JOIN track_features f ON f.path = t.path AND f.size = t.size AND f.mtime = t.mtime",
+                rs -> {
+                    List<Candidate> list = new ArrayList<>();
+                    while (rs.next()) {
+                        list.add(new Candidate(new File(rs.getString(1)), rs.getString(2),
+                                vector(rs.getDouble(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6))));
+                    }
+                    return list;
+                });
+    }
+
+    private static Mood nearest(double[] vector, Map<Mood, double[]> profiles) {
+        Mood best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (Map.Entry<Mood, double[]> e : profiles.entrySet()) {
+            double d = distance(vector, e.getValue());
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = e.getKey();
+            }
+        }
+        return best;
+    }
+
+    private static boolean isMoodFolder(String folder) {
+        if (folder == null) return false;
+        for (Mood mood : Mood.values()) {
+            if (mood.folderName().equals(folder)) return true;
+        }
+        return false;
+    }
+
+    private static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += (a[i] - b[i]) * (a[i] - b[i]);
+        return Math.sqrt(sum);
+    }
+
+    private static double clamp(double v) {
+        return Math.max(0, Math.min(1, v));
+    }
+}
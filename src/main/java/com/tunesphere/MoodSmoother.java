@@ -0,0 +1,90 @@
+package com.tunesphere;
+
+// Turns a noisy per-frame mood signal into a stable one.
+// Each mood keeps an exponentially decaying vote (time based, so it doesn't care about the frame rate).
+// The stable mood only changes when another mood leads it by at least `margin` for `dwellMillis` in a row.
+// Fixed-size state and no allocation per update, so it can run on every detected frame.
+public class MoodSmoother {
+
+    public static final long DEFAULT_HALF_LIFE_MILLIS = 1500;
+    public static final float DEFAULT_MARGIN = 0.25f;
+    public static final long DEFAULT_DWELL_MILLIS = 2000;
+
+    private static final Mood[] MOODS = Mood.values();
+
+    private final double decayPerNano;
+    private final float margin;
+    private final long dwellNanos;
+
+    private final float[] scores = new float[MOODS.length];
+    private long lastUpdateNanos = Long.MIN_VALUE;
+    private Mood stable = null;
+    private Mood pending = null;
+    private long pendingSinceNanos = 0;
+
+    public MoodSmoother() {
+        this(DEFAULT_HALF_LIFE_MILLIS, DEFAULT_MARGIN, DEFAULT_DWELL_MILLIS);
+    }
+
+    public MoodSmoother(long halfLifeMillis, float margin, long dwellMillis) {
+        if (halfLifeMillis <= 0) throw new IllegalArgumentException("halfLifeMillis must be > 0");
+        this.decayPerNano = Math.log(2) / (halfLifeMillis * 1_000_000.0);
+        this.margin = margin;
+        this.dwellNanos = dwellMillis * 1_000_000L;
+    }
+
+    // Feed one classified frame (null = no face in this frame, only lets the votes decay).
+    // Returns true when the stable mood changed with this update.
+    public boolean update(Mood observed, long nowNanos) {
+        // Votes are weighted by the time since the previous frame, so the very first frame weighs nothing
+        if (lastUpdateNanos == Long.MIN_VALUE) lastUpdateNanos = nowNanos;
+        long dt = Math.max(0, nowNanos - lastUpdateNanos);
+        float keep = (float) Math.exp(-decayPerNano * dt);
+        lastUpdateNanos = nowNanos;
+
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] *= keep;
+        }
+        if (observed != null) {
+            scores[observed.ordinal()] += 1f - keep;
+        }
+
+        Mood leader = MOODS[0];
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[leader.ordinal()]) leader = MOODS[i];
+        }
+
+        float stableScore = stable != null ? scores[stable.ordinal()] : 0f;
+        if (leader == stable || scores[leader.ordinal()] - stableScore < margin) {
+            pending = null;
+            return false;
+        }
+
+        if (leader != pending) {
+            pending = leader;
+            pendingSinceNanos = nowNanos;
+        }
+        if (nowNanos - pendingSinceNanos < dwellNanos) return false;
+
+        stable = leader;
+        pending = null;
+        return true;
+    }
+
+    // Current stable mood, null until one has held long enough
+    public Mood getStableMood() {
+        return stable;
+    }
+
+    // Decayed vote share of a mood, between 0 and 1
+    public float getConfidence(Mood mood) {
+        return scores[mood.ordinal()];
+    }
+
+    public void reset() {
+        for (int i = 0; i < scores.length; i++) scores[i] = 0f;
+        lastUpdateNanos = Long.MIN_VALUE;
+        stable = null;
+        pending = null;
+    }
+}
@@ -0,0 +1,296 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Byte offset of every MPEG audio frame in a file, found by walking the frame headers (no decoding).
+// Every frame of a file holds the same number of samples, so time -> frame is plain arithmetic and
+// frame -> offset an array lookup: seeking is O(1) once the file has been scanned once.
+// Before that, probe() gives an estimate from the Xing/Info TOC (VBR) or the bitrate (CBR).
+public class Mp3FrameIndex {
+
+    // Bitrates in kbps, [version MPEG1 ? 0 : 1][layer 1..3][index]
+    private static final int[][][] BITRATES = {
+            {
+                    {},
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+            },
+            {
+                    {},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+            }
+    };
+    private static final int[] MPEG1_RATES = {44100, 48000, 32000};
+
+    private static final int CACHE_SIZE = 32;
+    private static final Map<String, Mp3FrameIndex> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mp3FrameIndex> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static final ExecutorService scanner = Executors.newSingleThreadExecutor(TaskRuntime.factory("tunesphere-frame-index"));
+
+    // One parsed 4-byte frame header
+    static final class FrameHeader {
+        boolean mpeg1;
+        int layer;
+        int bitrateKbps;
+        int sampleRate;
+        int channels;
+        int frameLength;
+        int samplesPerFrame;
+
+        boolean parse(int h) {
+            if ((h & 0xFFE00000) != 0xFFE00000) return false;
+            int versionBits = (h >>> 19) & 3;
+            int layerBits = (h >>> 17) & 3;
+            int bitrateIndex = (h >>> 12) & 0xF;
+            int rateIndex = (h >>> 10) & 3;
+            if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+                return false; // reserved / free format
+            }
+            mpeg1 = versionBits == 3;
+            layer = 4 - layerBits;
+            bitrateKbps = BITRATES[mpeg1 ? 0 : 1][layer][bitrateIndex];
+            sampleRate = MPEG1_RATES[rateIndex] >> (versionBits == 3 ? 0 : versionBits == 2 ? 1 : 2);
+            channels = ((h >>> 6) & 3) == 3 ? 1 : 2;
+            int padding = (h >>> 9) & 1;
+
+            if (layer == 1) {
+                samplesPerFrame = 384;
+                frameLength = (12 * bitrateKbps * 1000 / sampleRate + padding) * 4;
+            } else if (layer == 2 || mpeg1) {
+                samplesPerFrame = 1152;
+                frameLength = 144 * bitrateKbps * 1000 / sampleRate + padding;
+            } else {
+                samplesPerFrame = 576; // MPEG-2/2.5 layer III
+                frameLength = 72 * bitrateKbps * 1000 / sampleRate + padding;
+            }
+            return frameLength > 4;
+        }
+
+        // Where a Xing/Info tag would sit inside this frame
+        int sideInfoEnd() {
+            if (mpeg1) return 4 + (channels == 1 ? 17 : 32);
+            return 4 + (channels == 1 ? 9 : 17);
+        }
+    }
+
+    // What can be learnt from the first frame alone: enough for duration, bitrate and rough seeks
+    public static final class Probe {
+        int sampleRate;
+        int channels;
+        int samplesPerFrame;
+        int bitrateKbps;
+        long firstFrameOffset;
+        long fileLength;
+        int xingFrames = -1;
+        long xingBytes = -1;
+        byte[] toc;
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        public double getFrameMillis() {
+            return samplesPerFrame * 1000.0 / sampleRate;
+        }
+
+        public long getDurationMillis() {
+            if (xingFrames > 0) return (long) (xingFrames * getFrameMillis());
+            return (fileLength - firstFrameOffset) * 8 / bitrateKbps;
+        }
+
+        // Average bitrate, from the Xing totals for VBR files
+        public int getBitrateKbps() {
+            if (xingFrames > 0 && xingBytes > 0) {
+                return (int) (xingBytes * 8 / Math.max(1, getDurationMillis()));
+            }
+            return bitrateKbps;
+        }
+
+        public boolean isVbr() {
+            return toc != null;
+        }
+
+        public long estimateOffset(long millis) {
+            long audioBytes = (xingBytes > 0 ? xingBytes : fileLength - firstFrameOffset);
+            if (toc != null) {
+                double percent = Math.min(99.999, 100.0 * millis / Math.max(1, getDurationMillis()));
+                int i = (int) percent;
+                double a = toc[i] & 0xFF;
+                double b = i < 99 ? toc[i + 1] & 0xFF : 256;
+                double fraction = (a + (b - a) * (percent - i)) / 256.0;
+                return firstFrameOffset + (long) (fraction * audioBytes);
+            }
+            return Math.min(fileLength, firstFrameOffset + millis * bitrateKbps / 8);
+        }
+    }
+
+    private final File file;
+    private final int sampleRate;
+    private final int samplesPerFrame;
+    private final long[] offsets;
+
+    private Mp3FrameIndex(File file, int sampleRate, int samplesPerFrame, long[] offsets) {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.samplesPerFrame = samplesPerFrame;
+        this.offsets = offsets;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getFrameCount() {
+        return offsets.length;
+    }
+
+    public double getFrameMillis() {
+        return samplesPerFrame * 1000.0 / sampleRate;
+    }
+
+    public long getDurationMillis() {
+        return (long) (offsets.length * getFrameMillis());
+    }
+
+    public int frameAt(Duration position) {
+        int frame = (int) (position.toMillis() / getFrameMillis());
+        return Math.max(0, Math.min(frame, offsets.length - 1));
+    }
+
+    public long offsetOf(int frame) {
+        return offsets[frame];
+    }
+
+    // --- CACHE ---
+    // The index for this file if it has been built already (and the file hasn't changed since)
+    public static Mp3FrameIndex cached(File file) {
+        synchronized (cache) {
+            return cache.get(cacheKey(file));
+        }
+    }
+
+    // Builds (or returns) the index on a background thread
+    public static CompletableFuture<Mp3FrameIndex> load(File file) {
+        Mp3FrameIndex index = cached(file);
+        if (index != null) return CompletableFuture.completedFuture(index);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Mp3FrameIndex built = build(file);
+                synchronized (cache) {
+                    cache.put(cacheKey(file), built);
+                }
+                return built;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, scanner);
+    }
+
+    private static String cacheKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    // --- SCANNING ---
+    public static Mp3FrameIndex build(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            FrameHeader header = new FrameHeader();
+            long[] offsets = new long[1024];
+            int count = 0;
+            int sampleRate = 0;
+            int samplesPerFrame = 0;
+
+            int pos = skipId3v2(buf);
+            int limit = buf.limit();
+            while (pos + 4 <= limit) {
+                if (!header.parse(buf.getInt(pos)) || (sampleRate != 0 && header.sampleRate != sampleRate)) {
+                    pos++; // lost sync (junk, tag, broken frame): look for the next header
+                    continue;
+                }
+                if (pos + header.frameLength > limit && count > 0) break; // truncated last frame
+                if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+                offsets[count++] = pos;
+                sampleRate = header.sampleRate;
+                samplesPerFrame = header.samplesPerFrame;
+                pos += header.frameLength;
+            }
+            if (count == 0) throw new IOException("No MPEG audio frames in " + file.getName());
+            return new Mp3FrameIndex(file, sampleRate, samplesPerFrame, Arrays.copyOf(offsets, count));
+        }
+    }
+
+    public static Probe probe(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            FrameHeader header = new FrameHeader();
+            int pos = skipId3v2(buf);
+            while (pos + 4 <= buf.limit() && !header.parse(buf.getInt(pos))) pos++;
+            if (pos + 4 > buf.limit()) throw new IOException("No MPEG audio frames in " + file.getName());
+
+            Probe probe = new Probe();
+            probe.sampleRate = header.sampleRate;
+            probe.channels = header.channels;
+            probe.samplesPerFrame = header.samplesPerFrame;
+            probe.bitrateKbps = header.bitrateKbps;
+            probe.firstFrameOffset = pos;
+            probe.fileLength = buf.limit();
+            readXing(buf, pos, header, probe);
+            return probe;
+        }
+    }
+
+    private static void readXing(MappedByteBuffer buf, int frameStart, FrameHeader header, Probe probe) {
+        int p = frameStart + header.sideInfoEnd();
+        if (p + 8 > buf.limit()) return;
+        int tag = buf.getInt(p);
+        if (tag != 0x58696E67 && tag != 0x496E666F) return; // "Xing" / "Info"
+        int flags = buf.getInt(p + 4);
+        p += 8;
+        if ((flags & 1) != 0 && p + 4 <= buf.limit()) {
+            probe.xingFrames = buf.getInt(p);
+            p += 4;
+        }
+        if ((flags & 2) != 0 && p + 4 <= buf.limit()) {
+            probe.xingBytes = buf.getInt(p) & 0xFFFFFFFFL;
+            p += 4;
+        }
+        // "Info" is written by LAME for CBR files; its TOC is linear anyway
+        if ((flags & 4) != 0 && tag == 0x58696E67 && p + 100 <= buf.limit()) {
+            probe.toc = new byte[100];
+            buf.get(p, probe.toc);
+        }
+    }
+
+    // Returns the position right after an ID3v2 tag, 0 if there is none
+    static int skipId3v2(MappedByteBuffer buf) {
+        if (buf.limit() < 10 || buf.get(0) != 'I' || buf.get(1) != 'D' || buf.get(2) != '3') return 0;
+        int size = ((buf.get(6) & 0x7F) << 21) | ((buf.get(7) & 0x7F) << 14)
+                | ((buf.get(8) & 0x7F) << 7) | (buf.get(9) & 0x7F);
+        boolean footer = (buf.get(5) & 0x10) != 0;
+        return Math.min(buf.limit(), 10 + size + (footer ? 10 : 0));
+    }
+}
@@ -1,94 +1,74 @@
 package com.tunesphere;
 
-import javazoom.jl.decoder.JavaLayerException;
-import javazoom.jl.player.Player;
-import java.io.*;
-import java.util.*;
+import javax.sound.sampled.Mixer;
+import java.time.Duration;
 
+// The desktop UI's player: a thin front for the default PlaybackSession.
+// Commands are queued and return immediately; use PlaybackService for more sessions.
 public class MusicPlayer {
-    private static Player player;
-    private static Thread playThread;
-    private static boolean stopped = false;
-    private static boolean paused = false;
-    private static File currentSong;
-    private static List<File> playlist = new ArrayList<>();
-    private static int currentIndex = 0;
 
-    // Play mood folder
-    public static synchronized void playMoodSongs(String moodFolderName) {
-        stop(); // stop anything playing
+    private static PlaybackSession session() {
+        return PlaybackService.shared().defaultSession();
+    }
 
-        File folder = new File("songs/" + moodFolderName);
-        if (!folder.exists()) {
-            System.out.println("Folder not found: " + folder.getAbsolutePath());
-            return;
-        }
+    // Null until something was played; stopping or asking about nothing shouldn't start the audio threads
+    private static PlaybackSession existing() {
+        return PlaybackService.shared().get(PlaybackService.DEFAULT_SESSION);
+    }
 
-        File[] files = folder.listFiles((d, n) -> n.toLowerCase().endsWith(".mp3"));
-        if (files == null || files.length == 0) {
-            System.out.println("No MP3s in " + folder.getAbsolutePath());
-            return;
-        }
+    // Play mood folder. Waits until the playlist is started, callers show the song name right after.
+    public static void playMoodSongs(String moodFolderName) {
+        session().playMood(moodFolderName).join();
+    }
 
-        playlist = Arrays.asList(files);
-        Collections.sort(playlist);
-        currentIndex = 0;
-        playSong(playlist.get(currentIndex));
+    public static void nextSong() {
+        session().next();
     }
 
-    private static synchronized void playSong(File song) {
-        stop();
-        stopped = false;
-        paused = false;
-        currentSong = song;
+    public static void stop() {
+        PlaybackSession session = existing();
+        if (session != null) session.stop();
+    }
 
-        playThread = new Thread(() -> {
-            try (FileInputStream fis = new FileInputStream(song)) {
-                player = new Player(fis);
-                System.out.println("Playing: " + song.getName());
-                player.play();
-            } catch (Exception e) {
-                if (!stopped) e.printStackTrace();
-            }
-        });
-        playThread.start();
+    // Keeps the exact position, resume() continues from the same frame
+    public static void pause() {
+        PlaybackSession session = existing();
+        if (session != null) session.pause();
     }
 
-    public static synchronized void nextSong() {
-        if (playlist.isEmpty()) return;
-        stop();
-        currentIndex = (currentIndex + 1) % playlist.size();
-        playSong(playlist.get(currentIndex));
+    public static void resume() {
+        PlaybackSession session = existing();
+        if (session != null) session.resume();
+    }
+
+    public static void seek(Duration position) {
+        PlaybackSession session = existing();
+        if (session != null) session.seek(position);
+    }
+
+    // null switches back to the system default device
+    public static void setOutputDevice(Mixer.Info device) {
+        session().setOutputDevice(device).exceptionally(e -> {
+            System.out.println(e.getMessage());
+            return null;
+        });
     }
 
-    public static synchronized void stop() {
-        stopped = true;
-        try {
-            if (player != null) {
-                player.close();
-                player = null;
-            }
-            if (playThread != null && playThread.isAlive()) {
-                playThread.interrupt();
-            }
-        } catch (Exception ignored) {}
+    public static Duration getPosition() {
+        PlaybackSession session = existing();
+        return session != null ? session.getPosition() : Duration.ZERO;
     }
 
-    public static synchronized void pause() {
-        if (player != null) {
-            paused = true;
-            stop();
-        }
+    public static String getCurrentSongName() {
+        PlaybackSession session = existing();
+        return session != null ? session.getCurrentSongName() : "None";
     }
 
-    public static synchronized void resume() {
-        if (paused && currentSong != null) {
-            paused = false;
-            playSong(currentSong);
-        }
+    public static void addListener(PlaybackListener listener) {
+        session().addListener(listener);
     }
 
-    public static synchronized String getCurrentSongName() {
-        return currentSong != null ? currentSong.getName() : "None";
+    public static void removeListener(PlaybackListener listener) {
+        session().removeListener(listener);
     }
 }
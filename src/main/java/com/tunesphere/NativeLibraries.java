@@ -0,0 +1,64 @@
+package com.tunesphere;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avformat;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_objdetect;
+import org.bytedeco.opencv.global.opencv_videoio;
+
+import java.util.concurrent.CompletableFuture;
+
+// OpenCV, FFmpeg and JLayer are only needed once the mood screen opens, and loading them costs seconds
+// (JavaCPP unpacks and links ~100 MB of native libraries on first use). Nothing on the login path may
+// touch them; instead Login calls preloadAsync() once its first frame is on screen, and the mood screen
+// waits for the same future the first time it opens.
+public final class NativeLibraries {
+
+    private static final Histogram loadTime = Metrics.histogram("startup.nativeLoad");
+    private static volatile CompletableFuture<Void> preload;
+
+    private NativeLibraries() {
+    }
+
+    // Loads everything on a background thread. Safe to call more than once.
+    public static synchronized CompletableFuture<Void> preloadAsync() {
+        if (preload == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            TaskRuntime.nativeWork().execute(() -> {
+                int priority = Thread.currentThread().getPriority();
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                long start = System.nanoTime();
+                try {
+                    // Decoder tables first: pure Java, and playback needs them whether or not the camera works
+                    Class.forName("javazoom.jl.decoder.Decoder");
+                    Class.forName("javazoom.jl.decoder.huffcodetab");
+                    Loader.load(opencv_core.class);
+                    Loader.load(opencv_imgproc.class);
+                    Loader.load(opencv_videoio.class);
+                    Loader.load(opencv_objdetect.class);
+                    Loader.load(avcodec.class);
+                    Loader.load(avformat.class);
+                    loadTime.recordSince(start);
+                    System.out.printf("Native libraries loaded in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+                    future.complete(null);
+                } catch (Throwable t) {
+                    System.out.println("Native library preload failed: " + t.getMessage());
+                    future.completeExceptionally(t);
+                } finally {
+                    Thread.currentThread().setPriority(priority);
+                }
+                // Cascades need OpenCV, so they come after it
+                CascadeRegistry.warmUpAsync();
+            });
+            preload = future;
+        }
+        return preload;
+    }
+
+    public static boolean isLoaded() {
+        CompletableFuture<Void> future = preload;
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+}
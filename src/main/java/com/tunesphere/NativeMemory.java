@@ -0,0 +1,46 @@
+package com.tunesphere;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bookkeeping for the long-lived native buffers the app allocates, so leaks show up in numbers
+public final class NativeMemory {
+
+    private static final AtomicInteger liveMats = new AtomicInteger();
+
+    private NativeMemory() {
+    }
+
+    public static Mat newMat() {
+        liveMats.incrementAndGet();
+        return new Mat();
+    }
+
+    // Safe to call twice or on null
+    public static void release(Mat mat) {
+        if (mat == null || mat.isNull()) return;
+        mat.close();
+        liveMats.decrementAndGet();
+    }
+
+    public static int getLiveMats() {
+        return liveMats.get();
+    }
+
+    // Resident memory of the whole process, as seen by JavaCPP
+    public static long getPhysicalBytes() {
+        return Pointer.physicalBytes();
+    }
+
+    // Native memory currently owned by JavaCPP pointers with deallocators
+    public static long getTrackedBytes() {
+        return Pointer.totalBytes();
+    }
+
+    public static String report() {
+        return String.format("Native memory: %s physical, %s tracked, %d live Mats",
+                Pointer.formatBytes(getPhysicalBytes()), Pointer.formatBytes(getTrackedBytes()), getLiveMats());
+    }
+}
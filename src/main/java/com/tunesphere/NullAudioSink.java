@@ -0,0 +1,66 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Swallows PCM instead of playing it. Used for tests, benchmarks and machines without a sound device.
+// With realTime on, write() sleeps for the duration of the audio so playlists progress at normal speed.
+public class NullAudioSink implements AudioSink {
+
+    private final boolean realTime;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile AudioFormat format;
+
+    public NullAudioSink(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    @Override
+    public void open(AudioFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        bytesWritten.addAndGet(length);
+        AudioFormat current = format;
+        if (realTime && current != null) {
+            long micros = (long) (length * 1_000_000L / (current.getFrameRate() * current.getFrameSize()));
+            try {
+                Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void drain() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void pause() {
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public void close() {
+        format = null;
+    }
+}
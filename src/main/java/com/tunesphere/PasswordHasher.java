@@ -0,0 +1,103 @@
+package com.tunesphere;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Salted PBKDF2-HMAC-SHA256 password hashes, stored as "pbkdf2-sha256$<iterations>$<salt>$<hash>".
+// The iteration count is stored with each hash, so calibrate() can raise the cost for new hashes
+// without breaking old ones.
+public class PasswordHasher {
+
+    public static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    // The app's own lower bound, not a standard (OWASP currently asks for 600,000 with PBKDF2-HMAC-SHA256):
+    // calibrate() aims at a time budget and never goes below this on slow machines
+    public static final int MIN_ITERATIONS = 100_000;
+    public static final int MAX_ITERATIONS = 5_000_000;
+
+    private final SecureRandom random = new SecureRandom();
+    private volatile int iterations;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Picks the iteration count that takes about `targetMillis` per hash on this machine
+    public int calibrate(long targetMillis) {
+        int probe = 20_000;
+        hash("warm-up", new byte[SALT_BYTES], probe); // let the JIT compile the hot loop first
+        long start = System.nanoTime();
+        hash("calibration", new byte[SALT_BYTES], probe);
+        double millis = Math.max(0.01, (System.nanoTime() - start) / 1e6);
+        long wanted = (long) (probe * targetMillis / millis);
+        iterations = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, wanted));
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int n = iterations;
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + n + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash(password, salt, n));
+    }
+
+    public boolean verify(String password, String stored) {
+        if (!isHashed(stored)) {
+            // Legacy plaintext row, still compared in constant time
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) return false;
+        try {
+            int n = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(expected, hash(password, salt, n));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Spends the same time as a real verify, so unknown usernames can't be told apart by timing
+    public void burn(String password) {
+        hash(password, new byte[SALT_BYTES], iterations);
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) return true;
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        try {
+            return Integer.parseInt(parts[0]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] hash(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
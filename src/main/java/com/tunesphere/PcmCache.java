@@ -0,0 +1,213 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Decoded PCM of the most played tracks, bounded by total bytes and evicted least-recently-used first.
+// A track is only recorded the second time it is played from the start, so one-off plays don't push out
+// the mood playlist's regulars. Replays (and seeks within a cached track) then decode nothing at all.
+//   -Dtunesphere.pcmCache.mb=N       size limit, 0 turns the cache off (default 128)
+//   -Dtunesphere.pcmCache.offHeap=B  keep PCM in direct buffers outside the Java heap (default true)
+public class PcmCache {
+
+    private static final int SEEN_TRACKS = 1024;
+    private static final int CHUNK_BYTES = 1024 * 1024;
+
+    private static PcmCache shared;
+
+    // One decoded track: the PCM of every frame back to back, plus where each frame starts
+    public static final class Entry {
+        final AudioFormat format;
+        final float frameMillis;
+        final ByteBuffer pcm;
+        final int[] offsets; // frameCount + 1 entries
+
+        Entry(AudioFormat format, float frameMillis, ByteBuffer pcm, int[] offsets) {
+            this.format = format;
+            this.frameMillis = frameMillis;
+            this.pcm = pcm;
+            this.offsets = offsets;
+        }
+
+        public int getFrameCount() {
+            return offsets.length - 1;
+        }
+
+        public int getBytes() {
+            return pcm.capacity();
+        }
+
+        // Copies frame i into out, returns its length
+        int copyFrame(int i, byte[] out) {
+            int start = offsets[i];
+            int length = offsets[i + 1] - start;
+            pcm.get(start, out, 0, length);
+            return length;
+        }
+    }
+
+    // Collects a track's PCM while it is decoded for playback
+    public final class Recorder {
+        private final String key;
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int[] offsets = new int[1024];
+        private int frames = 0;
+        private int total = 0;
+        private boolean abandoned = false;
+
+        private Recorder(String key) {
+            this.key = key;
+        }
+
+        void append(byte[] data, int length) {
+            if (abandoned) return;
+            if (total + (long) length > maxBytes / 2) {
+                // Would take over the cache on its own
+                abandoned = true;
+                chunks.clear();
+                return;
+            }
+            if (frames + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[frames++] = total;
+            int written = 0;
+            while (written < length) {
+                int inChunk = total % CHUNK_BYTES;
+                if (inChunk == 0) chunks.add(new byte[CHUNK_BYTES]);
+                int n = Math.min(length - written, CHUNK_BYTES - inChunk);
+                System.arraycopy(data, written, chunks.get(chunks.size() - 1), inChunk, n);
+                written += n;
+                total += n;
+            }
+        }
+
+        // The whole file was decoded: store it
+        void finish(AudioFormat format, float frameMillis) {
+            if (abandoned || format == null || frames == 0) return;
+            ByteBuffer pcm = offHeap ? ByteBuffer.allocateDirect(total) : ByteBuffer.allocate(total);
+            int remaining = total;
+            for (byte[] chunk : chunks) {
+                int n = Math.min(remaining, CHUNK_BYTES);
+                pcm.put(chunk, 0, n);
+                remaining -= n;
+            }
+            chunks.clear();
+            offsets[frames] = total;
+            put(key, new Entry(format, frameMillis, pcm.asReadOnlyBuffer(), Arrays.copyOf(offsets, frames + 1)));
+        }
+    }
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> seen = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_TRACKS;
+        }
+    };
+    private long bytes = 0; // guarded by this
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PcmCache(long maxBytes, boolean offHeap) {
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    public static synchronized PcmCache shared() {
+        if (shared == null) {
+            long mb = Long.getLong("tunesphere.pcmCache.mb", 128);
+            boolean offHeap = Boolean.parseBoolean(System.getProperty("tunesphere.pcmCache.offHeap", "true"));
+            shared = new PcmCache(mb * 1024 * 1024, offHeap);
+            Metrics.gauge("pcmCache.bytes", shared::getBytes);
+            Metrics.gauge("pcmCache.entries", shared::getEntryCount);
+            Metrics.gauge("pcmCache.hitRate", shared::getHitRate);
+        }
+        return shared;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public synchronized Entry get(File file) {
+        if (!isEnabled()) return null;
+        Entry entry = entries.get(key(file));
+        (entry != null ? hits : misses).incrementAndGet();
+        return entry;
+    }
+
+    // Called when a track is opened from its first frame; returns a recorder the second time around
+    public synchronized Recorder recorder(File file) {
+        if (!isEnabled()) return null;
+        String key = key(file);
+        if (entries.containsKey(key)) return null;
+        if (seen.put(key, Boolean.TRUE) == null) return null;
+        return new Recorder(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null) bytes -= old.getBytes();
+        bytes += entry.getBytes();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == entry) continue;
+            bytes -= eldest.getValue().getBytes();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0;
+    }
+
+    public String report() {
+        return String.format("PCM cache: %d tracks, %.1f of %d MB (%s), %.0f%% hits (%d/%d), %d evicted",
+                getEntryCount(), getBytes() / 1048576.0, maxBytes / 1048576, offHeap ? "off-heap" : "heap",
+                getHitRate() * 100, getHits(), getHits() + getMisses(), getEvictions());
+    }
+
+    // A changed file gets a new key, so stale PCM is never played
+    private static String key(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+}
@@ -0,0 +1,79 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Fixed set of PCM blocks cycling between the decode thread and the output thread.
+// Blocks are allocated once, so steady-state playback creates no garbage.
+public class PcmRing {
+
+    public static final class Block {
+        final byte[] data;
+        int length;
+        AudioFormat format;
+
+        // Which command / playlist entry this audio belongs to
+        long generation;
+        int trackIndex;
+        File track;
+        int frameIndex;   // MP3 frame this audio was decoded from
+        float frameMillis;
+        boolean trackStart;
+        boolean trackEnd;
+        boolean fadesIn;  // first block of a crossfade: the previous track was cut short
+
+        Block(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void reset() {
+            length = 0;
+            format = null;
+            track = null;
+            trackStart = false;
+            trackEnd = false;
+            fadesIn = false;
+        }
+    }
+
+    private final ArrayBlockingQueue<Block> free;
+    private final ArrayBlockingQueue<Block> filled;
+
+    public PcmRing(int blocks, int blockBytes) {
+        free = new ArrayBlockingQueue<>(blocks);
+        filled = new ArrayBlockingQueue<>(blocks);
+        for (int i = 0; i < blocks; i++) free.add(new Block(blockBytes));
+    }
+
+    // Decode side: an empty block to fill, or null if the output side is this far behind
+    public Block acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        Block block = free.poll(timeout, unit);
+        if (block != null) block.reset();
+        return block;
+    }
+
+    public void publish(Block block) {
+        filled.add(block); // can't overflow, there are only as many blocks as slots
+    }
+
+    // Output side
+    public Block take(long timeout, TimeUnit unit) throws InterruptedException {
+        return filled.poll(timeout, unit);
+    }
+
+    public void recycle(Block block) {
+        free.add(block);
+    }
+
+    // Throws away queued audio (skip / stop)
+    public void discard() {
+        Block block;
+        while ((block = filled.poll()) != null) free.add(block);
+    }
+
+    public int queued() {
+        return filled.size();
+    }
+}
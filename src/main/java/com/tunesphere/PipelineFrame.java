@@ -0,0 +1,48 @@
+package com.tunesphere;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A pooled frame buffer shared by the pipeline stages. Every stage that receives it must call release().
+public class PipelineFrame {
+
+    private final FramePipeline owner;
+    private final Mat mat = NativeMemory.newMat();
+    private final AtomicInteger refs = new AtomicInteger();
+    private long sequence;
+    private long timestampNanos;
+
+    PipelineFrame(FramePipeline owner) {
+        this.owner = owner;
+    }
+
+    // Pixels in BGR order, same layout the grabber produced. Treat as read-only, other stages share it.
+    public Mat mat() {
+        return mat;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    void reset(long sequence, long timestampNanos, int consumers) {
+        this.sequence = sequence;
+        this.timestampNanos = timestampNanos;
+        refs.set(consumers);
+    }
+
+    public void release() {
+        if (refs.decrementAndGet() == 0) {
+            owner.recycle(this);
+        }
+    }
+
+    void deallocate() {
+        NativeMemory.release(mat);
+    }
+}
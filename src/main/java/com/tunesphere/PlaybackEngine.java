@@ -0,0 +1,533 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+// Playlist playback on two threads: the decode thread turns MP3 frames into PCM blocks in a PcmRing,
+// the output thread feeds them to the AudioSink. While a track plays, the next playlist entry is opened
+// and its first frames decoded in the background, so tracks follow each other without a gap.
+// Pause holds the output where it is (nothing is re-decoded) and seek() jumps to a frame via Mp3FrameIndex.
+// crossfade() switches playlists through a CrossfadeMixer instead of cutting: audio already queued keeps
+// playing and the decoder blends the old track into the new one.
+public class PlaybackEngine implements AutoCloseable {
+
+    public enum EndReason { FINISHED, SKIPPED, STOPPED }
+
+    private static final int RING_BLOCKS = 64;  // ~1.7 s of audio at 44.1 kHz
+    private static final int PREFETCH_FRAMES = 8;
+
+    private static final Histogram decodeLatency = Metrics.histogram("audio.decode");
+    private static final Histogram switchLatency = Metrics.histogram("audio.switch");
+    private static final Metrics.Counter underruns = Metrics.counter("audio.underruns");
+
+    private final AudioSink sink;
+    private final String bufferedGauge;
+    private final PcmRing ring = new PcmRing(RING_BLOCKS, TrackDecoder.MAX_FRAME_BYTES);
+    private final DoubleSupplier buffered = ring::queued;
+    private final List<PlaybackListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService prefetcher;
+    private final Thread decodeThread;
+    private final Thread outputThread;
+
+    // Guarded by this
+    private List<File> playlist = List.of();
+    private int requestedIndex = -1;   // a command asked the decoder to (re)start here
+    private Duration requestedPosition = Duration.ZERO;
+    private boolean requestedSeek = false;
+    private Duration requestedFade = null;
+    private volatile boolean paused = false;
+    private boolean autoAdvance = true;
+
+    // Bumped by every command; audio tagged with an older generation is dropped
+    private volatile long generation = 0;
+    private volatile boolean closed = false;
+
+    // Decode thread only
+    private TrackDecoder decoding;
+    private final CrossfadeMixer mixer = new CrossfadeMixer();
+    private volatile int decodingIndex = -1; // also read by next()
+    private long decodingGeneration = -1;
+    private boolean decodingStarted = false;
+    private Future<TrackDecoder> prefetch;
+    private int prefetchIndex = -1;
+
+    // Written by the output thread
+    private volatile int playingIndex = -1;
+    private volatile File playingTrack;
+    private volatile int playingFrame = 0;
+    private volatile float playingFrameMillis = 0;
+
+    // When the last play/next/seek was issued, until its first audio reaches the sink
+    private volatile long switchStartNanos = 0;
+    private volatile long switchGeneration = -1;
+    private long lastWrittenGeneration = -1; // output thread only
+    private boolean starved = false;        // output thread only
+
+    public PlaybackEngine(AudioSink sink) {
+        this(sink, null);
+    }
+
+    // name tells apart the threads and buffer gauge of several engines in one process
+    public PlaybackEngine(AudioSink sink, String name) {
+        String suffix = name == null ? "" : "-" + name;
+        this.sink = sink;
+        this.prefetcher = Executors.newSingleThreadExecutor(TaskRuntime.factory("tunesphere-prefetch" + suffix));
+        this.decodeThread = TaskRuntime.newThread("tunesphere-decode" + suffix, this::decodeLoop);
+        this.outputThread = TaskRuntime.newThread("tunesphere-output" + suffix, this::outputLoop);
+        this.bufferedGauge = name == null ? "audio.buffered" : "audio." + name + ".buffered";
+        Metrics.gauge(bufferedGauge, buffered);
+        decodeThread.start();
+        outputThread.start();
+    }
+
+    public void addListener(PlaybackListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PlaybackListener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- COMMANDS ---
+    public synchronized void play(List<File> tracks, int startIndex) {
+        if (tracks.isEmpty()) {
+            stop();
+            return;
+        }
+        endPlaying(EndReason.SKIPPED);
+        playlist = PlaylistScheduler.freeze(tracks);
+        cancelPrefetch();
+        restartAt(Math.floorMod(startIndex, playlist.size()));
+    }
+
+    // Like play(), but blends out of whatever is audible over `fade` instead of stopping it
+    public synchronized void crossfade(List<File> tracks, int startIndex, Duration fade) {
+        if (tracks.isEmpty() || playingTrack == null || fade.isZero() || fade.isNegative()) {
+            play(tracks, startIndex);
+            return;
+        }
+        // The old track's end is reported by the output thread once the fade is heard
+        playlist = PlaylistScheduler.freeze(tracks);
+        cancelPrefetch();
+        unpause();
+        requestedIndex = Math.floorMod(startIndex, playlist.size());
+        requestedPosition = Duration.ZERO;
+        requestedSeek = false;
+        requestedFade = fade;
+        notifyAll();
+    }
+
+    public synchronized void next() {
+        if (playlist.isEmpty()) return;
+        // Nothing playing: the track a command just asked for, else the one the decoder got to last
+        int current = playingIndex >= 0 ? playingIndex : requestedIndex >= 0 ? requestedIndex : Math.max(decodingIndex, 0);
+        endPlaying(EndReason.SKIPPED);
+        restartAt((current + 1) % playlist.size());
+    }
+
+    public synchronized void stop() {
+        endPlaying(EndReason.STOPPED);
+        unpause();
+        generation++;
+        requestedIndex = -1;
+        ring.discard();
+        sink.flush();
+        playingIndex = -1;
+        playingTrack = null;
+        notifyAll();
+    }
+
+    // Freezes output at the current frame; the decoder just stops once the ring is full
+    public synchronized void pause() {
+        if (playingTrack == null || paused) return;
+        paused = true;
+        sink.pause();
+    }
+
+    public synchronized void resume() {
+        unpause();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    // Jumps within the current track, keeping the paused/playing state
+    public synchronized void seek(Duration position) {
+        if (playingTrack == null) return;
+        generation++;
+        markSwitch();
+        requestedIndex = playingIndex;
+        requestedPosition = position.isNegative() ? Duration.ZERO : position;
+        requestedSeek = true;
+        requestedFade = null;
+        ring.discard();
+        sink.flush();
+        notifyAll();
+    }
+
+    // Position in the current track, by the last frame handed to the sink
+    public Duration getPosition() {
+        return Duration.ofMillis((long) (playingFrame * playingFrameMillis));
+    }
+
+    public synchronized void setAutoAdvance(boolean autoAdvance) {
+        this.autoAdvance = autoAdvance;
+    }
+
+    public synchronized List<File> getPlaylist() {
+        return playlist;
+    }
+
+    public int getCurrentIndex() {
+        return playingIndex;
+    }
+
+    public File getCurrentTrack() {
+        return playingTrack;
+    }
+
+    private void unpause() {
+        if (paused) {
+            paused = false;
+            sink.resume();
+            notifyAll();
+        }
+    }
+
+    private void restartAt(int index) {
+        unpause();
+        generation++;
+        markSwitch();
+        requestedIndex = index;
+        requestedPosition = Duration.ZERO;
+        requestedSeek = false;
+        requestedFade = null;
+        playingFrame = 0;
+        // Report the requested track right away, the output thread confirms it once audio flows
+        playingIndex = index;
+        playingTrack = playlist.get(index);
+        ring.discard();
+        sink.flush(); // unblocks the output thread if it is stuck writing old audio
+        notifyAll();
+    }
+
+    private void markSwitch() {
+        switchStartNanos = System.nanoTime();
+        switchGeneration = generation;
+    }
+
+    private void endPlaying(EndReason reason) {
+        File track = playingTrack;
+        if (track != null) fireEnded(track, playingIndex, reason);
+        playingTrack = null;
+    }
+
+    // --- DECODE THREAD ---
+    private void decodeLoop() {
+        while (!closed) {
+            try {
+                if (!awaitWork()) continue;
+
+                PcmRing.Block block = ring.acquire(50, TimeUnit.MILLISECONDS);
+                if (block == null) continue; // output is far enough ahead, go look for commands
+
+                boolean more;
+                long start = System.nanoTime();
+                try {
+                    more = mixer.isActive() ? mixer.mixInto(block) : decoding.decodeInto(block);
+                    decodeLatency.recordSince(start);
+                } catch (Exception e) {
+                    System.out.println("Decode error in " + decoding.getFile().getName() + ": " + e.getMessage());
+                    more = false;
+                }
+
+                block.generation = decodingGeneration;
+                block.trackIndex = decodingIndex;
+                block.track = decoding.getFile();
+                block.trackStart = !decodingStarted;
+                block.fadesIn = block.trackStart && mixer.isActive();
+                block.trackEnd = !more;
+                decodingStarted = true;
+                ring.publish(block);
+
+                if (!more) advance();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        closeDecoding();
+        cancelPrefetch();
+    }
+
+    // Picks up new commands; returns false if there is nothing to decode
+    private boolean awaitWork() throws InterruptedException {
+        int start;
+        Duration position;
+        boolean seek;
+        Duration fade;
+        synchronized (this) {
+            while (!closed && requestedIndex < 0 && (decoding == null || decodingGeneration != generation)) {
+                if (decoding != null) closeDecoding(); // stopped
+                wait();
+            }
+            if (closed) return false;
+            if (requestedIndex < 0) return true;
+
+            start = requestedIndex;
+            position = requestedPosition;
+            seek = requestedSeek;
+            fade = requestedFade;
+            requestedIndex = -1;
+            requestedFade = null;
+            decodingGeneration = generation;
+        }
+        if (fade != null && decoding != null) {
+            crossfadeTo(start, fade);
+            return decoding != null;
+        }
+        closeDecoding();
+        if (seek) {
+            openTrackAt(start, position);
+        } else {
+            openTrack(start);
+        }
+        return decoding != null;
+    }
+
+    // The current decoder becomes the mixer's outgoing deck, the new track its incoming one
+    private void crossfadeTo(int start, Duration fade) {
+        AudioFormat format = mixer.isActive() ? mixer.getFormat() : decoding.getFormat();
+        TrackDecoder outgoing = decoding;
+        decoding = null;
+        openTrack(start);
+        if (decoding == null || format == null) {
+            mixer.close();
+            outgoing.close();
+            return;
+        }
+        mixer.start(outgoing, decoding, format, fade.toMillis());
+    }
+
+    // Moves on to the next playlist entry once a track is fully decoded
+    private void advance() {
+        int next;
+        synchronized (this) {
+            if (!autoAdvance || decodingGeneration != generation || playlist.isEmpty()) {
+                closeDecoding();
+                return;
+            }
+            next = (decodingIndex + 1) % playlist.size();
+        }
+        closeDecoding();
+        openTrack(next);
+    }
+
+    private void openTrack(int index) {
+        List<File> tracks;
+        synchronized (this) {
+            tracks = playlist;
+        }
+        // Skip unreadable files, but give up after one full round of the playlist
+        int round = PlaylistScheduler.roundLength(tracks);
+        for (int attempt = 0; attempt < round; attempt++) {
+            int i = (index + attempt) % tracks.size();
+            TrackDecoder decoder = takePrefetched(i, tracks.get(i));
+            if (decoder == null) {
+                try {
+                    decoder = new TrackDecoder(tracks.get(i));
+                } catch (Exception e) {
+                    System.out.println("Cannot open " + tracks.get(i).getName() + ": " + e.getMessage());
+                    continue;
+                }
+            }
+            decoding = decoder;
+            decodingIndex = i;
+            decodingStarted = false;
+            startPrefetch((i + 1) % tracks.size(), tracks.get((i + 1) % tracks.size()));
+            return;
+        }
+        decoding = null;
+    }
+
+    // Same track, new position: no trackStarted event, and the prefetched next track stays valid
+    private void openTrackAt(int index, Duration position) {
+        File file;
+        synchronized (this) {
+            file = playlist.get(index);
+        }
+        try {
+            decoding = TrackDecoder.openAt(file, position);
+            decodingIndex = index;
+            decodingStarted = true;
+        } catch (Exception e) {
+            System.out.println("Cannot seek in " + file.getName() + ": " + e.getMessage());
+            decoding = null;
+        }
+    }
+
+    private void closeDecoding() {
+        mixer.close();
+        if (decoding != null) {
+            decoding.close();
+            decoding = null;
+        }
+    }
+
+    private void startPrefetch(int index, File file) {
+        cancelPrefetch();
+        prefetchIndex = index;
+        prefetch = prefetcher.submit(() -> {
+            TrackDecoder decoder = new TrackDecoder(file);
+            try {
+                decoder.prefetch(PREFETCH_FRAMES);
+            } catch (Exception e) {
+                decoder.close();
+                throw e;
+            }
+            return decoder;
+        });
+    }
+
+    private TrackDecoder takePrefetched(int index, File file) {
+        if (prefetch == null || prefetchIndex != index) return null;
+        Future<TrackDecoder> pending = prefetch;
+        prefetch = null;
+        try {
+            TrackDecoder decoder = pending.get();
+            if (decoder.getFile().equals(file)) return decoder;
+            decoder.close();
+        } catch (Exception e) {
+            // fall back to opening it cold
+        }
+        return null;
+    }
+
+    private void cancelPrefetch() {
+        Future<TrackDecoder> pending = prefetch;
+        prefetch = null;
+        prefetchIndex = -1;
+        if (pending == null) return;
+        // Let it finish in the background, then just close it
+        prefetcher.execute(() -> {
+            try {
+                pending.get().close();
+            } catch (Exception ignored) {}
+        });
+    }
+
+    // --- OUTPUT THREAD ---
+    private void outputLoop() {
+        while (!closed) {
+            // Ran dry in the middle of a track (not after a stop / skip / the last track)
+            if (ring.queued() == 0 && !starved && lastWrittenGeneration == generation
+                    && playingTrack != null && !paused) {
+                starved = true;
+                underruns.inc();
+            }
+
+            PcmRing.Block block;
+            try {
+                block = ring.take(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (block == null) continue;
+            starved = false;
+
+            try {
+                if (block.generation != generation) continue; // skipped or stopped meanwhile
+
+                if (block.trackStart) {
+                    // Under the lock, or a command's endPlaying() could report the faded-out track too
+                    File faded = null;
+                    int fadedIndex = -1;
+                    synchronized (this) {
+                        if (block.generation != generation) continue;
+                        if (block.fadesIn && playingTrack != null) {
+                            faded = playingTrack;
+                            fadedIndex = playingIndex;
+                        }
+                        playingIndex = block.trackIndex;
+                        playingTrack = block.track;
+                    }
+                    if (faded != null) fireEnded(faded, fadedIndex, EndReason.SKIPPED);
+                    System.out.println("Playing: " + block.track.getName());
+                    for (PlaybackListener l : listeners) l.trackStarted(block.track, block.trackIndex);
+                }
+                if (block.length > 0) {
+                    if (!awaitUnpaused(block)) continue;
+                    ensureFormat(block.format);
+                    sink.write(block.data, 0, block.length);
+                    lastWrittenGeneration = block.generation;
+                    if (block.generation == switchGeneration) {
+                        switchGeneration = -1;
+                        switchLatency.recordSince(switchStartNanos);
+                    }
+                    playingFrame = block.frameIndex;
+                    playingFrameMillis = block.frameMillis;
+                }
+                if (block.trackEnd && finished(block)) fireEnded(block.track, block.trackIndex, EndReason.FINISHED);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                ring.recycle(block);
+            }
+        }
+    }
+
+    // Claims the end of the block's track, unless a command has already ended it (and reported that)
+    private synchronized boolean finished(PcmRing.Block block) {
+        if (block.generation != generation || playingTrack != block.track) return false;
+        playingTrack = null;
+        return true;
+    }
+
+    // Returns false if the block went stale while we were paused
+    private boolean awaitUnpaused(PcmRing.Block block) throws InterruptedException {
+        synchronized (this) {
+            while (paused && !closed && block.generation == generation) wait();
+            return block.generation == generation;
+        }
+    }
+
+    private void ensureFormat(AudioFormat format) throws Exception {
+        AudioFormat current = sink.getFormat();
+        if (current != null && current.matches(format)) return;
+        if (current != null) sink.drain();
+        sink.open(format);
+    }
+
+    private void fireEnded(File track, int index, EndReason reason) {
+        for (PlaybackListener l : listeners) l.trackEnded(track, index, reason);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            generation++;
+            notifyAll();
+        }
+        sink.flush();
+        try {
+            decodeThread.join(1000);
+            outputThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        prefetcher.shutdown();
+        sink.close();
+        Metrics.removeGauge(bufferedGauge, buffered);
+    }
+}
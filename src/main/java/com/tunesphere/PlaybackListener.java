@@ -0,0 +1,13 @@
+package com.tunesphere;
+
+import java.io.File;
+
+// Playback events, delivered on the engine's threads: hop to the FX thread before touching the UI
+public interface PlaybackListener {
+
+    default void trackStarted(File track, int index) {
+    }
+
+    default void trackEnded(File track, int index, PlaybackEngine.EndReason reason) {
+    }
+}
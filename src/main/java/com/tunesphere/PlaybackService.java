@@ -0,0 +1,63 @@
+package com.tunesphere;
+
+import javax.sound.sampled.Mixer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// All playback sessions of this process, by name. The desktop UI uses the "default" session
+// (through MusicPlayer); shared machines can open more, each on its own sound device.
+public class PlaybackService {
+
+    public static final String DEFAULT_SESSION = "default";
+
+    private static PlaybackService shared;
+
+    private final ConcurrentHashMap<String, PlaybackSession> sessions = new ConcurrentHashMap<>();
+
+    public static synchronized PlaybackService shared() {
+        if (shared == null) {
+            shared = new PlaybackService();
+            Metrics.gauge("playback.sessions", shared.sessions::size);
+        }
+        return shared;
+    }
+
+    // Started on first use so the login screen doesn't pay for the audio threads.
+    // -Dtunesphere.audio.device=<part of the device name> picks its output.
+    public PlaybackSession defaultSession() {
+        return sessions.computeIfAbsent(DEFAULT_SESSION, name -> new PlaybackSession(name,
+                new LineAudioSink(LineAudioSink.findDevice(System.getProperty("tunesphere.audio.device"))), null));
+    }
+
+    // A session on a sound device, null for the system default
+    public PlaybackSession open(String name, Mixer.Info device) {
+        return open(name, new LineAudioSink(device));
+    }
+
+    public PlaybackSession open(String name, AudioSink sink) {
+        PlaybackSession session = new PlaybackSession(name, sink, name);
+        if (sessions.putIfAbsent(name, session) != null) {
+            session.close();
+            throw new IllegalArgumentException("Session " + name + " is already open");
+        }
+        return session;
+    }
+
+    public PlaybackSession get(String name) {
+        return sessions.get(name);
+    }
+
+    public List<PlaybackSession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    public void close(String name) {
+        PlaybackSession session = sessions.remove(name);
+        if (session != null) session.close();
+    }
+
+    public void closeAll() {
+        for (String name : new ArrayList<>(sessions.keySet())) close(name);
+    }
+}
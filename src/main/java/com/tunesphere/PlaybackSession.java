@@ -0,0 +1,273 @@
+package com.tunesphere;
+
+import javax.sound.sampled.Mixer;
+import java.io.File;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// One independent playback zone: its own engine, playlist and output device.
+// Commands go into a lock-free queue and are applied in order by the session's command thread,
+// so callers (UI, detection, other sessions) never wait on each other. Queries read the engine's state directly.
+public class PlaybackSession implements AutoCloseable {
+
+    private static final Metrics.Counter commands = Metrics.counter("playback.commands");
+    private static final Histogram commandDelay = Metrics.histogram("playback.commandDelay");
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    // Untagged tracks that sound like the mood, added after its own folder
+    private static final int MOOD_EXTRA_TRACKS = 25;
+
+    // A queued command and the future its caller waits on
+    private static final class Command {
+        final Consumer<PlaybackEngine> action;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final long queuedNanos = System.nanoTime();
+
+        Command(Consumer<PlaybackEngine> action) {
+            this.action = action;
+        }
+
+        void run(PlaybackEngine engine) {
+            pending.decrementAndGet();
+            commandDelay.recordSince(queuedNanos);
+            commands.inc();
+            try {
+                action.accept(engine);
+                done.complete(null);
+            } catch (Throwable t) {
+                // Whatever a command throws, the command thread has to live on for the next one
+                done.completeExceptionally(t);
+            }
+        }
+
+        void fail(Throwable cause) {
+            pending.decrementAndGet();
+            done.completeExceptionally(cause);
+        }
+    }
+
+    private final String name;
+    private final AudioSink sink;
+    private final PlaybackEngine engine;
+    private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+    private final Thread commandThread;
+    private volatile boolean closed = false;
+    private volatile Duration crossfade = Duration.ofMillis(Long.getLong("tunesphere.crossfade.ms", 3000));
+
+    static {
+        Metrics.gauge("playback.pendingCommands", pending::get);
+    }
+
+    // engineName null keeps the single-session thread and gauge names
+    PlaybackSession(String name, AudioSink sink, String engineName) {
+        this.name = name;
+        this.sink = sink;
+        this.engine = new PlaybackEngine(sink, engineName);
+        HistoryLog history = HistoryLog.shared();
+        engine.addListener(new PlaybackListener() {
+            @Override
+            public void trackStarted(File track, int index) {
+                history.trackStarted(name, track);
+            }
+
+            @Override
+            public void trackEnded(File track, int index, PlaybackEngine.EndReason reason) {
+                history.trackEnded(name, track, reason, engine.getPosition().toMillis());
+            }
+        });
+        history.sessionStarted(name);
+        this.commandThread = TaskRuntime.newThread("tunesphere-session-" + name, this::commandLoop);
+        commandThread.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AudioSink getSink() {
+        return sink;
+    }
+
+    // --- COMMANDS (asynchronous, applied in order) ---
+
+    // Starts the mood's playlist in PlaylistScheduler order (shuffled, shaped by the user's history),
+    // crossfading out of whatever plays (-Dtunesphere.crossfade.ms, 0 = hard cut)
+    public CompletableFuture<Void> playMood(String moodFolderName) {
+        return submit(engine -> {
+            List<File> playlist = moodPlaylist(moodFolderName);
+            if (!playlist.isEmpty()) {
+                playlist = PlaylistScheduler.forUser(playlist, HistoryLog.shared().getUser(),
+                        PlaylistScheduler.defaultSeed()).playlist();
+            }
+            if (playlist.isEmpty() || crossfade.isZero()) {
+                engine.stop();
+                if (!playlist.isEmpty()) engine.play(playlist, 0);
+                return;
+            }
+            engine.crossfade(playlist, 0, crossfade);
+        });
+    }
+
+    public CompletableFuture<Void> crossfade(List<File> tracks, int startIndex, Duration fade) {
+        List<File> copy = PlaylistScheduler.freeze(tracks);
+        return submit(engine -> engine.crossfade(copy, startIndex, fade));
+    }
+
+    public void setCrossfade(Duration crossfade) {
+        this.crossfade = crossfade.isNegative() ? Duration.ZERO : crossfade;
+    }
+
+    public CompletableFuture<Void> play(List<File> tracks, int startIndex) {
+        List<File> copy = PlaylistScheduler.freeze(tracks);
+        return submit(engine -> engine.play(copy, startIndex));
+    }
+
+    public CompletableFuture<Void> next() {
+        return submit(PlaybackEngine::next);
+    }
+
+    public CompletableFuture<Void> stop() {
+        return submit(PlaybackEngine::stop);
+    }
+
+    public CompletableFuture<Void> pause() {
+        return submit(PlaybackEngine::pause);
+    }
+
+    public CompletableFuture<Void> resume() {
+        return submit(PlaybackEngine::resume);
+    }
+
+    public CompletableFuture<Void> seek(Duration position) {
+        return submit(engine -> engine.seek(position));
+    }
+
+    // Only sessions playing on a sound device can switch; null means the system default
+    public CompletableFuture<Void> setOutputDevice(Mixer.Info device) {
+        return submit(engine -> {
+            if (!(sink instanceof LineAudioSink line)) {
+                throw new IllegalStateException("Session " + name + " does not play on a sound device");
+            }
+            try {
+                line.setMixer(device);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot open " + device, e);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> submit(Consumer<PlaybackEngine> action) {
+        Command command = new Command(action);
+        if (closed) {
+            command.done.completeExceptionally(closedException());
+            return command.done;
+        }
+        pending.incrementAndGet();
+        queue.offer(command);
+        // close() may have drained the queue between the check above and the offer
+        if (closed && queue.remove(command)) {
+            command.fail(closedException());
+            return command.done;
+        }
+        LockSupport.unpark(commandThread);
+        return command.done;
+    }
+
+    private IllegalStateException closedException() {
+        return new IllegalStateException("Session " + name + " is closed");
+    }
+
+    // --- QUERIES (current state, no waiting) ---
+
+    public Duration getPosition() {
+        return engine.getPosition();
+    }
+
+    public File getCurrentTrack() {
+        return engine.getCurrentTrack();
+    }
+
+    public String getCurrentSongName() {
+        File current = engine.getCurrentTrack();
+        return current != null ? current.getName() : "None";
+    }
+
+    public boolean isPaused() {
+        return engine.isPaused();
+    }
+
+    public int getQueuedCommands() {
+        return queue.size();
+    }
+
+    public void addListener(PlaybackListener listener) {
+        engine.addListener(listener);
+    }
+
+    public void removeListener(PlaybackListener listener) {
+        engine.removeListener(listener);
+    }
+
+    // --- COMMAND THREAD ---
+    private void commandLoop() {
+        while (true) {
+            Command command = queue.poll();
+            if (command != null) {
+                command.run(engine);
+                continue;
+            }
+            if (closed) break;
+            LockSupport.park(this);
+        }
+    }
+
+    // Commands already queued still run, then the engine and its device are released.
+    // Whatever the command thread did not get to (it gets one second) fails instead of waiting forever.
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(commandThread);
+        try {
+            commandThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Command left;
+        while ((left = queue.poll()) != null) left.fail(closedException());
+        engine.close();
+        HistoryLog.shared().sessionEnded(name);
+    }
+
+    // Indexed query once the library scan is done, plain folder listing until then
+    static List<File> moodPlaylist(String moodFolderName) {
+        LibraryIndex library = LibraryIndex.shared();
+        if (library.isReady()) {
+            List<File> playlist = library.playlistForMood(moodFolderName, MOOD_EXTRA_TRACKS);
+            if (playlist.isEmpty()) System.out.println("No MP3s indexed for mood " + moodFolderName);
+            return playlist;
+        }
+
+        File folder = new File("songs/" + moodFolderName);
+        if (!folder.exists()) {
+            System.out.println("Folder not found: " + folder.getAbsolutePath());
+            return List.of();
+        }
+
+        File[] files = folder.listFiles((d, n) -> n.toLowerCase().endsWith(".mp3"));
+        if (files == null || files.length == 0) {
+            System.out.println("No MP3s in " + folder.getAbsolutePath());
+            return List.of();
+        }
+
+        List<File> playlist = Arrays.asList(files);
+        Collections.sort(playlist);
+        return playlist;
+    }
+}
@@ -0,0 +1,249 @@
+package com.tunesphere;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.SplittableRandom;
+
+// Order in which a mood playlist is played: a weighted shuffle without replacement, drawn one track at a
+// time. A track's chance of coming next is proportional to its weight:
+//   fit       1.0 for the playlist's first track down to 0.5 for its last (playlists come closest-first)
+//   affinity  (finished + 1) / (finished + skips + 2), doubled: 1 with no history, towards 2 for tracks the
+//             user always hears out, towards 0 for tracks they skip (a skip in the first 30 s counts fully,
+//             a later one half)
+//   recency   1 - e^(-age / 3 h) since the track last started, so what just played is very unlikely to
+//             come back soon
+// Weights live in a Fenwick tree over fixed-point longs, so drawing (and removing) a track is O(log n)
+// and exact; building is O(n). When every track has been drawn a new round starts with a fresh draw, and
+// playlist() runs straight on into it. The last few tracks of a round sit out the first few draws of the
+// next, so the round boundary can't play a track twice in a row. The same seed, tracks, history and clock
+// always give the same order.
+public final class PlaylistScheduler {
+
+    static final class TrackStats {
+        int finished;
+        double skips;
+        long lastStartedMillis;
+    }
+
+    private static final long EARLY_SKIP_MILLIS = 30_000;
+    private static final double RECENCY_MILLIS = 3 * 3600_000.0;
+    private static final double MIN_WEIGHT = 1e-3;
+    private static final double SCALE = 1 << 20;
+    // Up to this many of a round's last tracks are held back at the start of the next (a third of the
+    // playlist at most, so short playlists still mix across rounds)
+    private static final int HOLD_BACK = 3;
+
+    private final List<File> tracks;
+    private final long[] weights;   // what each track starts a round with
+    private final long[] inRound;   // its weight in this round's tree: 0 while held back
+    private final long[] tree;      // Fenwick tree over the weights still in this round, 1-based
+    private final SplittableRandom random;
+    private long total;
+    private int remaining;
+    private final int highestBit;
+    private final int[] recent;     // the last holdBack draws, a ring indexed by draws
+    private final int[] held;       // the previous round's last draws, while held back
+    private long draws;
+    private int drawnThisRound;
+    private boolean holding;
+
+    PlaylistScheduler(List<File> tracks, Map<String, TrackStats> history, long nowMillis, long seed) {
+        this.tracks = List.copyOf(tracks);
+        int n = this.tracks.size();
+        this.weights = new long[n];
+        this.inRound = new long[n];
+        this.tree = new long[n + 1];
+        this.recent = new int[Math.min(HOLD_BACK, n / 3)];
+        this.held = new int[recent.length];
+        this.random = new SplittableRandom(seed);
+        for (int i = 0; i < n; i++) {
+            double fit = 1.0 - 0.5 * i / Math.max(1, n - 1);
+            TrackStats stats = history.get(this.tracks.get(i).getPath());
+            weights[i] = Math.max(1, Math.round(score(fit, stats, nowMillis) * SCALE));
+        }
+        this.highestBit = Integer.highestOneBit(Math.max(1, n));
+        refill();
+    }
+
+    // Scheduler for `user` (null: anonymous), scored with their listening history
+    public static PlaylistScheduler forUser(List<File> tracks, String user, long seed) {
+        Map<String, TrackStats> history;
+        try {
+            history = loadHistory(user);
+        } catch (SQLException e) {
+            // Plain weighted shuffle is still better than nothing
+            e.printStackTrace();
+            history = Map.of();
+        }
+        return new PlaylistScheduler(tracks, history, System.currentTimeMillis(), seed);
+    }
+
+    // -Dtunesphere.shuffle.seed fixes the order (for tests and bug reports)
+    public static long defaultSeed() {
+        Long seed = Long.getLong("tunesphere.shuffle.seed");
+        return seed != null ? seed : System.nanoTime();
+    }
+
+    static double score(double fit, TrackStats stats, long nowMillis) {
+        if (stats == null) return fit;
+        double affinity = 2.0 * (stats.finished + 1) / (stats.finished + stats.skips + 2);
+        double recency = 1.0;
+        if (stats.lastStartedMillis > 0) {
+            double age = Math.max(0, nowMillis - stats.lastStartedMillis);
+            recency = 1.0 - Math.exp(-age / RECENCY_MILLIS);
+        }
+        return Math.max(MIN_WEIGHT, fit * affinity * recency);
+    }
+
+    public int size() {
+        return tracks.size();
+    }
+
+    // Tracks left in this round
+    public synchronized int remaining() {
+        return remaining;
+    }
+
+    // The next track, O(log n); starts a new round once all have been played. Null only if there are no tracks.
+    public synchronized File next() {
+        if (tracks.isEmpty()) return null;
+        if (remaining == 0) refill();
+        if (holding && drawnThisRound >= held.length) release();
+
+        // Smallest index whose prefix sum exceeds the target
+        long target = random.nextLong(total);
+        int index = 0;
+        for (int bit = highestBit; bit > 0; bit >>= 1) {
+            int probe = index + bit;
+            if (probe < tree.length && tree[probe] <= target) {
+                index = probe;
+                target -= tree[probe];
+            }
+        }
+        remove(index);
+        if (recent.length > 0) recent[(int) (draws % recent.length)] = index;
+        draws++;
+        drawnThisRound++;
+        return tracks.get(index);
+    }
+
+    // The draws as a list the engine can index; tracks are only drawn when asked for
+    public List<File> playlist() {
+        return new Playlist(this);
+    }
+
+    private void refill() {
+        System.arraycopy(weights, 0, inRound, 0, weights.length);
+        // Every round but the first holds back the previous one's last tracks (fewer than a round, so
+        // `recent` holds only tracks of that round)
+        holding = draws > 0 && held.length > 0;
+        if (holding) {
+            System.arraycopy(recent, 0, held, 0, held.length);
+            for (int i : held) inRound[i] = 0;
+        }
+        // Linear Fenwick build: each node adds itself to its parent
+        System.arraycopy(inRound, 0, tree, 1, inRound.length);
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+        total = 0;
+        for (long w : inRound) total += w;
+        remaining = weights.length;
+        drawnThisRound = 0;
+    }
+
+    // The held-back tracks rejoin the round with their full weight
+    private void release() {
+        for (int index : held) add(index, weights[index]);
+        holding = false;
+    }
+
+    // A track is removed at most once per round, with whatever weight it has in this round
+    private void remove(int index) {
+        add(index, -inRound[index]);
+        remaining--;
+    }
+
+    private void add(int index, long delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) tree[i] += delta;
+        inRound[index] += delta;
+        total += delta;
+    }
+
+    private static Map<String, TrackStats> loadHistory(String user) throws SQLException {
+        return Database.query("""
+                SELECT path,
+                       SUM(type = 'TRACK_FINISHED'),
+                       SUM(CASE WHEN type = 'TRACK_SKIPPED' THEN (CASE WHEN position_ms < ? THEN 1.0 ELSE 0.5 END) ELSE 0 END),
+                       MAX(CASE WHEN type = 'TRACK_STARTED' THEN at ELSE 0 END)
+                FROM history
+                WHERE username IS ? AND path IS NOT NULL
+                GROUP BY path
+                """, rs -> {
+            Map<String, TrackStats> stats = new HashMap<>();
+            while (rs.next()) {
+                TrackStats s = new TrackStats();
+                s.finished = rs.getInt(2);
+                s.skips = rs.getDouble(3);
+                s.lastStartedMillis = rs.getLong(4);
+                stats.put(rs.getString(1), s);
+            }
+            return stats;
+        }, EARLY_SKIP_MILLIS, user);
+    }
+
+    // Index i is the i-th draw, counting on through every round. Fixed once drawn, so the engine's prefetch
+    // of i + 1 stays valid. size() always reaches a round past the last draw, so the engine's
+    // (i + 1) % size() never wraps back to the first round's order. Unbounded: index it, don't iterate it.
+    // Only the latest draws are kept (a round's worth, and at least KEPT): the engine only looks back as far
+    // as the track still playing while the decoder is ahead of it.
+    static final class Playlist extends AbstractList<File> implements RandomAccess {
+        private static final int KEPT = 256;
+
+        private final PlaylistScheduler scheduler;
+        private final List<File> drawn = new ArrayList<>();
+        private final int kept;
+        private int first;  // index of drawn.get(0)
+
+        Playlist(PlaylistScheduler scheduler) {
+            this.scheduler = scheduler;
+            this.kept = Math.max(KEPT, scheduler.size());
+        }
+
+        @Override
+        public synchronized File get(int index) {
+            if (index < first || index >= size()) throw new IndexOutOfBoundsException(index);
+            while (first + drawn.size() <= index) drawn.add(scheduler.next());
+            if (drawn.size() >= 2 * kept) {
+                // Amortised O(1): drop a batch of the oldest draws at a time
+                int drop = Math.min(drawn.size() - kept, index - first);
+                drawn.subList(0, drop).clear();
+                first += drop;
+            }
+            return drawn.get(index - first);
+        }
+
+        @Override
+        public synchronized int size() {
+            int left = scheduler.remaining();
+            return first + drawn.size() + (left > 0 ? left : scheduler.size());
+        }
+    }
+
+    // Distinct tracks behind a playlist: one round of a scheduled one
+    static int roundLength(List<File> tracks) {
+        return tracks instanceof Playlist p ? p.scheduler.size() : tracks.size();
+    }
+
+    // Scheduled playlists are drawn lazily and never change, so they are kept as they are; anything else is copied
+    static List<File> freeze(List<File> tracks) {
+        return tracks instanceof Playlist ? tracks : List.copyOf(tracks);
+    }
+}
@@ -0,0 +1,82 @@
+package com.tunesphere;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One borrow of a connection from the ConnectionPool. close() hands it back instead of closing it.
+// Prepared statements are cached per connection: don't close them, just close their ResultSets.
+// Every borrow gets its own PooledConnection, so a second (or late) close() can never hand back a
+// connection that someone else has borrowed since; using it after close() fails.
+public class PooledConnection implements AutoCloseable {
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    // The physical connection the pool keeps between borrows
+    static final class Physical {
+        final Connection connection;
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) return false;
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException ignored) {}
+                return true;
+            }
+        };
+
+        Physical(Connection connection) {
+            this.connection = connection;
+        }
+
+        void close() {
+            for (PreparedStatement stmt : statements.values()) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {}
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {}
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Physical physical;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    PooledConnection(ConnectionPool pool, Physical physical) {
+        this.pool = pool;
+        this.physical = physical;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        if (closed.get()) throw new SQLException("Connection already returned to the pool");
+        PreparedStatement stmt = physical.statements.get(sql);
+        if (stmt == null) {
+            stmt = physical.connection.prepareStatement(sql);
+            physical.statements.put(sql, stmt);
+        } else {
+            // Whatever the last borrower left behind: bound values and an unexecuted batch
+            stmt.clearParameters();
+            stmt.clearBatch();
+        }
+        return stmt;
+    }
+
+    // For transactions; don't close it
+    public Connection connection() {
+        if (closed.get()) throw new IllegalStateException("Connection already returned to the pool");
+        return physical.connection;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) pool.release(physical);
+    }
+}
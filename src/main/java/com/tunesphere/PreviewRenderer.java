@@ -0,0 +1,111 @@
+package com.tunesphere;
+
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.util.Callback;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC4;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2BGRA;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+
+// Pushes camera frames into one reusable PixelBuffer-backed WritableImage.
+// No BufferedImage / FX Image per frame: the preview thread converts BGR -> BGRA into a native
+// staging buffer, and the FX thread copies the newest one straight into the image's pixels.
+// Staging is triple-buffered so neither side ever waits, and at most one runLater is pending.
+public class PreviewRenderer implements AutoCloseable {
+
+    private static class Slot {
+        final Mat mat = NativeMemory.newMat();
+        ByteBuffer bytes;
+        int width;
+        int height;
+        volatile boolean fresh;
+
+        void ensureSize(int w, int h) {
+            if (w == width && h == height) return;
+            mat.create(h, w, CV_8UC4);
+            bytes = mat.createBuffer();
+            width = w;
+            height = h;
+        }
+    }
+
+    private final ImageView imageView;
+    private final AtomicBoolean updatePending = new AtomicBoolean(false);
+    private final AtomicReference<Slot> latest = new AtomicReference<>(new Slot());
+    private final Runnable presentTask = this::present;
+    private final Callback<PixelBuffer<ByteBuffer>, Rectangle2D> copyTask = this::copyFront;
+
+    // Owned by the preview thread
+    private Slot back = new Slot();
+
+    // Owned by the FX thread
+    private Slot front = new Slot();
+    private PixelBuffer<ByteBuffer> pixelBuffer;
+
+    private volatile boolean closed = false;
+
+    public PreviewRenderer(ImageView imageView) {
+        this.imageView = imageView;
+    }
+
+    // Called from the preview stage with a BGR frame
+    public void render(Mat bgr) {
+        if (closed || bgr.empty()) return;
+
+        back.ensureSize(bgr.cols(), bgr.rows());
+        cvtColor(bgr, back.mat, COLOR_BGR2BGRA);
+        back.fresh = true;
+        back = latest.getAndSet(back);
+
+        // Coalesce: if the FX thread hasn't picked up the last frame yet it will just get this one instead
+        if (updatePending.compareAndSet(false, true)) {
+            Platform.runLater(presentTask);
+        }
+    }
+
+    // --- FX thread ---
+    private void present() {
+        updatePending.set(false);
+        if (closed || !latest.get().fresh) return;
+
+        front = latest.getAndSet(front);
+        front.fresh = false;
+
+        if (pixelBuffer == null || pixelBuffer.getWidth() != front.width || pixelBuffer.getHeight() != front.height) {
+            ByteBuffer pixels = ByteBuffer.allocateDirect(front.width * front.height * 4);
+            pixelBuffer = new PixelBuffer<>(front.width, front.height, pixels, PixelFormat.getByteBgraPreInstance());
+            imageView.setImage(new WritableImage(pixelBuffer));
+        }
+        pixelBuffer.updateBuffer(copyTask);
+    }
+
+    private Rectangle2D copyFront(PixelBuffer<ByteBuffer> target) {
+        ByteBuffer dst = target.getBuffer();
+        ByteBuffer src = front.bytes;
+        dst.clear();
+        src.clear();
+        dst.put(src);
+        return null; // whole image changed
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // The FX thread may still hold the front slot, free the staging buffers there
+        Platform.runLater(() -> {
+            NativeMemory.release(front.mat);
+            NativeMemory.release(latest.get().mat);
+        });
+        NativeMemory.release(back.mat);
+    }
+}
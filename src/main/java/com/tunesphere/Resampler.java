@@ -0,0 +1,97 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+
+// Streaming sample-rate converter: 16-bit PCM in (mono or stereo, any rate), float stereo out at a fixed rate.
+// Uses 4-point Catmull-Rom interpolation, which is exact when the rates match. Everything works on
+// buffers allocated up front, so converting audio creates no garbage.
+final class Resampler {
+
+    private static final int HISTORY = 3;
+    private static final int CAPACITY = TrackDecoder.MAX_FRAME_BYTES / 2 + HISTORY + 4;
+
+    private final float[] left = new float[CAPACITY];
+    private final float[] right = new float[CAPACITY];
+    private int count;     // source frames in the buffers
+    private double pos;    // next output position, in source frames
+    private double step;   // source frames per output frame, 0 until the source rate is known
+    private float outputRate;
+
+    // Starts a new stream; the source rate is picked up from the first push()
+    void reset(float outputRate) {
+        this.outputRate = outputRate;
+        left[0] = 0;
+        right[0] = 0;
+        count = 1; // one frame of silence so the first real sample has a left neighbour
+        pos = 1;
+        step = 0;
+    }
+
+    // True if pull() can't produce anything more without new input
+    boolean needsInput() {
+        return step == 0 || (int) pos + 2 >= count;
+    }
+
+    // Appends one decoded block (16-bit little-endian, interleaved)
+    void push(byte[] pcm, int length, AudioFormat format) {
+        if (step == 0) step = format.getSampleRate() / outputRate;
+        compact();
+        int channels = format.getChannels();
+        int frames = length / (2 * channels);
+        for (int i = 0, j = 0; i < frames; i++) {
+            float l = (short) ((pcm[j] & 0xFF) | (pcm[j + 1] << 8));
+            j += 2;
+            float r = l;
+            if (channels > 1) {
+                r = (short) ((pcm[j] & 0xFF) | (pcm[j + 1] << 8));
+                j += 2 * (channels - 1);
+            }
+            left[count] = l;
+            right[count] = r;
+            count++;
+        }
+    }
+
+    // Zero frames after the last block, so its final samples can be interpolated too
+    void pushSilence(int frames) {
+        compact();
+        for (int i = 0; i < frames; i++) {
+            left[count] = 0;
+            right[count] = 0;
+            count++;
+        }
+    }
+
+    // Writes up to `frames` interleaved stereo frames at the output rate; returns how many it wrote
+    int pull(float[] out, int offset, int frames) {
+        if (step == 0) return 0;
+        int written = 0;
+        int o = offset * 2;
+        while (written < frames) {
+            int i = (int) pos;
+            if (i + 2 >= count) break;
+            float t = (float) (pos - i);
+            out[o++] = interpolate(left[i - 1], left[i], left[i + 1], left[i + 2], t);
+            out[o++] = interpolate(right[i - 1], right[i], right[i + 1], right[i + 2], t);
+            pos += step;
+            written++;
+        }
+        return written;
+    }
+
+    // Drops consumed frames, keeping the neighbours the next output sample needs
+    private void compact() {
+        // When downsampling hard, pos may already be past the end of the buffer
+        int keep = Math.min(Math.max(0, (int) pos - 1), count);
+        if (keep == 0) return;
+        int remaining = count - keep;
+        System.arraycopy(left, keep, left, 0, remaining);
+        System.arraycopy(right, keep, right, 0, remaining);
+        count = remaining;
+        pos -= keep;
+    }
+
+    private static float interpolate(float p0, float p1, float p2, float p3, float t) {
+        return p1 + 0.5f * t * (p2 - p0 + t * (2 * p0 - 5 * p1 + 4 * p2 - p3 + t * (3 * (p1 - p2) + p3 - p0)));
+    }
+}
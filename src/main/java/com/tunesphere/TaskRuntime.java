@@ -0,0 +1,123 @@
+package com.tunesphere;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One place for every background thread in the app.
+//   io()         - blocking work: DB, files, switching playlists. Bounded, grows on demand, idle threads die off.
+//   nativeWork() - OpenCV / other native work, capped near the core count so it can't starve the UI or audio.
+//   factory()    - named daemon threads for long-running loops (camera, decoder, watcher...).
+// Everything created here is a named daemon thread and counted in the tasks.* metrics.
+// Group short tasks that belong to a window or feature in a TaskScope so closing it cancels and awaits them.
+public final class TaskRuntime {
+
+    private static final int IO_THREADS = 16;
+    private static final int NATIVE_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int MAX_QUEUED = 256;
+
+    private static final Set<Thread> live = ConcurrentHashMap.newKeySet();
+    private static final Metrics.Counter rejected = Metrics.counter("tasks.rejected");
+
+    private static final ThreadPoolExecutor io = pool("tunesphere-io", IO_THREADS);
+    private static final ThreadPoolExecutor nativeWork = pool("tunesphere-native", NATIVE_THREADS);
+
+    static {
+        Metrics.gauge("tasks.io.active", io::getActiveCount);
+        Metrics.gauge("tasks.io.queued", () -> io.getQueue().size());
+        Metrics.gauge("tasks.native.active", nativeWork::getActiveCount);
+        Metrics.gauge("tasks.native.queued", () -> nativeWork.getQueue().size());
+        Metrics.gauge("tasks.threads.live", live::size);
+        Metrics.gauge("tasks.threads.jvm", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        Metrics.gauge("tasks.scopes.open", TaskScope::openScopes);
+    }
+
+    private TaskRuntime() {
+    }
+
+    public static ExecutorService io() {
+        return io;
+    }
+
+    public static ExecutorService nativeWork() {
+        return nativeWork;
+    }
+
+    // Named, tracked daemon threads; numbered when the factory makes more than one
+    public static ThreadFactory factory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            int n = count.incrementAndGet();
+            return newThread(n == 1 ? name : name + "-" + n, task);
+        };
+    }
+
+    // Not started, so callers can still set priority etc.
+    public static Thread newThread(String name, Runnable task) {
+        Thread[] self = new Thread[1];
+        Thread t = new Thread(() -> {
+            live.add(self[0]);
+            try {
+                task.run();
+            } finally {
+                live.remove(self[0]);
+            }
+        }, name);
+        self[0] = t;
+        t.setDaemon(true);
+        return t;
+    }
+
+    public static TaskScope openScope(String name) {
+        return new TaskScope(name, io);
+    }
+
+    // Called once on exit: lets queued work finish briefly, then reports anything still alive
+    public static void shutdown(long timeout, TimeUnit unit) {
+        io.shutdown();
+        nativeWork.shutdown();
+        try {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            io.awaitTermination(timeout, unit);
+            nativeWork.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        io.shutdownNow();
+        nativeWork.shutdownNow();
+        System.out.println(report());
+    }
+
+    public static String report() {
+        List<String> names = new ArrayList<>();
+        for (Thread t : live) {
+            if (t.isAlive()) names.add(t.getName());
+        }
+        return "Tasks: " + io.getCompletedTaskCount() + " io, " + nativeWork.getCompletedTaskCount() + " native, "
+                + rejected.get() + " rejected, " + TaskScope.openScopes() + " scope(s) open, "
+                + names.size() + " thread(s) alive" + (names.isEmpty() ? "" : " " + names);
+    }
+
+    private static ThreadPoolExecutor pool(String name, int threads) {
+        RejectedExecutionHandler reject = (task, executor) -> {
+            rejected.inc();
+            new ThreadPoolExecutor.AbortPolicy().rejectedExecution(task, executor);
+        };
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> newThread(name + "-" + count.incrementAndGet(), task);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), factory, reject);
+        // Fixed size, but idle threads go away so a quiet app holds none
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
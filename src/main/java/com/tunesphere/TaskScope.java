@@ -0,0 +1,135 @@
+package com.tunesphere;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Tasks (and resources) that belong to one owner, e.g. a window. close() cancels whatever is still
+// running, closes the resources in reverse order and waits for all of it, so nothing outlives the owner.
+// Tasks that don't stop in time are reported as leaks in the tasks.leaked counter.
+public class TaskScope implements AutoCloseable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+    private static final AtomicInteger open = new AtomicInteger();
+    private static final Metrics.Counter leaked = Metrics.counter("tasks.leaked");
+
+    private final String name;
+    private final ExecutorService executor;
+    private final Set<Future<?>> pending = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+    private int active = 0; // guarded by this
+    private boolean closed = false; // guarded by this
+
+    TaskScope(String name, ExecutorService executor) {
+        this.name = name;
+        this.executor = executor;
+        open.incrementAndGet();
+    }
+
+    static int openScopes() {
+        return open.get();
+    }
+
+    public Future<?> fork(Runnable task) {
+        return fork(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // Rejected once the scope is closing
+    public <T> Future<T> fork(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        synchronized (this) {
+            if (closed) throw new RejectedExecutionException("Scope " + name + " is closed");
+            active++;
+        }
+        pending.add(future);
+        try {
+            executor.execute(() -> {
+                running.add(Thread.currentThread());
+                try {
+                    future.run(); // does nothing if it was cancelled while queued
+                } finally {
+                    running.remove(Thread.currentThread());
+                    finished(future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finished(future);
+            throw e;
+        }
+        return future;
+    }
+
+    // Closed together with the scope, after its tasks were cancelled
+    public synchronized <R extends AutoCloseable> R own(R resource) {
+        if (closed) throw new IllegalStateException("Scope " + name + " is closed");
+        resources.push(resource);
+        return resource;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void finished(Future<?> future) {
+        pending.remove(future);
+        synchronized (this) {
+            active--;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<AutoCloseable> toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+        for (Future<?> future : pending) future.cancel(true);
+        for (AutoCloseable resource : toClose) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        boolean interrupted = false;
+        synchronized (this) {
+            long remaining;
+            while (active > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+            }
+            if (active > 0) {
+                leaked.add(active);
+                List<String> names = new ArrayList<>();
+                for (Thread t : running) names.add(t.getName());
+                System.out.println("Scope " + name + ": " + active + " task(s) still running after close " + names);
+            }
+        }
+        open.decrementAndGet();
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,196 @@
+package com.tunesphere;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+
+// Decodes one MP3 file frame by frame into 16-bit little-endian PCM.
+// prefetch() decodes the first frames ahead of time, so switching to this track later costs nothing.
+// A decoder can also start in the middle of a file (seeking), given the byte offset of a frame.
+// The file is read through a memory mapping; tracks held in the PcmCache are not decoded at all,
+// and a track played from the start is recorded into the cache when it qualifies.
+public class TrackDecoder implements AutoCloseable {
+
+    // One MPEG frame: at most 1152 samples x 2 channels x 2 bytes
+    public static final int MAX_FRAME_BYTES = 1152 * 2 * 2;
+
+    // Layer III frames may borrow bits from the previous ones (bit reservoir),
+    // so after a seek a couple of frames are decoded and thrown away first
+    public static final int PRIMING_FRAMES = 2;
+
+    private final File file;
+    private final Bitstream bitstream;   // null when playing from the cache
+    private final PcmCache.Entry cached;
+    private PcmCache.Recorder recorder;
+    private final Decoder decoder = new Decoder();
+    private final ArrayDeque<byte[]> prefetched = new ArrayDeque<>();
+    private AudioFormat format;
+    private float frameMillis;
+    private int nextFrame;
+    private int framesToDiscard;
+    private boolean finished = false;
+
+    public TrackDecoder(File file) throws IOException {
+        this(file, 0, 0, 0);
+    }
+
+    // Starts reading at `offset`, which holds frame number `frame`; the first `discard` frames are decoded silently
+    public TrackDecoder(File file, long offset, int frame, int discard) throws IOException {
+        this(file, PcmCache.shared().get(file), offset, frame, discard);
+    }
+
+    private TrackDecoder(File file, PcmCache.Entry cached, long offset, int frame, int discard) throws IOException {
+        this.file = file;
+        this.cached = cached;
+        this.nextFrame = frame;
+        if (cached != null) {
+            this.bitstream = null;
+            this.format = cached.format;
+            this.frameMillis = cached.frameMillis;
+            return;
+        }
+        this.bitstream = new Bitstream(new MappedInputStream(file, offset));
+        this.framesToDiscard = discard;
+        if (offset == 0 && frame == 0) recorder = PcmCache.shared().recorder(file);
+    }
+
+    // Opens the file positioned so that `position` is the first thing heard
+    public static TrackDecoder openAt(File file, Duration position) throws IOException {
+        if (position.isZero()) return new TrackDecoder(file);
+
+        PcmCache.Entry cached = PcmCache.shared().get(file);
+        if (cached != null) {
+            int target = Math.min((int) (position.toMillis() / cached.frameMillis), cached.getFrameCount());
+            return new TrackDecoder(file, cached, 0, target, 0);
+        }
+
+        Mp3FrameIndex index = Mp3FrameIndex.cached(file);
+        if (index != null) {
+            int target = index.frameAt(position);
+            int first = Math.max(0, target - PRIMING_FRAMES);
+            return new TrackDecoder(file, null, index.offsetOf(first), first, target - first);
+        }
+
+        // First seek in this file: jump to the estimate now, build the exact index for next time
+        Mp3FrameIndex.load(file);
+        Mp3FrameIndex.Probe probe = Mp3FrameIndex.probe(file);
+        int target = (int) (position.toMillis() / probe.getFrameMillis());
+        long offset = probe.estimateOffset(position.toMillis());
+        return new TrackDecoder(file, null, offset, target, PRIMING_FRAMES);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Known after the first decoded frame
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    // Index of the next frame decodeInto() will return
+    public int getFrameIndex() {
+        return nextFrame - prefetched.size();
+    }
+
+    public void prefetch(int frames) throws JavaLayerException {
+        byte[] scratch = new byte[MAX_FRAME_BYTES];
+        for (int i = 0; i < frames; i++) {
+            int length = decodeNext(scratch);
+            if (length < 0) break;
+            byte[] copy = new byte[length];
+            System.arraycopy(scratch, 0, copy, 0, length);
+            prefetched.add(copy);
+        }
+    }
+
+    // Fills the block with the next frame's PCM; returns false at the end of the file
+    public boolean decodeInto(PcmRing.Block block) throws JavaLayerException {
+        block.frameIndex = getFrameIndex();
+        byte[] ready = prefetched.poll();
+        if (ready != null) {
+            System.arraycopy(ready, 0, block.data, 0, ready.length);
+            block.length = ready.length;
+        } else {
+            int length = decodeNext(block.data);
+            if (length < 0) return false;
+            block.length = length;
+        }
+        block.format = format;
+        block.frameMillis = frameMillis;
+        return true;
+    }
+
+    // Returns the number of bytes written, 0 for a skipped broken frame, -1 at the end
+    private int decodeNext(byte[] out) throws JavaLayerException {
+        if (cached != null) {
+            if (nextFrame >= cached.getFrameCount()) return -1;
+            return cached.copyFrame(nextFrame++, out);
+        }
+        while (true) {
+            if (finished) return -1;
+            Header header = bitstream.readFrame();
+            if (header == null) {
+                finished = true;
+                if (recorder != null) recorder.finish(format, frameMillis);
+                recorder = null;
+                return -1;
+            }
+            nextFrame++;
+            if (framesToDiscard > 0) {
+                framesToDiscard--;
+                try {
+                    decoder.decodeFrame(header, bitstream);
+                } catch (DecoderException ignored) {
+                    // expected while the bit reservoir fills up
+                } finally {
+                    bitstream.closeFrame();
+                }
+                continue;
+            }
+            return decodeFrame(header, out);
+        }
+    }
+
+    private int decodeFrame(Header header, byte[] out) throws JavaLayerException {
+        try {
+            SampleBuffer samples = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            if (format == null) {
+                format = new AudioFormat(decoder.getOutputFrequency(), 16, decoder.getOutputChannels(), true, false);
+                frameMillis = header.ms_per_frame();
+            }
+            short[] pcm = samples.getBuffer();
+            int count = samples.getBufferLength();
+            for (int i = 0, j = 0; i < count; i++) {
+                short s = pcm[i];
+                out[j++] = (byte) s;
+                out[j++] = (byte) (s >> 8);
+            }
+            if (recorder != null) recorder.append(out, count * 2);
+            return count * 2;
+        } catch (DecoderException e) {
+            if (recorder != null) recorder.append(out, 0);
+            return 0; // corrupt frame, keep going with the next one
+        } finally {
+            bitstream.closeFrame();
+        }
+    }
+
+    @Override
+    public void close() {
+        recorder = null; // an unfinished track is never cached
+        if (bitstream == null) return;
+        try {
+            bitstream.close();
+        } catch (Exception ignored) {}
+    }
+}
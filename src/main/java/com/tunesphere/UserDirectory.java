@@ -0,0 +1,219 @@
+package com.tunesphere;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory view of the users table. A Bloom filter over usernames and emails answers most
+// "is this taken?" questions without SQLite, and a bounded LRU keeps recently used accounts
+// (with their password hashes) so logins skip the database. Writes go through to both.
+public class UserDirectory {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    public static final class User {
+        public final String username;
+        public final String email;
+        public final String passwordHash;
+
+        User(String username, String email, String passwordHash) {
+            this.username = username;
+            this.email = email;
+            this.passwordHash = passwordHash;
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<String, User> recent;
+    private BloomFilter usernames = new BloomFilter(DEFAULT_CAPACITY, FALSE_POSITIVE_RATE);
+    private BloomFilter emails = new BloomFilter(DEFAULT_CAPACITY, FALSE_POSITIVE_RATE);
+    private volatile boolean ready = false;
+    // Accounts added while warmUp() reads the table, replayed into the new filters before they go live.
+    // Guarded by this; null when no warm-up is running.
+    private List<User> addedDuringWarmUp;
+    private int warmUps = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bloomNegatives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public UserDirectory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UserDirectory(int capacity) {
+        this.capacity = capacity;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > UserDirectory.this.capacity;
+            }
+        };
+    }
+
+    // Loads every name/email into the filters and the newest accounts into the LRU
+    public void warmUp() {
+        synchronized (this) {
+            if (warmUps++ == 0) addedDuringWarmUp = new ArrayList<>();
+        }
+        try {
+            int count = Database.query("SELECT COUNT(*) FROM users", rs -> rs.next() ? rs.getInt(1) : 0);
+            BloomFilter names = new BloomFilter(Math.max(DEFAULT_CAPACITY, count * 2), FALSE_POSITIVE_RATE);
+            BloomFilter mails = new BloomFilter(Math.max(DEFAULT_CAPACITY, count * 2), FALSE_POSITIVE_RATE);
+            LinkedHashMap<String, User> newest = new LinkedHashMap<>();
+            Database.query("SELECT username, email, password FROM users ORDER BY id DESC", rs -> {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    String email = rs.getString(2);
+                    names.add(name);
+                    mails.add(email);
+                    if (newest.size() < capacity) newest.put(name, new User(name, email, rs.getString(3)));
+                }
+                return null;
+            });
+            synchronized (this) {
+                for (User user : addedDuringWarmUp) {
+                    names.add(user.username);
+                    mails.add(user.email);
+                }
+                usernames = names;
+                emails = mails;
+                recent.clear();
+                recent.putAll(newest);
+                for (User user : addedDuringWarmUp) recent.put(user.username, user);
+                ready = true;
+            }
+            System.out.println("User directory: " + count + " users, " + newest.size() + " cached");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                if (--warmUps == 0) addedDuringWarmUp = null;
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Cached account, or a database lookup on a miss. Null if there is no such user.
+    public User find(String username) throws SQLException {
+        synchronized (this) {
+            User user = recent.get(username);
+            if (user != null) {
+                hits.incrementAndGet();
+                return user;
+            }
+            if (ready && !usernames.mightContain(username)) {
+                bloomNegatives.incrementAndGet();
+                return null;
+            }
+        }
+        misses.incrementAndGet();
+        User user = Database.query("SELECT username, email, password FROM users WHERE username=?",
+                rs -> rs.next() ? new User(rs.getString(1), rs.getString(2), rs.getString(3)) : null, username);
+        if (user == null) {
+            if (ready) falsePositives.incrementAndGet();
+        } else {
+            synchronized (this) {
+                recent.put(username, user);
+            }
+        }
+        return user;
+    }
+
+    // Answers from memory when it can: TRUE/FALSE, or null when only the database can tell
+    public Boolean isUsernameTakenFast(String username) {
+        synchronized (this) {
+            if (recent.containsKey(username)) {
+                hits.incrementAndGet();
+                return true;
+            }
+            if (ready && !usernames.mightContain(username)) {
+                bloomNegatives.incrementAndGet();
+                return false;
+            }
+        }
+        return null;
+    }
+
+    public Boolean isEmailTakenFast(String email) {
+        synchronized (this) {
+            if (ready && !emails.mightContain(email)) {
+                bloomNegatives.incrementAndGet();
+                return false;
+            }
+        }
+        return null;
+    }
+
+    public CompletableFuture<Boolean> isUsernameTaken(String username) {
+        return resolve(isUsernameTakenFast(username), "SELECT 1 FROM users WHERE username=?", username);
+    }
+
+    public CompletableFuture<Boolean> isEmailTaken(String email) {
+        return resolve(isEmailTakenFast(email), "SELECT 1 FROM users WHERE email=?", email);
+    }
+
+    private CompletableFuture<Boolean> resolve(Boolean fast, String sql, String value) {
+        if (fast != null) return CompletableFuture.completedFuture(fast);
+        misses.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                boolean taken = Database.query(sql, rs -> rs.next(), value);
+                if (!taken && ready) falsePositives.incrementAndGet();
+                return taken;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }, TaskRuntime.io());
+    }
+
+    // Write-through after a successful insert
+    public synchronized void added(String username, String email, String passwordHash) {
+        usernames.add(username);
+        emails.add(email);
+        User user = new User(username, email, passwordHash);
+        recent.put(username, user);
+        if (addedDuringWarmUp != null) addedDuringWarmUp.add(user);
+        // Not while a rebuild is already on its way (it clears ready until the new filters are in)
+        if (ready && (usernames.isSaturated() || emails.isSaturated())) {
+            // Rebuild with room to grow once the filters get crowded
+            ready = false;
+            CompletableFuture.runAsync(this::warmUp, TaskRuntime.io());
+        }
+    }
+
+    public synchronized void passwordChanged(String username, String passwordHash) {
+        User user = recent.get(username);
+        if (user != null) recent.put(username, new User(username, user.email, passwordHash));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBloomNegatives() {
+        return bloomNegatives.get();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    public synchronized String report() {
+        return String.format("User directory: %d cached, %d hits, %d misses, %d answered by filter, %d filter false positives",
+                recent.size(), hits.get(), misses.get(), bloomNegatives.get(), falsePositives.get());
+    }
+}
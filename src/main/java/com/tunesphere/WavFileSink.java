@@ -0,0 +1,123 @@
+package com.tunesphere;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+
+// Renders PCM into a .wav file instead of playing it, as fast as the engine produces it.
+// For checking mixes and crossfades offline. All audio must share one format; the RIFF sizes are
+// filled in on close().
+public class WavFileSink implements AudioSink {
+
+    private static final int HEADER_BYTES = 44;
+
+    private final File file;
+    private RandomAccessFile out;
+    private AudioFormat format;
+    private long dataBytes = 0;
+
+    public WavFileSink(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void open(AudioFormat format) throws IOException {
+        if (out != null) {
+            if (!this.format.matches(format)) {
+                throw new IOException("WAV output is " + this.format + ", cannot switch to " + format);
+            }
+            return;
+        }
+        out = new RandomAccessFile(file, "rw");
+        out.setLength(0);
+        out.write(new byte[HEADER_BYTES]);
+        this.format = format;
+    }
+
+    @Override
+    public synchronized AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int offset, int length) {
+        if (out == null) return;
+        try {
+            out.write(data, offset, length);
+            dataBytes += length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void drain() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void pause() {
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    public synchronized long getDataBytes() {
+        return dataBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out == null) return;
+        try {
+            out.seek(0);
+            out.write(header());
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        out = null;
+    }
+
+    private byte[] header() {
+        int channels = format.getChannels();
+        int rate = (int) format.getSampleRate();
+        int bits = format.getSampleSizeInBits();
+        int blockAlign = channels * bits / 8;
+        byte[] h = new byte[HEADER_BYTES];
+        ascii(h, 0, "RIFF");
+        int32(h, 4, (int) (36 + dataBytes));
+        ascii(h, 8, "WAVE");
+        ascii(h, 12, "fmt ");
+        int32(h, 16, 16);
+        int16(h, 20, 1); // PCM
+        int16(h, 22, channels);
+        int32(h, 24, rate);
+        int32(h, 28, rate * blockAlign);
+        int16(h, 32, blockAlign);
+        int16(h, 34, bits);
+        ascii(h, 36, "data");
+        int32(h, 40, (int) dataBytes);
+        return h;
+    }
+
+    private static void ascii(byte[] h, int at, String s) {
+        for (int i = 0; i < 4; i++) h[at + i] = (byte) s.charAt(i);
+    }
+
+    private static void int16(byte[] h, int at, int v) {
+        h[at] = (byte) v;
+        h[at + 1] = (byte) (v >> 8);
+    }
+
+    private static void int32(byte[] h, int at, int v) {
+        int16(h, at, v);
+        int16(h, at + 2, v >> 16);
+    }
+}
@@ -0,0 +1,116 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    @TempDir
+    File dir;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void open() throws Exception {
+        pool = new ConnectionPool("jdbc:sqlite:" + new File(dir, "test.db").getPath(), 2);
+        try (PooledConnection conn = pool.acquire()) {
+            conn.connection().createStatement().execute("CREATE TABLE t (v INTEGER)");
+        }
+    }
+
+    @AfterEach
+    void close() {
+        pool.close();
+    }
+
+    @Test
+    void closingTwiceReturnsTheConnectionOnce() throws Exception {
+        PooledConnection first = pool.acquire();
+        first.close();
+        first.close();
+        assertEquals(0, pool.getInUse());
+
+        // Both slots still usable, and they are different connections
+        PooledConnection a = pool.acquire();
+        PooledConnection b = pool.acquire();
+        assertNotSame(a.connection(), b.connection());
+        assertEquals(2, pool.getInUse());
+        a.close();
+        b.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    void aLateCloseFromAnEarlierBorrowLeavesTheNextBorrowerAlone() throws Exception {
+        PooledConnection first = pool.acquire();
+        first.close();
+        PooledConnection second = pool.acquire();
+        // The first borrower closes again, after the same connection went to someone else
+        first.close();
+        assertEquals(1, pool.getInUse());
+        assertThrows(SQLException.class, () -> first.prepare("SELECT 1"));
+        assertThrows(IllegalStateException.class, first::connection);
+
+        PooledConnection third = pool.acquire();
+        assertNotSame(second.connection(), third.connection());
+        assertEquals(2, pool.getInUse());
+        second.close();
+        third.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    void aWaiterGetsANewConnectionWhenABrokenOneIsDiscarded() throws Exception {
+        PooledConnection a = pool.acquire();
+        PooledConnection b = pool.acquire();
+        CompletableFuture<PooledConnection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquire();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(waiter.isDone());
+
+        // Closing the JDBC connection underneath makes release() discard it rather than hand it back
+        a.connection().close();
+        a.close();
+        PooledConnection c = waiter.get(1, TimeUnit.SECONDS);
+        assertEquals(2, pool.getOpenConnections());
+        c.close();
+        b.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    void cachedStatementsComeBackWithoutAnUnexecutedBatch() throws Exception {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement insert = conn.prepare("INSERT INTO t (v) VALUES (?)");
+            insert.setInt(1, 1);
+            insert.addBatch();
+            // Never executed
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement insert = conn.prepare("INSERT INTO t (v) VALUES (?)");
+            insert.setInt(1, 2);
+            insert.addBatch();
+            assertArrayEquals(new int[]{1}, insert.executeBatch());
+            try (ResultSet rs = conn.prepare("SELECT COUNT(*), MAX(v) FROM t").executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertEquals(2, rs.getInt(2));
+            }
+        }
+    }
+}
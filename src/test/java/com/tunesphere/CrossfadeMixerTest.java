@@ -0,0 +1,104 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Renders a fade from a 22.05 kHz track into a 44.1 kHz one (resampled down to the 22.05 kHz the
+// output already plays) into a WavFileSink, then reads the file back.
+class CrossfadeMixerTest {
+
+    private static final int OUT_RATE = 22_050;
+    private static final int MAX_BEND = 800;
+    private static final int PLAYED_BEFORE_FADE = 40; // MPEG-2 frames of 576 samples, ~1 s
+    private static final long FADE_MILLIS = 1000;
+
+    @TempDir
+    static File dir;
+    private static File outgoing, incoming;
+
+    @BeforeAll
+    static void makeTracks() throws Exception {
+        outgoing = TestAudio.tone(dir, "low.mp3", 3, 440, OUT_RATE);
+        incoming = TestAudio.tone(dir, "high.mp3", 2, 660, 44_100);
+    }
+
+    @Test
+    void fadeIntoAFasterTrackIsSmoothAndAtTheOutputRate() throws Exception {
+        File wav = new File(dir, "fade.wav");
+        long playedFrames = 0;
+        try (WavFileSink sink = new WavFileSink(wav);
+             TrackDecoder to = new TrackDecoder(incoming)) {
+            TrackDecoder from = new TrackDecoder(outgoing);
+            PcmRing.Block block = new PcmRing(1, TrackDecoder.MAX_FRAME_BYTES).acquire(1, TimeUnit.SECONDS);
+
+            // What the engine plays before the fade starts
+            for (int i = 0; i < PLAYED_BEFORE_FADE; i++) {
+                assertTrue(from.decodeInto(block));
+                if (i == 0) sink.open(block.format);
+                sink.write(block.data, 0, block.length);
+                playedFrames += block.length / 4;
+            }
+            AudioFormat format = from.getFormat();
+            assertEquals(OUT_RATE, format.getSampleRate());
+
+            CrossfadeMixer mixer = new CrossfadeMixer();
+            mixer.start(from, to, format, FADE_MILLIS);
+            while (mixer.mixInto(block)) {
+                assertSame(format, block.format);
+                sink.write(block.data, 0, block.length);
+            }
+            mixer.close();
+        }
+
+        short[] pcm;
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(wav)) {
+            AudioFormat format = in.getFormat();
+            assertEquals(OUT_RATE, format.getSampleRate());
+            assertEquals(2, format.getChannels());
+            assertEquals(16, format.getSampleSizeInBits());
+            ShortBuffer samples = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            pcm = new short[samples.remaining()];
+            samples.get(pcm);
+        }
+
+        // The incoming track's 2 s come out at the output rate, after what had already played;
+        // the encoder adds a little padding to each file
+        long frames = pcm.length / 2;
+        long expected = playedFrames + 2L * OUT_RATE;
+        assertEquals(expected, frames, 3 * 1152, "frames rendered");
+
+        // No clicks from the seam where the fade starts through to the end: a sine bends by at most
+        // w^2 * amplitude per sample (~280 for the 660 Hz tone here), a gain or resampler jump by its size
+        int fadeStart = (int) playedFrames;
+        for (int i = fadeStart - 1; i < frames; i++) {
+            int bend = Math.abs(pcm[2 * i] - 2 * pcm[2 * (i - 1)] + pcm[2 * (i - 2)]);
+            assertTrue(bend <= MAX_BEND, "click of " + bend + " at frame " + i + " (fade starts at " + fadeStart + ")");
+        }
+
+        // Equal-power fade: loudness stays level through it (two different tones, so their powers add)
+        double steady = rms(pcm, fadeStart - 2205, 2205);
+        int fadeFrames = (int) (OUT_RATE * FADE_MILLIS / 1000);
+        for (int at = fadeStart; at + 1102 < fadeStart + fadeFrames; at += 1102) {
+            double level = rms(pcm, at, 1102);
+            assertEquals(steady, level, steady * 0.15, "level 50 ms window at frame " + at);
+        }
+    }
+
+    private static double rms(short[] pcm, int fromFrame, int frames) {
+        double sum = 0;
+        for (int i = fromFrame; i < fromFrame + frames; i++) sum += (double) pcm[2 * i] * pcm[2 * i];
+        return Math.sqrt(sum / frames);
+    }
+}
@@ -0,0 +1,118 @@
+package com.tunesphere;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.opencv.global.opencv_objdetect;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Soak tests for the per-frame detection path: replaying thousands of frames must not allocate
+// JavaCPP memory, and closing the context must give back every Mat it created.
+class DetectionContextTest {
+
+    private static final int FRAMES = 3000;
+    private static final int WARM_UP = 200;
+    // Even one leaked Size a frame (8 bytes) adds 24 KB over the replay
+    private static final long MAX_GROWTH_BYTES = 4096;
+
+    private static final List<Mat> frames = new ArrayList<>();
+
+    // A few 640x480 frames with a face-sized blob in different places, played in a loop
+    @BeforeAll
+    static void makeFrames() {
+        for (int i = 0; i < 8; i++) {
+            Mat frame = new Mat(480, 640, CV_8UC3, new Scalar(40 + i * 10, 60, 80, 0));
+            try (Point center = new Point(200 + i * 30, 220 + (i % 3) * 10);
+                 Size axes = new Size(80, 105);
+                 Scalar skin = new Scalar(150, 170, 210, 0);
+                 Scalar dark = new Scalar(30, 30, 30, 0)) {
+                ellipse(frame, center, axes, 0, 0, 360, skin, -1, LINE_8, 0);
+                try (Point left = new Point(center.x() - 30, center.y() - 25);
+                     Point right = new Point(center.x() + 30, center.y() - 25)) {
+                    circle(frame, left, 10, dark, -1, LINE_8, 0);
+                    circle(frame, right, 10, dark, -1, LINE_8, 0);
+                }
+            }
+            frames.add(frame);
+        }
+    }
+
+    @AfterAll
+    static void freeFrames() {
+        for (Mat frame : frames) frame.close();
+        frames.clear();
+    }
+
+    @Test
+    void regionsOfInterestReuseTheContextBuffers() {
+        int liveBefore = NativeMemory.getLiveMats();
+        DetectionContext ctx = new DetectionContext();
+        assertEquals(liveBefore + 4, NativeMemory.getLiveMats());
+
+        long baseline = 0;
+        for (int i = 0; i < WARM_UP + FRAMES; i++) {
+            if (i == WARM_UP) baseline = Pointer.totalBytes();
+            Mat frame = frames.get(i % frames.size());
+            ctx.detectSize.width(320);
+            ctx.detectSize.height(240);
+            resize(frame, ctx.small, ctx.detectSize, 0, 0, INTER_AREA);
+            cvtColor(ctx.small, ctx.gray, COLOR_BGR2GRAY);
+            equalizeHist(ctx.gray, ctx.gray);
+            int x = i % 100;
+            Mat search = ctx.roi(ctx.gray, x, 20, 160, 120, ctx.searchRoi);
+            assertEquals(160, search.cols());
+            assertEquals(120, search.rows());
+            Mat face = ctx.roi(frame, 2 * x, 40, 320, 240, ctx.faceRoi);
+            assertEquals(320, face.cols());
+        }
+        long growth = Pointer.totalBytes() - baseline;
+        assertTrue(growth <= MAX_GROWTH_BYTES, "JavaCPP memory grew by " + growth + " bytes over " + FRAMES + " frames");
+        assertEquals(liveBefore + 4, NativeMemory.getLiveMats(), NativeMemory.report());
+
+        ctx.close();
+        ctx.close();
+        assertTrue(ctx.isClosed());
+        assertEquals(liveBefore, NativeMemory.getLiveMats(), NativeMemory.report());
+    }
+
+    @Test
+    void haarClassifierReplayKeepsNativeMemoryFlat() {
+        assumeTrue(objdetectAvailable(), "opencv_objdetect cannot be loaded here");
+        int liveBefore = NativeMemory.getLiveMats();
+
+        long baseline = 0;
+        try (HaarMoodClassifier classifier = new HaarMoodClassifier()) {
+            for (int i = 0; i < WARM_UP + FRAMES; i++) {
+                if (i == WARM_UP) baseline = Pointer.totalBytes();
+                classifier.classify(frames.get(i % frames.size()));
+            }
+            long growth = Pointer.totalBytes() - baseline;
+            assertTrue(growth <= MAX_GROWTH_BYTES, "JavaCPP memory grew by " + growth + " bytes over " + FRAMES + " frames");
+        }
+        assertEquals(liveBefore, NativeMemory.getLiveMats(), NativeMemory.report());
+    }
+
+    // objdetect links against highgui, which needs GTK; headless build machines often lack it
+    private static boolean objdetectAvailable() {
+        try {
+            Loader.load(opencv_objdetect.class);
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.tunesphere;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imwrite;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the pipeline on an image folder instead of a camera: a fast stage that keeps up and a slow one
+// behind a one-frame drop-oldest ring
+class FramePipelineTest {
+
+    private static final int IMAGES = 40;
+
+    @TempDir
+    static File images;
+
+    // A camera that is open but has nothing to deliver
+    private static final class EmptyCamera implements FrameSource {
+        final AtomicInteger grabs = new AtomicInteger();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public Frame grab() {
+            grabs.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public boolean isLive() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @BeforeAll
+    static void writeImages() {
+        for (int i = 0; i < IMAGES; i++) {
+            try (Mat image = new Mat(120, 160, CV_8UC3, new Scalar(i * 6, 80, 160, 0))) {
+                assertTrue(imwrite(new File(images, String.format("frame%03d.png", i)).getPath(), image));
+            }
+        }
+    }
+
+    private static FramePipeline.FrameHandler recording(List<Long> sequences, long millis) {
+        return frame -> {
+            sequences.add(frame.sequence());
+            if (millis > 0) Thread.sleep(millis);
+        };
+    }
+
+    private static FramePipeline.StageStats stats(FramePipeline pipeline, String name) {
+        return pipeline.getStats().stream().filter(s -> s.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void everyFrameIsProcessedOrDroppedAndTheBuffersComeBack() throws Exception {
+        int liveBefore = NativeMemory.getLiveMats();
+        List<Long> fast = new CopyOnWriteArrayList<>();
+        List<Long> slow = new CopyOnWriteArrayList<>();
+        FramePipeline pipeline = new FramePipeline(FrameSource.imageDirectory(images, false))
+                .addStage("fast", 8, recording(fast, 0))
+                .addStage("slow", 1, recording(slow, 25));
+        pipeline.start();
+        // A finished folder still gets fully processed, no stop() needed
+        assertTrue(pipeline.awaitTermination(20, TimeUnit.SECONDS));
+
+        assertEquals(IMAGES, stats(pipeline, "grab").getProcessed());
+        for (String name : List.of("fast", "slow")) {
+            FramePipeline.StageStats stage = stats(pipeline, name);
+            assertEquals(IMAGES, stage.getProcessed() + stage.getDropped(), stage.toString());
+        }
+
+        // Drop-oldest: the slow stage skips frames but what it sees is in order and ends with the newest
+        FramePipeline.StageStats slowStats = stats(pipeline, "slow");
+        assertTrue(slowStats.getDropped() > 0, slowStats.toString());
+        assertEquals(slowStats.getProcessed(), slow.size());
+        for (int i = 1; i < slow.size(); i++) assertTrue(slow.get(i) > slow.get(i - 1), slow.toString());
+        assertEquals(IMAGES - 1, (long) slow.get(slow.size() - 1));
+
+        // Every pooled frame went back to the pool and was freed with it
+        assertEquals(liveBefore, NativeMemory.getLiveMats(), NativeMemory.report());
+    }
+
+    @Test
+    void stoppingMidStreamFreesEveryFrame() throws Exception {
+        int liveBefore = NativeMemory.getLiveMats();
+        AtomicInteger handled = new AtomicInteger();
+        FramePipeline pipeline = new FramePipeline(FrameSource.imageDirectory(images, true))
+                .addStage("fast", 4, frame -> handled.incrementAndGet())
+                .addStage("slow", 2, frame -> Thread.sleep(50));
+        pipeline.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (handled.get() < 100 && System.nanoTime() < deadline) Thread.sleep(10);
+        pipeline.close();
+
+        assertFalse(pipeline.isRunning());
+        assertTrue(handled.get() >= 100);
+        // Frames still queued in the rings at stop() were handed back too
+        assertEquals(liveBefore, NativeMemory.getLiveMats(), NativeMemory.report());
+    }
+
+    @Test
+    void anEmptyLiveSourceDoesNotSpinTheGrabThread() throws Exception {
+        EmptyCamera camera = new EmptyCamera();
+        FramePipeline pipeline = new FramePipeline(camera).addStage("idle", 1, frame -> fail("no frames"));
+        pipeline.start();
+        // The grab thread loads OpenCV before its first grab
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (camera.grabs.get() == 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        int before = camera.grabs.get();
+        Thread.sleep(500);
+        int grabs = camera.grabs.get() - before;
+        pipeline.close();
+
+        // One grab per 10 ms back-off, not a busy loop
+        assertTrue(grabs >= 5 && grabs <= 60, grabs + " grabs in 500 ms");
+        assertTrue(pipeline.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,122 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryLogTest {
+
+    @TempDir
+    File dir;
+    private String historyProperty;
+    private final List<HistoryLog> logs = new ArrayList<>();
+
+    @BeforeEach
+    void open() {
+        Database.init("jdbc:sqlite:" + new File(dir, "history.db").getPath(), 2);
+        // Surefire turns history off for the other tests
+        historyProperty = System.setProperty("tunesphere.history", "true");
+    }
+
+    @AfterEach
+    void close() {
+        for (HistoryLog log : logs) log.close();
+        System.setProperty("tunesphere.history", historyProperty);
+        Database.shutdown();
+    }
+
+    private HistoryLog newLog() {
+        HistoryLog log = new HistoryLog();
+        logs.add(log);
+        return log;
+    }
+
+    private static int rows() throws Exception {
+        return Database.query("SELECT COUNT(*) FROM history", rs -> rs.next() ? rs.getInt(1) : 0);
+    }
+
+    @Test
+    void flushCommitsWhatWasRecorded() throws Exception {
+        HistoryLog log = newLog();
+        for (int i = 0; i < 2500; i++) log.sessionStarted("s" + i);
+        log.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(2500, rows());
+        assertEquals(0, log.getBacklog());
+    }
+
+    @Test
+    void aBatchThatBlowsUpDoesNotStopTheWriter() throws Exception {
+        HistoryLog log = newLog();
+        Metrics.Counter failed = Metrics.counter("history.failed");
+        long failedBefore = failed.get();
+
+        // A null type fails inside the insert with a NullPointerException, not an SQLException
+        assertTrue(log.record(null, "bad", null, null, 0));
+        log.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(failedBefore + 1, failed.get());
+
+        log.sessionStarted("good");
+        log.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(1, rows());
+        assertEquals(0, log.getBacklog());
+    }
+
+    // Every flush completes, however it races with close()
+    @Test
+    void flushesRacingCloseAlwaysComplete() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            HistoryLog log = newLog();
+            List<CompletableFuture<Void>> flushes = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread flusher = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 200; i++) {
+                    log.sessionStarted("race");
+                    flushes.add(log.flush());
+                }
+            });
+            flusher.start();
+            started.await();
+            log.close();
+            flusher.join();
+
+            for (CompletableFuture<Void> flush : flushes) flush.get(5, TimeUnit.SECONDS);
+            assertEquals(0, log.getBacklog());
+        }
+    }
+
+    // Events recorded while close() runs are either written or rejected, and none stays counted
+    @Test
+    void recordsRacingCloseLeaveNoBacklog() throws Exception {
+        int[] accepted = new int[1];
+        for (int round = 0; round < 50; round++) {
+            HistoryLog log = newLog();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread recorder = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 500; i++) {
+                    if (log.record(HistoryLog.EventType.SESSION_START, "race", null, null, 0)) accepted[0]++;
+                }
+            });
+            recorder.start();
+            started.await();
+            log.close();
+            recorder.join();
+
+            assertEquals(0, log.getBacklog());
+            assertFalse(log.record(HistoryLog.EventType.SESSION_START, "late", null, null, 0));
+            // Nothing rejected made it to the table
+            assertTrue(rows() <= accepted[0], rows() + " rows for " + accepted[0] + " accepted");
+        }
+    }
+}
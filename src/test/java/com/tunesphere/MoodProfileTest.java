@@ -0,0 +1,66 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoodProfileTest {
+
+    @TempDir
+    File dir;
+
+    @BeforeEach
+    void open() {
+        Database.init("jdbc:sqlite:" + new File(dir, "library.db").getPath(), 2);
+        MoodProfile.invalidate();
+    }
+
+    @AfterEach
+    void close() {
+        MoodProfile.invalidate();
+        Database.shutdown();
+    }
+
+    // Straight into the tables, as LibraryIndex and FeatureAnalyzer would (without their invalidate())
+    private static void track(String path, String mood, double tempoBpm, double rmsDb) throws Exception {
+        Database.update("INSERT INTO tracks (path, mood, size, mtime) VALUES (?, ?, 1, 1)", path, mood);
+        Database.update("INSERT INTO track_features (path, size, mtime, tempo_bpm, rms_db, centroid_hz, mode, key) "
+                + "VALUES (?, 1, 1, ?, ?, 2000, 0.2, 0)", path, tempoBpm, rmsDb);
+    }
+
+    private static List<File> files(String... paths) {
+        return Arrays.stream(paths).map(File::new).toList();
+    }
+
+    @Test
+    void folderTracksFollowTheRankedOnesOnceEach() throws Exception {
+        track("happy/near.mp3", "happy", 135, -11);
+        track("happy/far.mp3", "happy", 70, -28);
+        track("loose/fast.mp3", null, 140, -10);
+        track("loose/slow.mp3", null, 65, -29);
+
+        List<File> playlist = MoodProfile.playlist(Mood.HAPPY,
+                files("happy/far.mp3", "happy/new.mp3", "happy/near.mp3"), 5);
+        // Closest first, then the folder's unanalysed track, then the untagged track nearest to happy
+        assertEquals(files("happy/near.mp3", "happy/far.mp3", "happy/new.mp3", "loose/fast.mp3"), playlist);
+    }
+
+    @Test
+    void rankingsAreKeptUntilInvalidated() throws Exception {
+        track("happy/a.mp3", "happy", 130, -12);
+        assertEquals(files("happy/a.mp3"), MoodProfile.playlist(Mood.HAPPY, List.of(), 5));
+
+        track("happy/b.mp3", "happy", 131, -12);
+        assertEquals(files("happy/a.mp3"), MoodProfile.playlist(Mood.HAPPY, List.of(), 5));
+
+        MoodProfile.invalidate();
+        assertEquals(2, MoodProfile.playlist(Mood.HAPPY, List.of(), 5).size());
+    }
+}
@@ -0,0 +1,108 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Replays recorded label sequences, one label per camera frame: H(appy), S(ad), N(eutral) or - (no face).
+// Defaults throughout: 1.5 s half-life, 0.25 margin, 2 s dwell.
+class MoodSmootherTest {
+
+    private static final long FRAME_MILLIS = 100;
+
+    private final MoodSmoother smoother = new MoodSmoother();
+    private long nowMillis = 0;
+
+    // Feeds the labels at 10 fps; returns "<ms>:<MOOD>" for every change of the stable mood
+    private List<String> replay(String labels) {
+        List<String> switches = new ArrayList<>();
+        for (char label : labels.replace(" ", "").toCharArray()) {
+            Mood observed = switch (label) {
+                case 'H' -> Mood.HAPPY;
+                case 'S' -> Mood.SAD;
+                case 'N' -> Mood.NEUTRAL;
+                case '-' -> null;
+                default -> throw new IllegalArgumentException("label " + label);
+            };
+            if (smoother.update(observed, nowMillis * 1_000_000L)) {
+                switches.add(nowMillis + ":" + smoother.getStableMood());
+            }
+            nowMillis += FRAME_MILLIS;
+        }
+        return switches;
+    }
+
+    private static long switchedAt(String change) {
+        return Long.parseLong(change.substring(0, change.indexOf(':')));
+    }
+
+    private static String repeat(String labels, int times) {
+        return labels.repeat(times);
+    }
+
+    @Test
+    void aSteadyMoodWinsAfterTheMarginAndTheDwell() {
+        // HAPPY's vote passes 0.25 at 700 ms (1 - 2^(-t / 1.5 s)), then has to lead for 2 s more
+        assertEquals(List.of("2700:HAPPY"), replay(repeat("H", 40)));
+        assertEquals(Mood.HAPPY, smoother.getStableMood());
+    }
+
+    @Test
+    void flickerAndTiesDoNotSwitch() {
+        replay(repeat("H", 60));
+        // A second of SAD now and then, and a stretch where the two alternate
+        assertEquals(List.of(), replay(repeat("SSSSSSSSSS" + repeat("H", 20), 4)));
+        assertEquals(List.of(), replay(repeat("HS", 50)));
+        assertEquals(Mood.HAPPY, smoother.getStableMood());
+        // A sustained change does get through, once SAD has outvoted HAPPY's full lead (~2 s) plus the dwell
+        replay(repeat("H", 60));
+        long start = nowMillis;
+        List<String> switches = replay(repeat("S", 60));
+        assertEquals(1, switches.size());
+        assertTrue(switchedAt(switches.get(0)) - start >= 4000, switches.get(0));
+        assertEquals(Mood.SAD, smoother.getStableMood());
+    }
+
+    @Test
+    void theChallengerHasToLeadForTheWholeDwell() {
+        replay(repeat("H", 60));
+        // SAD leads by the margin for a while, but less than 2 s each time; the lead restarts the clock
+        String burst = repeat("S", 30) + repeat("H", 30);
+        assertEquals(List.of(), replay(burst + burst + burst));
+        assertEquals(Mood.HAPPY, smoother.getStableMood());
+    }
+
+    @Test
+    void votesDecayWhileThereIsNoFace() {
+        replay(repeat("H", 60));
+        float before = smoother.getConfidence(Mood.HAPPY);
+        // 1.5 s without a face: one half-life
+        assertEquals(List.of(), replay(repeat("-", 15)));
+        assertEquals(before / 2, smoother.getConfidence(Mood.HAPPY), 0.01);
+        // The stable mood holds through the gap, but what is left of its votes is soon outweighed
+        replay(repeat("-", 45));
+        assertEquals(Mood.HAPPY, smoother.getStableMood());
+        long start = nowMillis;
+        List<String> switches = replay(repeat("S", 40));
+        assertEquals(1, switches.size());
+        assertTrue(switchedAt(switches.get(0)) - start <= 3000, switches.get(0));
+        assertEquals(Mood.SAD, smoother.getStableMood());
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        replay(repeat("H", 60));
+        smoother.reset();
+        assertNull(smoother.getStableMood());
+        for (Mood mood : Mood.values()) assertEquals(0f, smoother.getConfidence(mood));
+
+        // Long after the last frame: the gap since then counts for nothing, so this is a fresh start
+        nowMillis += 60_000;
+        long start = nowMillis;
+        List<String> switches = replay(repeat("S", 40));
+        assertEquals(List.of((start + 2700) + ":SAD"), switches);
+    }
+}
@@ -0,0 +1,175 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Drives the engine into a NullAudioSink: a non-realtime sink runs through tracks as fast as they
+// decode, a realtime one paces them like a sound card so commands land in the middle of a track.
+class PlaybackEngineTest {
+
+    private static final int BYTES_PER_SECOND = 44_100 * 4;
+    // The encoder pads the start and end of a file, by up to a couple of MP3 frames
+    private static final int PADDING_BYTES = 3 * TrackDecoder.MAX_FRAME_BYTES;
+
+    @TempDir
+    static File dir;
+    private static File a, b, c, longTrack;
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private final Map<String, Long> eventBytes = new ConcurrentHashMap<>();
+    private final Map<String, Long> eventNanos = new ConcurrentHashMap<>();
+    private NullAudioSink sink;
+    private PlaybackEngine engine;
+
+    @BeforeAll
+    static void makeTracks() throws Exception {
+        a = TestAudio.tone(dir, "a.mp3", 0.5, 440, 44_100);
+        b = TestAudio.tone(dir, "b.mp3", 0.5, 660, 44_100);
+        c = TestAudio.tone(dir, "c.mp3", 0.5, 880, 44_100);
+        longTrack = TestAudio.tone(dir, "long.mp3", 3, 330, 44_100);
+    }
+
+    @AfterEach
+    void closeEngine() {
+        if (engine != null) engine.close();
+    }
+
+    private void start(boolean realTime) {
+        sink = new NullAudioSink(realTime);
+        engine = new PlaybackEngine(sink, "test");
+        engine.addListener(new PlaybackListener() {
+            @Override
+            public void trackStarted(File track, int index) {
+                log("started " + index);
+            }
+
+            @Override
+            public void trackEnded(File track, int index, PlaybackEngine.EndReason reason) {
+                log("ended " + index + " " + reason);
+            }
+        });
+    }
+
+    private void log(String event) {
+        eventBytes.putIfAbsent(event, sink.getBytesWritten());
+        eventNanos.putIfAbsent(event, System.nanoTime());
+        events.add(event);
+    }
+
+    private void expect(String... expected) throws InterruptedException {
+        for (String event : expected) {
+            assertEquals(event, events.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void autoAdvancePlaysEveryTrackInOrderAndWraps() throws Exception {
+        start(false);
+        engine.play(List.of(a, b, c), 0);
+        expect("started 0", "ended 0 FINISHED", "started 1", "ended 1 FINISHED",
+                "started 2", "ended 2 FINISHED", "started 0");
+
+        // Every track was written out in full, nothing of the next one before its start
+        long first = eventBytes.get("ended 0 FINISHED");
+        assertEquals(BYTES_PER_SECOND / 2.0, first, PADDING_BYTES);
+        assertEquals(first, eventBytes.get("started 1"));
+        long second = eventBytes.get("ended 1 FINISHED") - eventBytes.get("started 1");
+        assertEquals(BYTES_PER_SECOND / 2.0, second, PADDING_BYTES);
+    }
+
+    @Test
+    void withoutAutoAdvanceOnlyTheFirstTrackPlays() throws Exception {
+        start(false);
+        engine.setAutoAdvance(false);
+        engine.play(List.of(a, b), 0);
+        expect("started 0", "ended 0 FINISHED");
+        assertNull(events.poll(300, TimeUnit.MILLISECONDS));
+        assertNull(engine.getCurrentTrack());
+    }
+
+    @Test
+    void skipAndStopReportTheirReasons() throws Exception {
+        start(true);
+        engine.play(List.of(longTrack, longTrack, longTrack), 0);
+        expect("started 0");
+
+        engine.next();
+        expect("ended 0 SKIPPED", "started 1");
+        assertEquals(1, engine.getCurrentIndex());
+
+        engine.play(List.of(a, longTrack), 1);
+        expect("ended 1 SKIPPED", "started 1");
+
+        engine.stop();
+        expect("ended 1 STOPPED");
+        assertNull(engine.getCurrentTrack());
+        assertNull(events.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void nextTrackFollowsWithoutAGap() throws Exception {
+        start(true);
+        Metrics.Counter underruns = Metrics.counter("audio.underruns");
+        long underrunsBefore = underruns.get();
+
+        engine.play(List.of(a, b, c), 0);
+        expect("started 0", "ended 0 FINISHED", "started 1", "ended 1 FINISHED", "started 2");
+
+        // The prefetched track's first block is already waiting when the previous one ends
+        long gapMillis = TimeUnit.NANOSECONDS.toMillis(eventNanos.get("started 1") - eventNanos.get("ended 0 FINISHED"));
+        assertTrue(gapMillis < 25, "gap between tracks: " + gapMillis + " ms");
+        assertEquals(underrunsBefore, underruns.get());
+    }
+
+    @Test
+    void seekJumpsWithinTheCurrentTrack() throws Exception {
+        start(true);
+        engine.play(List.of(longTrack), 0);
+        expect("started 0");
+        Thread.sleep(200);
+
+        long seekNanos = System.nanoTime();
+        engine.seek(Duration.ofSeconds(2));
+        Thread.sleep(300);
+        long position = engine.getPosition().toMillis();
+        assertTrue(position >= 2000 && position < 2600, "position after seek: " + position + " ms");
+        assertSame(longTrack, engine.getCurrentTrack());
+
+        // Same track, so no new start; the remaining second plays out and the track finishes
+        expect("ended 0 FINISHED");
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(eventNanos.get("ended 0 FINISHED") - seekNanos);
+        assertTrue(remainingMillis < 2000, "finished " + remainingMillis + " ms after seeking to 2 s of 3 s");
+    }
+
+    @Test
+    void seekWhilePausedStaysPaused() throws Exception {
+        start(true);
+        engine.play(List.of(longTrack), 0);
+        expect("started 0");
+        engine.pause();
+        long written = sink.getBytesWritten();
+
+        engine.seek(Duration.ofSeconds(1));
+        Thread.sleep(200);
+        assertTrue(engine.isPaused());
+        assertEquals(written, sink.getBytesWritten());
+
+        engine.resume();
+        Thread.sleep(300);
+        long position = engine.getPosition().toMillis();
+        assertTrue(position >= 1000 && position < 1600, "position after resume: " + position + " ms");
+    }
+}
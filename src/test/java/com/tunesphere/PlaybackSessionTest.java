@@ -0,0 +1,221 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Sessions side by side, each on its own realtime NullAudioSink
+class PlaybackSessionTest {
+
+    @TempDir
+    static File dir;
+    private static File a, b;
+
+    private final List<PlaybackSession> sessions = new ArrayList<>();
+
+    @BeforeAll
+    static void makeTracks() throws Exception {
+        a = TestAudio.tone(dir, "a.mp3", 3, 440, 44_100);
+        b = TestAudio.tone(dir, "b.mp3", 3, 550, 44_100);
+    }
+
+    @AfterEach
+    void closeSessions() {
+        for (PlaybackSession session : sessions) session.close();
+    }
+
+    private PlaybackSession open(String name, BlockingQueue<String> events) {
+        PlaybackSession session = new PlaybackSession(name, new NullAudioSink(true), name);
+        sessions.add(session);
+        if (events != null) {
+            session.addListener(new PlaybackListener() {
+                @Override
+                public void trackStarted(File track, int index) {
+                    events.add("started " + track.getName());
+                }
+
+                @Override
+                public void trackEnded(File track, int index, PlaybackEngine.EndReason reason) {
+                    events.add("ended " + track.getName() + " " + reason);
+                }
+            });
+        }
+        return session;
+    }
+
+    private static long bytes(PlaybackSession session) {
+        return ((NullAudioSink) session.getSink()).getBytesWritten();
+    }
+
+    @Test
+    void sessionsPlayIndependently() throws Exception {
+        BlockingQueue<String> first = new LinkedBlockingQueue<>();
+        BlockingQueue<String> second = new LinkedBlockingQueue<>();
+        PlaybackSession one = open("one", first);
+        PlaybackSession two = open("two", second);
+
+        one.play(List.of(a, b), 0).get(2, TimeUnit.SECONDS);
+        two.play(List.of(b, a), 0).get(2, TimeUnit.SECONDS);
+        assertEquals("started a.mp3", first.poll(2, TimeUnit.SECONDS));
+        assertEquals("started b.mp3", second.poll(2, TimeUnit.SECONDS));
+
+        // Skipping and pausing one leaves the other playing
+        one.next().get(2, TimeUnit.SECONDS);
+        one.pause().get(2, TimeUnit.SECONDS);
+        assertEquals("ended a.mp3 SKIPPED", first.poll(2, TimeUnit.SECONDS));
+        assertTrue(one.isPaused());
+        assertEquals("b.mp3", one.getCurrentSongName());
+
+        long before = bytes(two);
+        Thread.sleep(300);
+        assertTrue(bytes(two) > before, "the other session kept playing");
+        assertFalse(two.isPaused());
+        assertEquals("b.mp3", two.getCurrentSongName());
+        assertNull(second.poll());
+    }
+
+    @Test
+    void aFailingCommandDoesNotStopTheSession() throws Exception {
+        PlaybackSession session = open("failing", null);
+        session.addListener(new PlaybackListener() {
+            @Override
+            public void trackEnded(File track, int index, PlaybackEngine.EndReason reason) {
+                if (reason == PlaybackEngine.EndReason.SKIPPED) throw new AssertionError("listener bug");
+            }
+        });
+        session.play(List.of(a, b), 0).get(2, TimeUnit.SECONDS);
+
+        // An Error, not just a RuntimeException, reaches the caller and the command thread carries on
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> session.next().get(2, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, failed.getCause());
+        session.stop().get(2, TimeUnit.SECONDS);
+        assertEquals("None", session.getCurrentSongName());
+    }
+
+    @Test
+    void commandsAfterCloseFail() {
+        PlaybackSession session = open("closed", null);
+        session.close();
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> session.play(List.of(a), 0).get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failed.getCause());
+    }
+
+    // Every future a caller gets back completes, however its command races with close()
+    @Test
+    void commandsRacingCloseAlwaysComplete() throws Exception {
+        for (int round = 0; round < 30; round++) {
+            PlaybackSession session = new PlaybackSession("race-" + round, new NullAudioSink(false), "race");
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread submitter = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 200; i++) futures.add(i % 2 == 0 ? session.pause() : session.resume());
+            });
+            submitter.start();
+            started.await();
+            session.close();
+            submitter.join();
+
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.get(2, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertInstanceOf(IllegalStateException.class, e.getCause());
+                }
+            }
+            assertEquals(0, session.getQueuedCommands());
+        }
+    }
+
+    // Many sessions at once, each driven by its own thread with a random mix of commands and closed
+    // part way through by another: every future completes and no command thread is left behind
+    @Test
+    void manySessionsInParallelAllShutDown() throws Exception {
+        int count = 16;
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        List<Thread> drivers = new ArrayList<>();
+        List<PlaybackSession> stress = new ArrayList<>();
+        CountDownLatch go = new CountDownLatch(1);
+        for (int s = 0; s < count; s++) {
+            PlaybackSession session = new PlaybackSession("stress-" + s, new NullAudioSink(true), "stress");
+            stress.add(session);
+            Random random = new Random(s);
+            Thread driver = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 40; i++) {
+                    futures.add(switch (random.nextInt(6)) {
+                        case 0 -> session.play(List.of(a, b), random.nextInt(2));
+                        case 1 -> session.next();
+                        case 2 -> session.pause();
+                        case 3 -> session.resume();
+                        case 4 -> session.stop();
+                        default -> session.seek(Duration.ofMillis(random.nextInt(2000)));
+                    });
+                    if (random.nextInt(4) == 0) Thread.onSpinWait();
+                }
+            }, "driver-" + s);
+            drivers.add(driver);
+            driver.start();
+        }
+        go.countDown();
+        // Close each session while its driver is still going (or just finished)
+        List<Thread> closers = new ArrayList<>();
+        for (int s = 0; s < count; s++) {
+            PlaybackSession session = stress.get(s);
+            long delay = s * 10L;
+            Thread closer = new Thread(() -> {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ignored) {}
+                session.close();
+            });
+            closers.add(closer);
+            closer.start();
+        }
+        for (Thread t : drivers) t.join(10_000);
+        for (Thread t : closers) t.join(10_000);
+        for (Thread t : drivers) assertFalse(t.isAlive(), t.getName() + " stuck submitting");
+
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+        for (PlaybackSession session : stress) assertEquals(0, session.getQueuedCommands());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        List<String> left;
+        do {
+            left = Thread.getAllStackTraces().keySet().stream()
+                    .map(Thread::getName)
+                    .filter(name -> name.startsWith("tunesphere-session-stress-"))
+                    .toList();
+            if (left.isEmpty()) break;
+            Thread.sleep(50);
+        } while (System.currentTimeMillis() < deadline);
+        assertEquals(List.of(), left, "command threads still running");
+    }
+}
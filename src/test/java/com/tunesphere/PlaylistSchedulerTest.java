@@ -0,0 +1,172 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlaylistSchedulerTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @TempDir
+    File dir;
+
+    private static List<File> tracks(int n) {
+        List<File> tracks = new ArrayList<>();
+        for (int i = 0; i < n; i++) tracks.add(new File("track" + i + ".mp3"));
+        return tracks;
+    }
+
+    private static List<File> draw(PlaylistScheduler scheduler, int count) {
+        List<File> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) order.add(scheduler.next());
+        return order;
+    }
+
+    @Test
+    void theSeedDecidesTheOrder() {
+        List<File> tracks = tracks(50);
+        List<File> first = draw(new PlaylistScheduler(tracks, Map.of(), NOW, 42), 150);
+        assertEquals(first, draw(new PlaylistScheduler(tracks, Map.of(), NOW, 42), 150));
+        assertNotEquals(first, draw(new PlaylistScheduler(tracks, Map.of(), NOW, 43), 150));
+
+        // Without replacement: each round plays every track once
+        for (int round = 0; round < 3; round++) {
+            assertEquals(new HashSet<>(tracks), new HashSet<>(first.subList(round * 50, round * 50 + 50)));
+        }
+        // and a new round is a new draw, not a replay of the first
+        assertNotEquals(first.subList(0, 50), first.subList(50, 100));
+    }
+
+    @Test
+    void firstPicksFollowTheWeights() {
+        List<File> tracks = tracks(4);
+        Map<String, PlaylistScheduler.TrackStats> history = new HashMap<>();
+        PlaylistScheduler.TrackStats loved = new PlaylistScheduler.TrackStats();
+        loved.finished = 8;
+        history.put(tracks.get(1).getPath(), loved);
+        PlaylistScheduler.TrackStats skipped = new PlaylistScheduler.TrackStats();
+        skipped.skips = 6;
+        history.put(tracks.get(2).getPath(), skipped);
+        PlaylistScheduler.TrackStats justPlayed = new PlaylistScheduler.TrackStats();
+        justPlayed.lastStartedMillis = NOW - 20 * 60_000;
+        history.put(tracks.get(3).getPath(), justPlayed);
+
+        double[] weights = new double[4];
+        double total = 0;
+        for (int i = 0; i < 4; i++) {
+            weights[i] = PlaylistScheduler.score(1.0 - 0.5 * i / 3, history.get(tracks.get(i).getPath()), NOW);
+            total += weights[i];
+        }
+
+        int seeds = 40_000;
+        int[] firsts = new int[4];
+        for (int seed = 0; seed < seeds; seed++) {
+            firsts[tracks.indexOf(new PlaylistScheduler(tracks, history, NOW, seed).next())]++;
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(weights[i] / total, (double) firsts[i] / seeds, 0.01, "share of first picks for track " + i);
+        }
+        // Sanity check on the scoring itself: loved > untouched > skipped > just played
+        assertTrue(weights[1] > weights[0] && weights[0] > weights[2] && weights[2] > weights[3]);
+    }
+
+    @Test
+    void playlistRunsOnIntoNewRounds() {
+        List<File> tracks = tracks(20);
+        List<File> playlist = new PlaylistScheduler(tracks, Map.of(), NOW, 7).playlist();
+        assertEquals(20, playlist.size());
+
+        // What the engine does: (i + 1) % size() from the last track of a round is the first of the next
+        List<File> played = new ArrayList<>();
+        int i = 0;
+        for (int n = 0; n < 60; n++) {
+            played.add(playlist.get(i));
+            i = (i + 1) % playlist.size();
+        }
+        assertEquals(60, i);
+        assertEquals(new HashSet<>(tracks), new HashSet<>(played.subList(40, 60)));
+        assertNotEquals(played.subList(0, 20), played.subList(20, 40));
+        // Earlier draws never change
+        assertEquals(played.get(5), playlist.get(5));
+    }
+
+    @Test
+    void aRoundsLastTracksSitOutTheStartOfTheNext() {
+        List<File> tracks = tracks(12);
+        for (int seed = 0; seed < 500; seed++) {
+            List<File> order = draw(new PlaylistScheduler(tracks, Map.of(), NOW, seed), 36);
+            for (int round = 1; round < 3; round++) {
+                List<File> ending = order.subList(round * 12 - 3, round * 12);
+                for (File next : order.subList(round * 12, round * 12 + 3)) {
+                    assertFalse(ending.contains(next), "seed " + seed + ": " + next + " again right after the round ended");
+                }
+                // Still every track once per round
+                assertEquals(new HashSet<>(tracks), new HashSet<>(order.subList(round * 12, round * 12 + 12)));
+            }
+        }
+    }
+
+    @Test
+    void playlistKeepsOnlyTheLatestDraws() {
+        List<File> playlist = new PlaylistScheduler(tracks(10), Map.of(), NOW, 5).playlist();
+        for (int i = 0; i < 2000; i++) playlist.get(i);
+        assertThrows(IndexOutOfBoundsException.class, () -> playlist.get(0));
+        // The track playing and the ones around it are still there
+        assertEquals(playlist.get(1999), playlist.get(1999));
+        assertNotNull(playlist.get(1990));
+        assertNotNull(playlist.get(2000));
+    }
+
+    @Test
+    void engineDrawsAFreshRoundAfterTheLastTrack() throws Exception {
+        List<File> tracks = List.of(
+                TestAudio.tone(dir, "a.mp3", 0.3, 440, 44_100),
+                TestAudio.tone(dir, "b.mp3", 0.3, 660, 44_100),
+                TestAudio.tone(dir, "c.mp3", 0.3, 880, 44_100));
+        BlockingQueue<Integer> started = new LinkedBlockingQueue<>();
+        PlaybackEngine engine = new PlaybackEngine(new NullAudioSink(false), "test");
+        try {
+            engine.addListener(new PlaybackListener() {
+                @Override
+                public void trackStarted(File track, int index) {
+                    started.add(index);
+                }
+            });
+            List<File> playlist = new PlaylistScheduler(tracks, Map.of(), NOW, 3).playlist();
+            engine.play(playlist, 0);
+            for (int index = 0; index < 7; index++) {
+                assertEquals(index, started.poll(5, TimeUnit.SECONDS));
+            }
+            assertEquals(new HashSet<>(tracks), new HashSet<>(playlist.subList(3, 6)));
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    void engineGivesUpAfterOneRoundOfUnreadableTracks() throws Exception {
+        List<File> missing = List.of(new File(dir, "x.mp3"), new File(dir, "y.mp3"), new File(dir, "z.mp3"));
+        PlaybackEngine engine = new PlaybackEngine(new NullAudioSink(false), "test");
+        try {
+            List<File> playlist = new PlaylistScheduler(missing, Map.of(), NOW, 1).playlist();
+            engine.play(playlist, 0);
+            Thread.sleep(300);
+            // One attempt per track, not an endless walk down a playlist that keeps growing
+            assertTrue(playlist.size() <= 6, "drew " + playlist.size() + " entries");
+        } finally {
+            engine.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.tunesphere;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+
+import java.io.File;
+import java.nio.ShortBuffer;
+
+// Generated audio fixtures: plain stereo sine tones encoded to MP3 with FFmpeg, so tests need no music files
+final class TestAudio {
+
+    private TestAudio() {
+    }
+
+    static File tone(File dir, String name, double seconds, double hz, int sampleRate) throws Exception {
+        File file = new File(dir, name);
+        int frames = (int) Math.round(seconds * sampleRate);
+        short[] pcm = new short[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            short s = (short) Math.round(8000 * Math.sin(2 * Math.PI * hz * i / sampleRate));
+            pcm[2 * i] = s;
+            pcm[2 * i + 1] = s;
+        }
+        try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(file, 2)) {
+            recorder.setFormat("mp3");
+            recorder.setAudioCodec(avcodec.AV_CODEC_ID_MP3);
+            recorder.setSampleRate(sampleRate);
+            recorder.setAudioBitrate(128_000);
+            recorder.start();
+            recorder.recordSamples(sampleRate, 2, ShortBuffer.wrap(pcm));
+            recorder.stop();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,63 @@
+package com.tunesphere;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackDecoderTest {
+
+    @TempDir
+    static File dir;
+    private static File track;
+
+    @BeforeAll
+    static void makeTrack() throws Exception {
+        track = TestAudio.tone(dir, "tone.mp3", 2, 440, 44_100);
+    }
+
+    private static byte[] decodeAll(TrackDecoder decoder) throws Exception {
+        PcmRing ring = new PcmRing(1, TrackDecoder.MAX_FRAME_BYTES);
+        PcmRing.Block block = ring.acquire(1, TimeUnit.SECONDS);
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        int expectedFrame = decoder.getFrameIndex();
+        while (decoder.decodeInto(block)) {
+            assertEquals(expectedFrame++, block.frameIndex);
+            pcm.write(block.data, 0, block.length);
+        }
+        return pcm.toByteArray();
+    }
+
+    @Test
+    void prefetchedFramesAreTheSameAudio() throws Exception {
+        byte[] cold;
+        try (TrackDecoder decoder = new TrackDecoder(track)) {
+            cold = decodeAll(decoder);
+        }
+        assertEquals(2 * 44_100 * 4, cold.length, 3 * TrackDecoder.MAX_FRAME_BYTES);
+
+        byte[] prefetched;
+        try (TrackDecoder decoder = new TrackDecoder(track)) {
+            decoder.prefetch(8);
+            assertEquals(0, decoder.getFrameIndex());
+            assertEquals(44_100, decoder.getFormat().getSampleRate());
+            prefetched = decodeAll(decoder);
+        }
+        assertArrayEquals(cold, prefetched);
+    }
+
+    @Test
+    void openAtStartsAtTheRequestedFrame() throws Exception {
+        try (TrackDecoder decoder = TrackDecoder.openAt(track, Duration.ofMillis(1500))) {
+            PcmRing.Block block = new PcmRing(1, TrackDecoder.MAX_FRAME_BYTES).acquire(1, TimeUnit.SECONDS);
+            assertTrue(decoder.decodeInto(block));
+            assertEquals(1500, block.frameIndex * block.frameMillis, block.frameMillis);
+        }
+    }
+}